@@ -137,6 +137,14 @@ public class CircuitBreaker {
         return state.status.name();
     }
 
+    /**
+     * @return the earliest instant at which an OPEN circuit will permit a probe call, or {@link Instant#MIN} if calls
+     * are currently permitted
+     */
+    public Instant nextAttempt() {
+        return state.status == State.Status.OPEN ? state.nextAttempt : Instant.MIN;
+    }
+
     /**
      * Internal state machine for the circuit breaker.
      */
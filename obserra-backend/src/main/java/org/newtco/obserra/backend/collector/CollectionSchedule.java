@@ -0,0 +1,144 @@
+package org.newtco.obserra.backend.collector;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.newtco.obserra.backend.model.Service;
+
+/// Min-heap of services ordered by the instant their next collection is due.
+///
+/// The scheduler only ever looks at the head of the heap, so the cost of a collection cycle is proportional to the
+/// number of services that are actually due rather than to the number of registered services.
+///
+/// ---
+///
+/// Each tracked service has exactly one live [Entry]. Rescheduling a service replaces its entry and leaves the old one
+/// in the heap; stale entries are discarded lazily when they reach the head. A service that has been handed out by
+/// [#pollDue(Instant)] is held _in flight_ until it is rescheduled or removed, so it can never be dispatched twice
+/// concurrently.
+///
+/// All methods are thread-safe.
+class CollectionSchedule {
+
+    private final PriorityQueue<Entry> heap    = new PriorityQueue<>(Comparator.comparing(Entry::dueAt)
+                                                                               .thenComparingLong(Entry::sequence));
+    private final Map<String, Entry>   entries = new HashMap<>();
+    private       long                 sequence;
+
+    /// Starts tracking a service if it is not already tracked. The service reference of an already tracked service is
+    /// refreshed so the next dispatch sees the latest registry object.
+    ///
+    /// @param service the service to track
+    /// @param dueAt   when the first collection is due
+    ///
+    /// @return true if the service was not tracked before
+    public synchronized boolean track(Service service, Instant dueAt) {
+        var existing = entries.get(service.getId());
+        if (existing != null) {
+            existing.service = service;
+            return false;
+        }
+
+        push(service, dueAt);
+        return true;
+    }
+
+    /// Schedules the next collection of a tracked service, replacing its pending or in-flight entry. A service that
+    /// was removed, e.g. while its collection was in flight, is not put back on the schedule.
+    ///
+    /// @param service the service to schedule
+    /// @param dueAt   when the next collection is due
+    ///
+    /// @return true if the service is still tracked and was scheduled
+    public synchronized boolean schedule(Service service, Instant dueAt) {
+        if (!entries.containsKey(service.getId())) {
+            return false;
+        }
+
+        push(service, dueAt);
+        return true;
+    }
+
+    /// Stops tracking a service. A pending entry for it is discarded when it reaches the head of the heap.
+    ///
+    /// @param serviceId the service id
+    public synchronized void remove(String serviceId) {
+        entries.remove(serviceId);
+    }
+
+    /// Stops tracking every service whose id is not in the given set.
+    ///
+    /// @param activeIds ids of the services that are still registered
+    public synchronized void retainAll(Set<String> activeIds) {
+        entries.keySet().retainAll(activeIds);
+    }
+
+    /// Removes and returns all services due at or before `now`, in due order. Returned services are marked in flight
+    /// until they are passed to [#schedule(Service, Instant)] or [#remove(String)].
+    ///
+    /// @param now the current instant
+    ///
+    /// @return services that are due, possibly empty
+    public synchronized List<Service> pollDue(Instant now) {
+        List<Service> due = new ArrayList<>();
+        for (var head = heap.peek(); head != null && !head.dueAt().isAfter(now); head = heap.peek()) {
+            heap.poll();
+            if (entries.get(head.service.getId()) != head || head.inFlight) {
+                continue;
+            }
+
+            head.inFlight = true;
+            due.add(head.service);
+        }
+        return due;
+    }
+
+    /// @return the instant the earliest pending collection is due, or null if nothing is pending
+    public synchronized Instant nextDue() {
+        for (var head = heap.peek(); head != null; head = heap.peek()) {
+            if (entries.get(head.service.getId()) == head && !head.inFlight) {
+                return head.dueAt();
+            }
+            heap.poll();
+        }
+        return null;
+    }
+
+    /// @return the number of tracked services, including those in flight
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void push(Service service, Instant dueAt) {
+        var entry = new Entry(service, dueAt, sequence++);
+        entries.put(service.getId(), entry);
+        heap.add(entry);
+    }
+
+    private static final class Entry {
+        private final Instant dueAt;
+        private final long    sequence;
+        private       Service service;
+        private       boolean inFlight;
+
+        Entry(Service service, Instant dueAt, long sequence) {
+            this.service  = service;
+            this.dueAt    = dueAt;
+            this.sequence = sequence;
+        }
+
+        Instant dueAt() {
+            return dueAt;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+    }
+}
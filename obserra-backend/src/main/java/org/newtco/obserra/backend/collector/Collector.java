@@ -1,5 +1,7 @@
 package org.newtco.obserra.backend.collector;
 
+import java.util.Set;
+
 import jakarta.annotation.Nonnull;
 
 import org.newtco.obserra.backend.model.Service;
@@ -23,6 +25,23 @@ public interface Collector<P extends CollectorProperties> {
      */
     void collect(Service service);
 
+    /**
+     * Called when the collection schedule is reconciled with the registry. Collectors that keep state per service
+     * should drop the state of services that are no longer registered.
+     *
+     * @param serviceIds The ids of the services that are still registered
+     */
+    default void retainServices(Set<String> serviceIds) {
+    }
+
+    /**
+     * Called when a service is removed from the registry. Collectors that keep state per service should drop it.
+     *
+     * @param serviceId The id of the removed service
+     */
+    default void removeService(String serviceId) {
+    }
+
     /**
      * Get the properties for this collector.
      */
@@ -9,7 +9,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.StructuredTaskScope.Subtask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -17,15 +18,19 @@ import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import org.newtco.obserra.backend.collector.CircuitBreaker.DefaultFailureClassifier;
+import org.newtco.obserra.backend.collector.CircuitBreaker.FailureClassifier.FailureType;
 import org.newtco.obserra.backend.collector.config.properties.CollectionProperties;
 import org.newtco.obserra.backend.config.properties.CircuitBreakerProperties;
+import org.newtco.obserra.backend.core.concurrent.AdaptiveConcurrencyLimiter;
 import org.newtco.obserra.backend.core.concurrent.RunnableTaskScope;
 import org.newtco.obserra.backend.core.concurrent.TaskScopeFactory;
 import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.storage.ServiceListener;
 import org.newtco.obserra.backend.storage.Storage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.ResourceAccessException;
@@ -39,35 +44,60 @@ import org.springframework.web.client.ResourceAccessException;
 /// collection fails, then it will be retried according to its retry configuration or at the next scheduled interval for
 /// all collections.
 ///
-/// A maximum number of [Collector#collect] calls across all services is maintained. It can be increased via the
-/// configuration setting `obserra.collection.max-concurrent-requests`.
+/// Services are kept in a [CollectionSchedule] keyed by the instant their next collection is due. Each scheduler tick
+/// (`obserra.collectors.tick-ms`) only dispatches services whose earliest collector is due, so the cost of a tick scales
+/// with the amount of due work rather than with the number of registered services. The schedule follows the registry
+/// through a [ServiceListener]: services are tracked as they are registered and dropped as they are deleted, without
+/// walking the fleet. A full reconciliation with the registry only runs at startup and then every
+/// `obserra.collectors.reconcile-interval-ms`, as a safety net.
+///
+/// A collector is due once its [CollectorProperties#checkInterval()] has elapsed since its last attempt, or the
+/// [Service#getCheckInterval()] if the service registered with one.
+///
+/// The number of concurrent [Collector#collect] calls across all services is bounded by an
+/// [AdaptiveConcurrencyLimiter]. The limit grows while collections complete quickly and backs off when they time out or
+/// fail to connect, never exceeding `obserra.collectors.max-concurrent-requests`.
+///
+/// A [ServiceCollectedEvent] is published after each collection of a service that stored new collector data.
 @Component
 @SuppressWarnings("preview")
 public class CollectorServiceImpl implements CollectorService {
-    private static final Logger logger = LoggerFactory.getLogger(CollectorServiceImpl.class);
+    private static final Logger   logger               = LoggerFactory.getLogger(CollectorServiceImpl.class);
+    private static final Duration MIN_RESCHEDULE_DELAY = Duration.ofSeconds(1);
+
+    /// Failures classified as timeouts (connect failures, socket timeouts) signal an overloaded network or target and
+    /// shrink the concurrency limit
+    private static final DefaultFailureClassifier OVERLOAD_CLASSIFIER = new DefaultFailureClassifier();
 
     private final Storage                             storage;
     private final List<Collector<?>>                  collectors;
     private final StateManager                        stateManager;
     private final CollectionProperties                collectionProperties;
-    private final Semaphore                           throttle;
+    private final AdaptiveConcurrencyLimiter          limiter;
     private final TaskScopeFactory<RunnableTaskScope> taskScopeFactory;
     private final Clock                               clock;
+    private final Executor                            dispatcher;
+    private final ApplicationEventPublisher           events;
+    private final CollectionSchedule                  schedule;
 
     // Original constructor maintained for backward compatibility
     @Autowired
     public CollectorServiceImpl(
         Storage storage,
         List<Collector<?>> collectors,
-        CollectionProperties collectionProperties) {
+        CollectionProperties collectionProperties,
+        AdaptiveConcurrencyLimiter collectionLimiter,
+        ApplicationEventPublisher events) {
         this(
             storage,
             collectors,
             collectionProperties,
             new StateManager(Clock.systemDefaultZone(), collectionProperties.springBoot().circuitBreaker()),
-            new Semaphore(collectionProperties.maxConcurrentRequests()),
+            collectionLimiter,
             new RunntableTaskScopeFactory(),
-            Clock.systemDefaultZone()
+            Clock.systemDefaultZone(),
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("collect/", 1).factory()),
+            events
         );
     }
 
@@ -77,31 +107,97 @@ public class CollectorServiceImpl implements CollectorService {
         List<Collector<?>> collectors,
         CollectionProperties collectionProperties,
         StateManager stateManager,
-        Semaphore throttle,
+        AdaptiveConcurrencyLimiter limiter,
         TaskScopeFactory<RunnableTaskScope> taskScopeFactory,
-        Clock clock) {
+        Clock clock,
+        Executor dispatcher,
+        ApplicationEventPublisher events) {
         this.storage              = storage;
         this.collectors           = List.copyOf(collectors);
         this.stateManager         = stateManager;
         this.collectionProperties = collectionProperties;
-        this.throttle             = throttle;
+        this.limiter              = limiter;
         this.taskScopeFactory     = taskScopeFactory;
         this.clock                = clock;
+        this.dispatcher           = dispatcher;
+        this.events               = events;
+        this.schedule             = new CollectionSchedule();
+
+        storage.addServiceListener(new RegistryListener());
     }
 
     /**
-     * Scheduled data collection for all services. This method is called periodically to collect data from all
-     * registered services.
+     * Scheduled data collection tick. Dispatches every service whose next collection is due.
      */
-    @Scheduled(fixedDelayString = "${obserra.collection.interval-ms:7000}")
+    @Scheduled(fixedDelayString = "${obserra.collectors.tick-ms:250}")
     public void collectAllDataPeriodicallyInBackground() {
-        var services = storage.getAllServices();
-        logger.debug("Found {} services for background data collection", services.size());
+        var now = clock.instant();
+        var due = schedule.pollDue(now);
+        if (due.isEmpty()) {
+            return;
+        }
+
+        logger.debug("{} of {} services due for background data collection", due.size(), schedule.size());
+        dispatcher.execute(() -> runServices(due));
+    }
+
+    /**
+     * Reconcile the schedule with all registered services, once at startup and then rarely. It picks up the services
+     * registered before the listener, e.g. restored from storage, and anything a listener call missed.
+     */
+    @Scheduled(fixedDelayString = "${obserra.collectors.reconcile-interval-ms:600000}")
+    public void reconcileInBackground() {
+        reconcile(storage.getAllServices(), clock.instant());
+    }
+
+    /**
+     * Synchronize the collection schedule with the registry. New services are due immediately, removed services are
+     * dropped from the schedule along with their collector states and the state each collector keeps for them.
+     */
+    private void reconcile(List<Service> services, Instant now) {
+        logger.debug("Reconciling collection schedule with {} registered services", services.size());
 
         // Cleanup stale states
         stateManager.pruneInactiveServices(services);
+        var activeIds = services.stream()
+                                .map(Service::getId)
+                                .collect(Collectors.toSet());
+        schedule.retainAll(activeIds);
+        for (var collector : collectors) {
+            collector.retainServices(activeIds);
+        }
+
+        for (var service : services) {
+            schedule.track(service, now);
+        }
+    }
+
+    /**
+     * Drop a service removed from the registry from the schedule, along with its collector states and the state each
+     * collector keeps for it.
+     */
+    private void forget(String serviceId) {
+        schedule.remove(serviceId);
+        stateManager.remove(serviceId);
+        for (var collector : collectors) {
+            collector.removeService(serviceId);
+        }
+    }
+
+    /**
+     * Put a service back on the schedule at the instant its earliest collector is next due.
+     */
+    private void reschedule(Service service) {
+        var now     = clock.instant();
+        var nextDue = stateManager.nextDue(service, collectors);
+        if (nextDue.equals(Instant.MAX)) {
+            nextDue = now.plus(collectionProperties.interval());
+        }
 
-        runServices(services);
+        // Never come back sooner than the minimum delay, otherwise a collector that was skipped (e.g. throttled)
+        // would be re-dispatched on every tick
+        var earliest = now.plus(MIN_RESCHEDULE_DELAY);
+        schedule.schedule(service, nextDue.isBefore(earliest) ? earliest : nextDue);
     }
 
     /**
@@ -128,12 +224,17 @@ public class CollectorServiceImpl implements CollectorService {
         try (var scope = taskScopeFactory.create("svc/")) {
             for (var service : services) {
                 if (!stateManager.serviceState(service).isServiceEligible()) {
+                    reschedule(service);
                     continue;
                 }
 
                 scope.fork(() -> {
-                    //TODO: Services with their own timeouts
-                    runService(service, collectionProperties.timeout());
+                    try {
+                        //TODO: Services with their own timeouts
+                        runService(service, collectionProperties.timeout());
+                    } finally {
+                        reschedule(service);
+                    }
                     return null;
                 });
             }
@@ -159,7 +260,8 @@ public class CollectorServiceImpl implements CollectorService {
             return;
         }
 
-        var deadline = clock.instant().plus(timeout);
+        var deadline    = clock.instant().plus(timeout);
+        var dataVersion = service.collectorData().version();
 
         try (var scope = taskScopeFactory.create("svc/" + service.getId())) {
             var tasks = new ArrayList<Subtask<Void>>();
@@ -189,18 +291,25 @@ public class CollectorServiceImpl implements CollectorService {
         } catch (TimeoutException e) {
             //TODO: This may be redundant if runCollector updates it
             stateManager.onTimeout(service);
+        } finally {
+            // Collectors that finished before a timeout may still have stored data
+            if (service.collectorData().version() != dataVersion) {
+                events.publishEvent(new ServiceCollectedEvent(service));
+            }
         }
     }
 
     @Override
     public void runCollector(Service service, Collector<?> collector) throws InterruptedException {
         try {
-            if (!throttle.tryAcquire(collectionProperties.timeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            var acquired = limiter.tryAcquire(collectionProperties.timeout().toMillis(), TimeUnit.MILLISECONDS);
+            if (acquired.isEmpty()) {
                 // Other collectors are still running. This isn't an error for this collector, it just means
                 // we ran out of time and don't want to hold everything up
                 return;
             }
 
+            var permit = acquired.get();
             try (var scope = taskScopeFactory.create("svc/" + service.getId() + "/col/" + collector.type())) {
                 var task = scope.fork(() -> {
                     collector.collect(service);
@@ -214,13 +323,20 @@ public class CollectorServiceImpl implements CollectorService {
                     case UNAVAILABLE -> {
                         //TODO: For my use, when can this happen?
                     }
-                    case SUCCESS -> // Update the service and collector
+                    case SUCCESS -> { // Update the service and collector
                         stateManager.onSuccess(service, collector);
-                    case FAILED -> // Collector failed, update the service and collector
+                        permit.onSuccess();
+                    }
+                    case FAILED -> { // Collector failed, update the service and collector
                         stateManager.onFailure(service, collector, task.exception());
+                        if (OVERLOAD_CLASSIFIER.classify(task.exception()) == FailureType.TIMEOUT) {
+                            permit.onDropped();
+                        }
+                    }
                 }
             } catch (TimeoutException e) {
                 stateManager.onTimeout(service, collector);
+                permit.onDropped();
             } catch (InterruptedException e) {
                 // Parent scope was closed
 
@@ -228,7 +344,8 @@ public class CollectorServiceImpl implements CollectorService {
 
                 Thread.currentThread().interrupt();
             } finally {
-                throttle.release();
+                // No-op if the outcome was already recorded above
+                permit.release();
             }
         } catch (InterruptedException e) {
             // Parent scope was closed
@@ -239,6 +356,21 @@ public class CollectorServiceImpl implements CollectorService {
         }
     }
 
+    /**
+     * Keeps the schedule in step with the registry as services are registered, updated and deleted.
+     */
+    private final class RegistryListener implements ServiceListener {
+        @Override
+        public void onServiceChanged(Service service) {
+            schedule.track(service, clock.instant());
+        }
+
+        @Override
+        public void onServiceDeleted(String serviceId) {
+            forget(serviceId);
+        }
+    }
+
     private static class RunntableTaskScopeFactory implements TaskScopeFactory<RunnableTaskScope> {
 
         @Override
@@ -294,6 +426,14 @@ public class CollectorServiceImpl implements CollectorService {
             serviceState(service).onFailure(collector, error);
         }
 
+        /// The instant at which the earliest of the given collectors is next due for the service, taking the circuit
+        /// breakers of both the service and the collectors into account.
+        ///
+        /// @return the next due instant, or [Instant#MAX] if there are no collectors
+        public Instant nextDue(Service service, List<Collector<?>> collectors) {
+            return serviceState(service).nextDue(collectors);
+        }
+
         public void pruneInactiveServices(List<Service> services) {
             var activeIds = services.stream()
                 .map(Service::getId)
@@ -302,10 +442,16 @@ public class CollectorServiceImpl implements CollectorService {
             states.keySet().removeIf(id -> !activeIds.contains(id));
         }
 
+        public void remove(String serviceId) {
+            states.remove(serviceId);
+        }
+
         // visible for testing
         ServiceState serviceState(Service service) {
-            return states.computeIfAbsent(service.getId(),
-                                          serviceId -> new ServiceState(clock, serviceId + "/" + service.getName(), config));
+            var state = states.computeIfAbsent(service.getId(),
+                                               serviceId -> new ServiceState(clock, serviceId + "/" + service.getName(), config));
+            state.checkInterval(service.getCheckInterval());
+            return state;
         }
     }
 
@@ -319,6 +465,7 @@ public class CollectorServiceImpl implements CollectorService {
         private final String                      stateId;
         private final CircuitBreaker              serviceBreaker;
         private final Map<String, CollectorState> collectorStates;
+        private volatile Duration                 checkInterval;
 
         public ServiceState(Clock clock, String stateId, CircuitBreakerProperties config) {
             this.clock           = clock;
@@ -339,6 +486,26 @@ public class CollectorServiceImpl implements CollectorService {
             return stateId;
         }
 
+        /// Sets the service's own check interval, which takes precedence over the collectors' configured intervals.
+        ///
+        /// @param checkInterval the interval, or null to use the collectors' intervals
+        void checkInterval(Duration checkInterval) {
+            this.checkInterval = checkInterval;
+        }
+
+        public Instant nextDue(List<Collector<?>> collectors) {
+            var due = Instant.MAX;
+            for (var collector : collectors) {
+                var collectorDue = collectorState(collector).nextDue();
+                if (collectorDue.isBefore(due)) {
+                    due = collectorDue;
+                }
+            }
+
+            var serviceDue = serviceBreaker.nextAttempt();
+            return serviceDue.isAfter(due) ? serviceDue : due;
+        }
+
         public boolean isServiceEligible() {
             return serviceBreaker.tryAcquire();
         }
@@ -416,6 +583,17 @@ public class CollectorServiceImpl implements CollectorService {
                 return stateId;
             }
 
+            /// The instant this collector is next eligible, accounting for its circuit breaker
+            public synchronized Instant nextDue() {
+                var breakerDue = breaker.nextAttempt();
+                return breakerDue.isAfter(nextAttempt) ? breakerDue : nextAttempt;
+            }
+
+            private Duration checkInterval() {
+                var serviceInterval = ServiceState.this.checkInterval;
+                return serviceInterval != null ? serviceInterval : properties.checkInterval();
+            }
+
             /**
              * Whether the Collector is eligible to attempt data collection now.
              */
@@ -450,13 +628,13 @@ public class CollectorServiceImpl implements CollectorService {
                     delayMillis = (long) (delayMillis * jitter);
 
                     // Cap the max delay to avoid extreme waits
-                    long maxDelayMillis = properties.checkInterval().toMillis() / 2;
+                    long maxDelayMillis = checkInterval().toMillis() / 2;
                     delayMillis = Math.min(delayMillis, maxDelayMillis);
 
                     nextAttempt = clock.instant().plusMillis(delayMillis);
                     logger.debug("Scheduled retry #{} with delay of {}ms", attempts, delayMillis);
                 } else {
-                    nextAttempt = clock.instant().plus(properties.checkInterval());
+                    nextAttempt = clock.instant().plus(checkInterval());
                     attempts    = 0;
                 }
             }
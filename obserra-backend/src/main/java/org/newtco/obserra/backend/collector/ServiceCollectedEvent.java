@@ -0,0 +1,11 @@
+package org.newtco.obserra.backend.collector;
+
+import org.newtco.obserra.backend.model.Service;
+
+/// Published after a collection of a service stored new collector data.
+///
+/// Listeners run on the collecting thread, so they should hand off anything slow.
+///
+/// @param service the collected service; its current collector data is at least as new as the collection
+public record ServiceCollectedEvent(Service service) {
+}
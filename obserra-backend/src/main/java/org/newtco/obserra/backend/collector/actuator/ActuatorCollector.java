@@ -1,5 +1,7 @@
 package org.newtco.obserra.backend.collector.actuator;
 
+import java.util.List;
+
 import org.newtco.obserra.backend.collector.Collector;
 import org.newtco.obserra.backend.collector.CollectorProperties;
 import org.newtco.obserra.backend.model.ActuatorEndpoint;
@@ -29,4 +31,14 @@ public interface ActuatorCollector<P extends CollectorProperties> extends Collec
     default boolean canCollect(ActuatorEndpoint endpoint) {
         return endpoint.getType().equals(type());
     }
+
+    /**
+     * Called after the actuator endpoints of a service have been (re)discovered. Collectors that cache anything about
+     * the service's endpoints should drop it here.
+     *
+     * @param service   The service whose endpoints were discovered
+     * @param endpoints The supported endpoints that were discovered
+     */
+    default void onEndpointsDiscovered(Service service, List<ActuatorEndpoint> endpoints) {
+    }
 }
@@ -52,7 +52,7 @@ public class DiscoveryService {
                 .body(ActuatorLinks.class);
 
             if (null != actuatorLinks) {
-                return actuatorLinks._links().entrySet().stream()
+                var endpoints = actuatorLinks._links().entrySet().stream()
                     .map(entry -> new ActuatorEndpoint()
                         .setType(entry.getKey())
                         .setHref(entry.getValue().getHref())
@@ -60,6 +60,9 @@ public class DiscoveryService {
                         .setEnabled(true))
                     .filter(this::isSupportedActuator)
                     .toList();
+
+                collectors.forEach(collector -> collector.onEndpointsDiscovered(service, endpoints));
+                return endpoints;
             }
         } catch (HttpStatusCodeException e) {
             logger.error("Error discovering Spring Boot actuator endpoints for service {}: {}", service.getName(), e.getMessage(), e);
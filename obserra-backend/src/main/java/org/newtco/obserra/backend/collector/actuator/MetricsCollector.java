@@ -1,11 +1,23 @@
 package org.newtco.obserra.backend.collector.actuator;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
 import jakarta.annotation.Nonnull;
 
 import org.newtco.obserra.backend.collector.CollectionException;
 import org.newtco.obserra.backend.collector.CollectorUtils;
 import org.newtco.obserra.backend.collector.config.CollectorConfig;
 import org.newtco.obserra.backend.collector.config.properties.SpringBootProperties.HealthProperties.MetricsProperties;
+import org.newtco.obserra.backend.core.concurrent.TaskScopeFactory;
 import org.newtco.obserra.backend.model.ActuatorEndpoint;
 import org.newtco.obserra.backend.model.Service;
 import org.newtco.obserra.shared.model.ServiceMetrics.CPUMetrics;
@@ -24,18 +36,50 @@ import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @Component
+@SuppressWarnings("preview")
 public class MetricsCollector implements ActuatorCollector<MetricsProperties> {
     private static final Logger logger = LoggerFactory.getLogger(MetricsCollector.class);
 
-    private final RestClient        webClient;
-    private final MetricsProperties metricsProperties;
+    /// Metrics queried individually from the metrics endpoint when the obserra endpoint isn't available
+    private static final List<String> FALLBACK_METRICS = List.of(
+        "jvm.memory.used", "jvm.memory.committed", "jvm.memory.max", "jvm.gc.live.data.size", "jvm.gc.max.data.size",
+        "process.cpu.usage", "system.cpu.usage", "system.cpu.count",
+        "jvm.threads.live", "jvm.threads.daemon", "jvm.threads.peak",
+        "process.uptime", "process.start.time",
+        "disk.free", "disk.total",
+        "executor.active", "executor.pool.size", "executor.pool.core", "executor.pool.max", "executor.queued"
+    );
+
+    private final RestClient                                    webClient;
+    private final MetricsProperties                             metricsProperties;
+    private final TaskScopeFactory<StructuredTaskScope<Double>> taskScopeFactory;
+    private final Clock                                         clock;
+
+    /// How long a metric the service doesn't provide is skipped before it is queried again
+    private static final Duration UNAVAILABLE_RETRY = Duration.ofMinutes(10);
+
+    /// Per service id, the fallback metrics the service doesn't provide (4xx or no measurements), with the time until
+    /// which they are skipped. They are queried again after [#UNAVAILABLE_RETRY], as an auth error may be fixed without
+    /// the service changing, or once the service's endpoints are rediscovered, and dropped once the service is removed.
+    private final Map<String, Map<String, Instant>> unavailableMetrics = new ConcurrentHashMap<>();
 
     @Autowired
     public MetricsCollector(
         CollectorConfig config
+    ) {
+        this(config, new MetricsTaskScopeFactory(), Clock.systemDefaultZone());
+    }
+
+    // visible for testing
+    MetricsCollector(
+        CollectorConfig config,
+        TaskScopeFactory<StructuredTaskScope<Double>> taskScopeFactory,
+        Clock clock
     ) {
         this.metricsProperties = config.properties().collectors().springBoot().metrics();
         this.webClient         = config.webClient();
+        this.taskScopeFactory  = taskScopeFactory;
+        this.clock             = clock;
     }
 
     @Nonnull
@@ -61,6 +105,23 @@ public class MetricsCollector implements ActuatorCollector<MetricsProperties> {
         return endpoint.getType().equals("metrics") || endpoint.getType().equals("obserra");
     }
 
+    @Override
+    public void onEndpointsDiscovered(Service service, List<ActuatorEndpoint> endpoints) {
+        if (service.getId() != null) {
+            unavailableMetrics.remove(service.getId());
+        }
+    }
+
+    @Override
+    public void retainServices(Set<String> serviceIds) {
+        unavailableMetrics.keySet().retainAll(serviceIds);
+    }
+
+    @Override
+    public void removeService(String serviceId) {
+        unavailableMetrics.remove(serviceId);
+    }
+
     @Override
     public void collect(Service service, ActuatorEndpoint endpoint) {
         logger.debug("Checking metrics for service: {} ({})", service.getName(), service.getId());
@@ -96,84 +157,156 @@ public class MetricsCollector implements ActuatorCollector<MetricsProperties> {
     /**
      * Fallback metrics collector when the obserra endpoint isn't available. Will construct
      * the obserra endpoint by querying each endpoint that makes up the ServiceMetrics
-     * record.
+     * record. The individual metrics are queried concurrently, skipping those the service
+     * is known not to provide.
      * @param service the Service object
      * @param endpoint the metrics actuator endpoint
      */
 
     private void collectMetrics(Service service, ActuatorEndpoint endpoint) {
+        var values = fetchMetrics(service, endpoint);
+
         var data = new ServiceMetrics(
             new MemoryMetrics(
-                getMetricsEndpointValue(service, endpoint, "jvm.memory.used"),
-                getMetricsEndpointValue(service, endpoint, "jvm.memory.committed"),
-                getMetricsEndpointValue(service, endpoint, "jvm.memory.max"),
-                getMetricsEndpointValue(service, endpoint, "jvm.gc.live.data.size"),
-                getMetricsEndpointValue(service, endpoint, "jvm.gc.max.data.size")
+                values.get("jvm.memory.used"),
+                values.get("jvm.memory.committed"),
+                values.get("jvm.memory.max"),
+                values.get("jvm.gc.live.data.size"),
+                values.get("jvm.gc.max.data.size")
             ),
             new CPUMetrics(
-                getMetricsEndpointValue(service, endpoint, "process.cpu.usage"),
-                getMetricsEndpointValue(service, endpoint, "system.cpu.usage"),
-                getMetricsEndpointValue(service, endpoint, "system.cpu.count")
+                values.get("process.cpu.usage"),
+                values.get("system.cpu.usage"),
+                values.get("system.cpu.count")
             ),
             new ThreadMetrics(
-                getMetricsEndpointValue(service, endpoint, "jvm.threads.live"),
-                getMetricsEndpointValue(service, endpoint, "jvm.threads.daemon"),
-                getMetricsEndpointValue(service, endpoint, "jvm.threads.peak")
+                values.get("jvm.threads.live"),
+                values.get("jvm.threads.daemon"),
+                values.get("jvm.threads.peak")
             ),
             new UptimeMetrics(
-                getMetricsEndpointValue(service, endpoint, "process.uptime"),
-                getMetricsEndpointValue(service, endpoint, "process.start.time")
+                values.get("process.uptime"),
+                values.get("process.start.time")
             ),
             new DiskMetrics(
-                getMetricsEndpointValue(service, endpoint, "disk.free"),
-                getMetricsEndpointValue(service, endpoint, "disk.total")
+                values.get("disk.free"),
+                values.get("disk.total")
             ),
             new ThreadPoolMetrics(
-                getMetricsEndpointValue(service, endpoint, "executor.active"),
-                getMetricsEndpointValue(service, endpoint, "executor.pool.size"),
-                getMetricsEndpointValue(service, endpoint, "executor.pool.core"),
-                getMetricsEndpointValue(service, endpoint, "executor.pool.max"),
-                getMetricsEndpointValue(service, endpoint, "executor.queued")
+                values.get("executor.active"),
+                values.get("executor.pool.size"),
+                values.get("executor.pool.core"),
+                values.get("executor.pool.max"),
+                values.get("executor.queued")
             )
         );
 
         service.collectorData(type(), data);
     }
 
-    private Double getMetricsEndpointValue(Service service, ActuatorEndpoint endpoint, String metric) {
-        // The endpoint will be the /metrics base endpoint URI. We need to construct the
-        // named metric by appending the metric name to the metrics/ URI
-        var uri = UriComponentsBuilder.fromUriString(endpoint.getHref())
-            .path(metric)
-            .build().toUri();
-
-        try {
-            var descriptor = webClient.get()
-                .uri(uri)
-                .retrieve()
-                .onStatus(CollectorUtils.collectorHttpErrorHandler(service, this))
-                .body(MetricDescriptor.class);
+    /**
+     * Query all fallback metrics concurrently. Metrics that don't complete before the collector
+     * timeout are left out of the result, as are metrics the service doesn't provide.
+     * @return metric values by name; absent when not available
+     */
+    private Map<String, Double> fetchMetrics(Service service, ActuatorEndpoint endpoint) {
+        var now = clock.instant();
+        var unavailable = service.getId() != null
+            ? unavailableMetrics.computeIfAbsent(service.getId(), _ -> new ConcurrentHashMap<>())
+            : new ConcurrentHashMap<String, Instant>();
+        unavailable.values().removeIf(until -> !now.isBefore(until));
 
-            if (descriptor == null || descriptor.getMeasurements().isEmpty()) {
-                return null;
+        // Filled by the subtasks themselves, as subtasks can't be read once the join timed out
+        var values = new ConcurrentHashMap<String, Double>();
+        try (var scope = taskScopeFactory.create("metrics/" + service.getId() + "/")) {
+            for (var metric : FALLBACK_METRICS) {
+                if (!unavailable.containsKey(metric)) {
+                    scope.fork(() -> {
+                        var value = getMetricsEndpointValue(service, endpoint, metric, unavailable);
+                        if (value != null) {
+                            values.put(metric, value);
+                        }
+                        return value;
+                    });
+                }
             }
 
-            logger.debug("Querying metrics endpoint at {} returned {}", uri, descriptor);
+            scope.joinUntil(now.plus(metricsProperties.timeout()));
+        } catch (TimeoutException e) {
+            logger.debug("Timed out querying metrics for service {}, using partial results", service.getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return values;
+    }
 
-            return descriptor.getMeasurements().getFirst().getValue();
+    private Double getMetricsEndpointValue(Service service, ActuatorEndpoint endpoint, String metric,
+                                           Map<String, Instant> unavailable) {
+        try {
+            var value = queryMetric(service, endpoint, metric);
+            if (value == null) {
+                // The meter isn't registered in this service (e.g. no executors), don't ask again for a while
+                unavailable.put(metric, clock.instant().plus(UNAVAILABLE_RETRY));
+            }
+            return value;
         }
         catch (CollectionException e) {
-            logger.warn("Failed to collect metric {} for service {} from {}: {}",
-                        metric, service.getName(), uri, e.getMessage(), e);
+            if (!e.isRetriable()) {
+                // 404 and other client errors won't go away until the service changes, or its
+                // configuration is fixed
+                unavailable.put(metric, clock.instant().plus(UNAVAILABLE_RETRY));
+                logger.debug("Metric {} is not available for service {}: {}",
+                             metric, service.getName(), e.getMessage());
+                return null;
+            }
+
+            logger.warn("Failed to collect metric {} for service {}: {}",
+                        metric, service.getName(), e.getMessage(), e);
             return null;
 
         }
     }
 
+    /**
+     * Query a single metric from the metrics endpoint.
+     * @return the first measurement of the metric, or null if it has none
+     * @throws CollectionException if the endpoint responds with an error
+     */
+    // visible for testing
+    Double queryMetric(Service service, ActuatorEndpoint endpoint, String metric) {
+        // The endpoint will be the /metrics base endpoint URI. We need to construct the
+        // named metric by appending the metric name to the metrics/ URI
+        var uri = UriComponentsBuilder.fromUriString(endpoint.getHref())
+            .path(metric)
+            .build().toUri();
+
+        var descriptor = webClient.get()
+            .uri(uri)
+            .retrieve()
+            .onStatus(CollectorUtils.collectorHttpErrorHandler(service, this))
+            .body(MetricDescriptor.class);
+        if (descriptor == null || descriptor.getMeasurements().isEmpty()) {
+            return null;
+        }
+
+        logger.debug("Querying metrics endpoint at {} returned {}", uri, descriptor);
+
+        return descriptor.getMeasurements().getFirst().getValue();
+    }
+
 
     @Nonnull
     @Override
     public MetricsProperties properties() {
         return metricsProperties;
     }
+
+    private static class MetricsTaskScopeFactory implements TaskScopeFactory<StructuredTaskScope<Double>> {
+
+        @Override
+        public StructuredTaskScope<Double> create(String name, ThreadFactory factory) {
+            return new StructuredTaskScope<>(name, factory);
+        }
+    }
 }
@@ -1,28 +1,49 @@
 package org.newtco.obserra.backend.collector.config;
 
 
-import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
-import org.springframework.boot.http.client.ClientHttpRequestFactorySettings;
+import java.net.http.HttpClient;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.newtco.obserra.backend.core.concurrent.AdaptiveConcurrencyLimiter;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
 @Configuration
 public class CollectorConfig {
 
 
-    private final ConfigProperties properties;
-    private final RestClient       webClient;
+    private final ConfigProperties      properties;
+    private final HostConnectionLimiter connectionLimiter;
+    private final RestClient            webClient;
 
+    /**
+     * Builds the HTTP client shared by all collectors. A single JDK {@link HttpClient} keeps connections alive
+     * between collections and reuses its TLS sessions, so polling a service doesn't pay for a handshake each time,
+     * and multiplexes requests over HTTP/2 where the service supports it. The {@link HostConnectionLimiter} caps the
+     * connections per host.
+     */
     public CollectorConfig(
             ConfigProperties properties,
             RestClient.Builder webClientBuilder
     ) {
-        this.properties = properties;
-        this.webClient  = webClientBuilder.
-                requestFactory(ClientHttpRequestFactoryBuilder.detect().build(
-                        ClientHttpRequestFactorySettings.defaults()
-                                                        .withConnectTimeout(properties.webClient().connectTimeout())
-                                                        .withReadTimeout(properties.webClient().readTimeout())))
+        var settings = properties.webClient();
+        var httpClient = HttpClient.newBuilder()
+                                   .version(settings.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                                   .connectTimeout(settings.connectTimeout())
+                                   .followRedirects(HttpClient.Redirect.NORMAL)
+                                   .build();
+        var requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(settings.readTimeout());
+
+        this.properties        = properties;
+        this.connectionLimiter = new HostConnectionLimiter(settings.maxConnectionsPerHost(), settings.acquireTimeout());
+        this.webClient         = webClientBuilder
+                .requestFactory(requestFactory)
+                .requestInterceptor(connectionLimiter)
                 .defaultHeader("Content-Type", "application/json")
                 .defaultHeader("Accept", "application/json")
                 .build();
@@ -35,4 +56,67 @@ public class CollectorConfig {
     public RestClient webClient() {
         return webClient;
     }
+
+    public HostConnectionLimiter connectionLimiter() {
+        return connectionLimiter;
+    }
+
+    /**
+     * Adaptive limit on concurrent collector calls across all services, bounded by
+     * {@code obserra.collectors.max-concurrent-requests}.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter collectionLimiter() {
+        var limit = properties.concurrencyLimit();
+        return new AdaptiveConcurrencyLimiter(limit.initialLimit(),
+                                              limit.minLimit(),
+                                              properties.collectors().maxConcurrentRequests(),
+                                              limit.backoffRatio(),
+                                              limit.latencyThreshold());
+    }
+
+    /**
+     * Exposes the collection limiter's state as {@code obserra.collector.concurrency.*} gauges.
+     */
+    @Bean
+    public MeterBinder collectionLimiterMetrics(AdaptiveConcurrencyLimiter collectionLimiter) {
+        return registry -> {
+            Gauge.builder("obserra.collector.concurrency.limit", collectionLimiter, AdaptiveConcurrencyLimiter::limit)
+                 .description("Current adaptive limit on concurrent collector calls")
+                 .register(registry);
+            Gauge.builder("obserra.collector.concurrency.in-flight", collectionLimiter, AdaptiveConcurrencyLimiter::inFlight)
+                 .description("Collector calls currently holding a permit")
+                 .register(registry);
+            FunctionCounter.builder("obserra.collector.concurrency.rejected", collectionLimiter, AdaptiveConcurrencyLimiter::rejected)
+                           .description("Collector calls that timed out waiting for a permit")
+                           .register(registry);
+        };
+    }
+
+    /**
+     * Exposes the statistics of the collector HTTP client's connections as {@code obserra.collector.http.*} gauges.
+     */
+    @Bean
+    public MeterBinder collectorHttpClientMetrics() {
+        return registry -> {
+            Gauge.builder("obserra.collector.http.hosts", connectionLimiter, limiter -> limiter.stats().hosts())
+                 .description("Hosts with collector requests in flight or waiting")
+                 .register(registry);
+            Gauge.builder("obserra.collector.http.in-flight", connectionLimiter, limiter -> limiter.stats().inFlight())
+                 .description("Collector requests holding a connection")
+                 .register(registry);
+            Gauge.builder("obserra.collector.http.waiting", connectionLimiter, limiter -> limiter.stats().waiting())
+                 .description("Collector requests waiting for a connection to their host")
+                 .register(registry);
+            FunctionCounter.builder("obserra.collector.http.requests", connectionLimiter, limiter -> limiter.stats().requests())
+                           .description("Collector requests sent")
+                           .register(registry);
+            FunctionCounter.builder("obserra.collector.http.queued", connectionLimiter, limiter -> limiter.stats().queued())
+                           .description("Collector requests that had to wait for a connection to their host")
+                           .register(registry);
+            FunctionCounter.builder("obserra.collector.http.rejected", connectionLimiter, limiter -> limiter.stats().rejected())
+                           .description("Collector requests that timed out waiting for a connection to their host")
+                           .register(registry);
+        };
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.newtco.obserra.backend.collector.config;
 
 
 import org.newtco.obserra.backend.collector.config.properties.CollectionProperties;
+import org.newtco.obserra.backend.collector.config.properties.ConcurrencyLimitProperties;
 import org.newtco.obserra.backend.collector.config.properties.WebClientProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -9,19 +10,23 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @EnableConfigurationProperties({
         WebClientProperties.class,
-        CollectionProperties.class
+        CollectionProperties.class,
+        ConcurrencyLimitProperties.class
 })
 public class ConfigProperties {
 
-    private final WebClientProperties  webClient;
-    private final CollectionProperties collectors;
+    private final WebClientProperties        webClient;
+    private final CollectionProperties       collectors;
+    private final ConcurrencyLimitProperties concurrencyLimit;
 
     public ConfigProperties(
             WebClientProperties webClient,
-            CollectionProperties collectors
+            CollectionProperties collectors,
+            ConcurrencyLimitProperties concurrencyLimit
     ) {
-        this.webClient  = webClient;
-        this.collectors = collectors;
+        this.webClient        = webClient;
+        this.collectors       = collectors;
+        this.concurrencyLimit = concurrencyLimit;
     }
 
     public WebClientProperties webClient() {
@@ -31,4 +36,8 @@ public class ConfigProperties {
     public CollectionProperties collectors() {
         return collectors;
     }
+
+    public ConcurrencyLimitProperties concurrencyLimit() {
+        return concurrencyLimit;
+    }
 }
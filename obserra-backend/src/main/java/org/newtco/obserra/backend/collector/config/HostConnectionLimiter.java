@@ -0,0 +1,186 @@
+package org.newtco.obserra.backend.collector.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/// Caps the concurrent requests of the collector HTTP client to each host, and keeps the statistics of its connection
+/// pool.
+///
+/// The JDK `HttpClient` keeps idle connections alive for reuse, but opens another connection whenever the pooled ones
+/// to a host are busy, so a fan-out of collections to one service would open a connection per request. A request
+/// holds a permit of its host, identified by scheme, host and port, until its response is closed. That bounds the
+/// connections per host over HTTP/1.1, and the concurrent streams of the shared connection over HTTP/2.
+///
+/// A request waits up to the acquire timeout for a permit, then fails with a [ConnectException], like a connection
+/// that could not be established. Hosts are only tracked while they have requests in flight or waiting.
+public class HostConnectionLimiter implements ClientHttpRequestInterceptor {
+
+    private final int               maxPerHost;
+    private final long              acquireTimeoutNanos;
+    private final Map<String, Host> hosts    = new ConcurrentHashMap<>();
+    private final LongAdder         requests = new LongAdder();
+    private final LongAdder         queued   = new LongAdder();
+    private final LongAdder         rejected = new LongAdder();
+
+    /// @param maxPerHost     maximum number of concurrent requests to one host, at least 1
+    /// @param acquireTimeout how long a request waits for a permit of its host
+    public HostConnectionLimiter(int maxPerHost, Duration acquireTimeout) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("Max connections per host %d must be at least 1".formatted(maxPerHost));
+        }
+        this.maxPerHost          = maxPerHost;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+        throws IOException {
+        var key  = key(request.getURI());
+        var host = hosts.compute(key, (k, h) -> {
+            h = h != null ? h : new Host(maxPerHost);
+            h.users++;
+            return h;
+        });
+        requests.increment();
+
+        try {
+            acquire(key, host);
+        } catch (IOException e) {
+            leave(key);
+            throw e;
+        }
+
+        try {
+            return new ReleasingResponse(execution.execute(request, body), () -> release(key, host));
+        } catch (IOException | RuntimeException e) {
+            release(key, host);
+            throw e;
+        }
+    }
+
+    /// @return the current statistics of the connection pool
+    public Stats stats() {
+        int inFlight = 0;
+        int waiting  = 0;
+        for (var host : hosts.values()) {
+            int hostInFlight = maxPerHost - host.permits.availablePermits();
+            inFlight += hostInFlight;
+            waiting += Math.max(0, host.users - hostInFlight);
+        }
+        return new Stats(hosts.size(), inFlight, waiting, requests.sum(), queued.sum(), rejected.sum());
+    }
+
+    private void acquire(String key, Host host) throws IOException {
+        if (host.permits.tryAcquire()) {
+            return;
+        }
+
+        queued.increment();
+        try {
+            if (!host.permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new ConnectException("Timed out waiting for a connection to " + key);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + key);
+        }
+    }
+
+    private void release(String key, Host host) {
+        host.permits.release();
+        leave(key);
+    }
+
+    private void leave(String key) {
+        hosts.compute(key, (k, h) -> --h.users == 0 ? null : h);
+    }
+
+    private static String key(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    /// Statistics of the connection pool.
+    ///
+    /// @param hosts    number of hosts with requests in flight or waiting
+    /// @param inFlight number of requests holding a connection
+    /// @param waiting  number of requests waiting for a connection
+    /// @param requests total number of requests
+    /// @param queued   total number of requests that had to wait for a connection
+    /// @param rejected total number of requests that timed out waiting for a connection
+    public record Stats(int hosts, int inFlight, int waiting, long requests, long queued, long rejected) {
+    }
+
+    private static final class Host {
+        final Semaphore permits;
+        int             users; // requests in flight or waiting, guarded by the hosts map
+
+        Host(int maxPerHost) {
+            this.permits = new Semaphore(maxPerHost, true);
+        }
+    }
+
+    /// Releases the permit of the request once the response is closed, i.e. once its connection is free again.
+    private static final class ReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Runnable           release;
+        private final AtomicBoolean      released = new AtomicBoolean();
+
+        ReleasingResponse(ClientHttpResponse delegate, Runnable release) {
+            this.delegate = delegate;
+            this.release  = release;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    release.run();
+                }
+            }
+        }
+    }
+}
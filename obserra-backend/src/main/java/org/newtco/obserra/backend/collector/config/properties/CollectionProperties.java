@@ -13,7 +13,9 @@ import org.springframework.validation.annotation.Validated;
 /**
  * Represents collection properties used by the collector.
  *
- * @param interval              The interval at which to collect data, defaults to 5 seconds.
+ * @param interval              The delay before a service is collected again when none of its collectors is
+ *                              enabled, defaults to 5 seconds. Collections themselves run on each collector's
+ *                              check interval.
  * @param timeout               The maximum duration for all collection attempts, defaults to 60 seconds.
  * @param maxConcurrentRequests The maximum number of concurrent requests allowed. Defaults to 250.
  * @param springBoot            Spring Boot collector properties.
@@ -0,0 +1,41 @@
+package org.newtco.obserra.backend.collector.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/// Adaptive concurrency limit applied to [org.newtco.obserra.backend.collector.Collector#collect] calls across all
+/// services. The upper bound of the limit is `obserra.collectors.max-concurrent-requests`.
+///
+/// @param initialLimit     The limit used at startup. Defaults to 20.
+/// @param minLimit         The limit never drops below this value. Defaults to 1.
+/// @param backoffRatio     Factor applied to the limit when a collection times out or fails to connect. Defaults to
+///                         0.9.
+/// @param latencyThreshold Collections that succeed but take longer than this are treated like timeouts. Defaults to 2
+///                         seconds.
+@ConfigurationProperties(prefix = "obserra.collectors.concurrency-limit")
+public record ConcurrencyLimitProperties(
+    Integer initialLimit,
+    Integer minLimit,
+    Double backoffRatio,
+    Duration latencyThreshold) {
+
+    public ConcurrencyLimitProperties() {
+        this(null, null, null, null);
+    }
+
+    public ConcurrencyLimitProperties {
+        if (initialLimit == null) {
+            initialLimit = 20;
+        }
+        if (minLimit == null) {
+            minLimit = 1;
+        }
+        if (backoffRatio == null) {
+            backoffRatio = 0.9;
+        }
+        if (latencyThreshold == null) {
+            latencyThreshold = Duration.ofSeconds(2);
+        }
+    }
+}
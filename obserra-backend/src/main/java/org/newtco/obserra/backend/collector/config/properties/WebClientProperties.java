@@ -5,13 +5,34 @@ import org.springframework.boot.context.properties.bind.DefaultValue;
 
 import java.time.Duration;
 
+/**
+ * Settings of the HTTP client shared by the collectors.
+ *
+ * @param connectTimeout        timeout of establishing a connection
+ * @param readTimeout           timeout of receiving a response
+ * @param maxConnectionsPerHost maximum number of concurrent requests, and so connections, to one host
+ * @param acquireTimeout        how long a request waits for a connection to its host when all are busy
+ * @param http2                 whether HTTP/2 is used where the target supports it, negotiated over TLS or upgraded
+ *                              from HTTP/1.1 (h2c)
+ */
 @ConfigurationProperties(prefix = "obserra.collectors.web-client")
-public record WebClientProperties(Duration connectTimeout, Duration readTimeout) {
+public record WebClientProperties(
+        Duration connectTimeout,
+        Duration readTimeout,
+        int maxConnectionsPerHost,
+        Duration acquireTimeout,
+        boolean http2) {
 
     public WebClientProperties(
             @DefaultValue("5s") Duration connectTimeout,
-            @DefaultValue("5s") Duration readTimeout) {
-        this.connectTimeout = connectTimeout;
-        this.readTimeout    = readTimeout;
+            @DefaultValue("5s") Duration readTimeout,
+            @DefaultValue("8") int maxConnectionsPerHost,
+            @DefaultValue("5s") Duration acquireTimeout,
+            @DefaultValue("true") boolean http2) {
+        this.connectTimeout        = connectTimeout;
+        this.readTimeout           = readTimeout;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.acquireTimeout        = acquireTimeout;
+        this.http2                 = http2;
     }
 }
@@ -1,7 +1,16 @@
 package org.newtco.obserra.backend.config;
 
+import org.newtco.obserra.backend.config.properties.EventStreamProperties;
+import org.newtco.obserra.backend.config.properties.KubernetesDiscoveryProperties;
+import org.newtco.obserra.backend.config.properties.StorageProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({
+        StorageProperties.class,
+        EventStreamProperties.class,
+        KubernetesDiscoveryProperties.class
+})
 public class ObserraConfig {
 }
\ No newline at end of file
@@ -1,12 +1,16 @@
 package org.newtco.obserra.backend.config;
 
+import java.util.List;
+
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
  * Web configuration for the backend.
- * This class configures CORS to allow the frontend client to communicate directly with the backend.
+ * This class configures CORS to allow the frontend client to communicate directly with the backend, and registers the
+ * converter writing pre-serialized JSON.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
@@ -20,4 +24,10 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(true)
                 .maxAge(3600);
     }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Ahead of Jackson, which accepts any type
+        converters.add(0, new JsonFragmentsHttpMessageConverter());
+    }
 }
@@ -0,0 +1,41 @@
+package org.newtco.obserra.backend.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/// Configuration properties for the Server-Sent Events stream of collection results.
+///
+/// @param logCapacity  Number of recent events kept for clients resuming with `Last-Event-ID`. A client that missed
+///                     more is told to reload instead. Defaults to 4096.
+/// @param clientBuffer Number of events buffered per connection before the connection falls back to reading the
+///                     event log. Defaults to 64.
+/// @param timeout      Time after which a connection is closed, for the client to reconnect. Defaults to 30 minutes.
+/// @param heartbeat    Idle time after which a comment is sent, so proxies keep the connection open and closed
+///                     connections are noticed. Defaults to 15 seconds.
+@ConfigurationProperties(prefix = "obserra.events")
+public record EventStreamProperties(
+    Integer logCapacity,
+    Integer clientBuffer,
+    Duration timeout,
+    Duration heartbeat
+) {
+    public EventStreamProperties() {
+        this(null, null, null, null);
+    }
+
+    public EventStreamProperties {
+        if (logCapacity == null) {
+            logCapacity = 4096;
+        }
+        if (clientBuffer == null) {
+            clientBuffer = 64;
+        }
+        if (timeout == null) {
+            timeout = Duration.ofMinutes(30);
+        }
+        if (heartbeat == null) {
+            heartbeat = Duration.ofSeconds(15);
+        }
+    }
+}
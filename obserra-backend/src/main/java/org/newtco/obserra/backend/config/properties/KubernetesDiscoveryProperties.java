@@ -0,0 +1,52 @@
+package org.newtco.obserra.backend.config.properties;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/// Configuration properties for Kubernetes service discovery. The Kubernetes collector is configured separately.
+///
+/// @param enabled  Whether services are discovered in Kubernetes clusters. Defaults to false.
+/// @param clusters The clusters to discover services in, each watched on its own. Defaults to none, in which case the
+///                 cluster of the default client is used: the cluster the backend runs in, or the current context of
+///                 the kubeconfig.
+@ConfigurationProperties(prefix = "obserra.service-discovery.kubernetes")
+public record KubernetesDiscoveryProperties(
+    Boolean enabled,
+    List<ClusterProperties> clusters
+) {
+    public KubernetesDiscoveryProperties() {
+        this(null, null);
+    }
+
+    public KubernetesDiscoveryProperties {
+        if (enabled == null) {
+            enabled = false;
+        }
+        if (clusters == null) {
+            clusters = List.of();
+        }
+    }
+
+    /// A cluster to discover services in, given by a kubeconfig context.
+    ///
+    /// @param name       Name of the cluster, tagged on its services. Defaults to the context, or `default` for the
+    ///                   current context.
+    /// @param context    Context of the kubeconfig to connect with. Defaults to the current context.
+    /// @param kubeconfig Path of the kubeconfig file. Defaults to the first file of `KUBECONFIG`, or `~/.kube/config`.
+    public record ClusterProperties(
+        String name,
+        String context,
+        String kubeconfig
+    ) {
+        public ClusterProperties() {
+            this(null, null, null);
+        }
+
+        public ClusterProperties {
+            if (name == null) {
+                name = context != null ? context : "default";
+            }
+        }
+    }
+}
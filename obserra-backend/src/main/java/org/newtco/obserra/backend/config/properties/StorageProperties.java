@@ -0,0 +1,181 @@
+package org.newtco.obserra.backend.config.properties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/// Configuration properties for the storage.
+///
+/// @param type             Storage implementation, `memory` or `segment`. `segment` keeps the compressed metric chunks
+///                         in memory-mapped segment files so metrics history survives restarts. Defaults to `memory`.
+/// @param logCapacity      Maximum number of log records kept per service, rounded up to a power of two. Older records
+///                         are overwritten. Defaults to 4096.
+/// @param logTemplates     Settings of the log template mining.
+/// @param metricsRetention Minimum number of samples retained per service and metric series. Older samples are
+///                         dropped a whole chunk at a time. Defaults to 51840, i.e. three days at a 5 second
+///                         collection interval.
+/// @param metricsChunkSize Number of samples per compressed metrics chunk. Only the newest chunk of each series is kept
+///                         uncompressed. Defaults to 120, i.e. ten minutes at a 5 second collection interval.
+/// @param metricsRollups   Retention of the metric rollup tiers.
+/// @param segments         Settings of the `segment` storage.
+/// @param journal          Settings of the service registry journal.
+@ConfigurationProperties(prefix = "obserra.storage")
+public record StorageProperties(
+    String type,
+    Integer logCapacity,
+    LogTemplateProperties logTemplates,
+    Integer metricsRetention,
+    Integer metricsChunkSize,
+    RollupProperties metricsRollups,
+    SegmentProperties segments,
+    JournalProperties journal
+) {
+    public StorageProperties() {
+        this(null, null, null, null, null, null, null, null);
+    }
+
+    public StorageProperties {
+        if (type == null) {
+            type = "memory";
+        }
+        if (logCapacity == null) {
+            logCapacity = 4096;
+        }
+        if (logTemplates == null) {
+            logTemplates = new LogTemplateProperties();
+        }
+        if (metricsRetention == null) {
+            metricsRetention = 51840;
+        }
+        if (metricsChunkSize == null) {
+            metricsChunkSize = 120;
+        }
+        if (metricsRollups == null) {
+            metricsRollups = new RollupProperties();
+        }
+        if (segments == null) {
+            segments = new SegmentProperties();
+        }
+        if (journal == null) {
+            journal = new JournalProperties();
+        }
+    }
+
+    /// Settings of the miner grouping log messages into templates, so only the template and the parameters of each
+    /// message are kept.
+    ///
+    /// @param enabled      Whether log messages are grouped into templates. Defaults to true.
+    /// @param depth        Depth of the parse tree routing messages to templates, at least 3. Defaults to 4.
+    /// @param similarity   Share of tokens a message must have in common with a template to join it. Defaults to 0.4.
+    /// @param maxChildren  Maximum number of children of a parse tree node. Defaults to 100.
+    /// @param maxTemplates Maximum number of templates per service. Messages matching none of them beyond that are kept
+    ///                     as they are. Defaults to 1000.
+    public record LogTemplateProperties(
+        Boolean enabled,
+        Integer depth,
+        Double similarity,
+        Integer maxChildren,
+        Integer maxTemplates
+    ) {
+        public LogTemplateProperties() {
+            this(null, null, null, null, null);
+        }
+
+        public LogTemplateProperties {
+            if (enabled == null) {
+                enabled = true;
+            }
+            if (depth == null) {
+                depth = 4;
+            }
+            if (similarity == null) {
+                similarity = 0.4;
+            }
+            if (maxChildren == null) {
+                maxChildren = 100;
+            }
+            if (maxTemplates == null) {
+                maxTemplates = 1000;
+            }
+        }
+    }
+
+    /// How long each rollup tier is retained. A zero duration disables the tier.
+    ///
+    /// @param oneMinute   Retention of the 1 minute tier. Defaults to 1 day.
+    /// @param fiveMinutes Retention of the 5 minute tier. Defaults to 7 days.
+    /// @param oneHour     Retention of the 1 hour tier. Defaults to 90 days.
+    public record RollupProperties(
+        Duration oneMinute,
+        Duration fiveMinutes,
+        Duration oneHour
+    ) {
+        public RollupProperties() {
+            this(null, null, null);
+        }
+
+        public RollupProperties {
+            if (oneMinute == null) {
+                oneMinute = Duration.ofDays(1);
+            }
+            if (fiveMinutes == null) {
+                fiveMinutes = Duration.ofDays(7);
+            }
+            if (oneHour == null) {
+                oneHour = Duration.ofDays(90);
+            }
+        }
+    }
+
+    /// Settings of the segment files holding the metric chunks.
+    ///
+    /// @param directory   Directory of the segment files. Defaults to `data/metrics`.
+    /// @param segmentSize Size of each segment file. Files are sparse, so unused space takes no disk. Defaults to 64MB.
+    /// @param retention   How long metric chunks are kept on disk. Replaces `metrics-retention` for this storage.
+    ///                    Defaults to 30 days.
+    public record SegmentProperties(
+        Path directory,
+        DataSize segmentSize,
+        Duration retention
+    ) {
+        public SegmentProperties() {
+            this(null, null, null);
+        }
+
+        public SegmentProperties {
+            if (directory == null) {
+                directory = Path.of("data", "metrics");
+            }
+            if (segmentSize == null) {
+                segmentSize = DataSize.ofMegabytes(64);
+            }
+            if (retention == null) {
+                retention = Duration.ofDays(30);
+            }
+        }
+    }
+
+    /// Settings of the journal that lets the service registry survive restarts.
+    ///
+    /// @param enabled   Whether registry mutations are journaled and replayed on startup. Defaults to false.
+    /// @param directory Directory of the log and snapshot files. Defaults to `data/registry`.
+    public record JournalProperties(
+        Boolean enabled,
+        Path directory
+    ) {
+        public JournalProperties() {
+            this(null, null);
+        }
+
+        public JournalProperties {
+            if (enabled == null) {
+                enabled = false;
+            }
+            if (directory == null) {
+                directory = Path.of("data", "registry");
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.newtco.obserra.backend.controller;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,9 +13,12 @@ import org.newtco.obserra.backend.model.Log;
 import org.newtco.obserra.backend.model.Metric;
 import org.newtco.obserra.backend.model.Service;
 import org.newtco.obserra.backend.storage.Storage;
+import org.newtco.obserra.backend.util.ETags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,6 +27,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Controller for metrics and logs.
@@ -46,15 +52,30 @@ public class MetricsAndLogsController {
 
     /**
      * Get metrics for a specific service.
+     * <p>
+     * Without a range the most recent raw samples are returned. With a range, only samples within it are returned,
+     * and with a step the samples are aggregated into buckets of that width, read from the coarsest rollup tier
+     * that can serve them.
+     * <p>
+     * Unless the range is relative to now, responds with 304 Not Modified if no metrics were recorded since the
+     * {@code If-None-Match} tag was issued.
      *
      * @param id the service ID
-     * @param limit the maximum number of metrics to return (optional, default 10)
+     * @param limit the maximum number of metrics to return (optional, default 10, or 1000 with a range)
+     * @param from the oldest timestamp to include (optional, ISO date-time, default one hour before {@code to})
+     * @param to the newest timestamp to include (optional, ISO date-time, default now)
+     * @param step the bucket width, e.g. {@code 1m} or {@code PT5M} (optional)
+     * @param request the request, for the conditional headers
      * @return the metrics for the specified service
      */
     @GetMapping("/services/{id}/metrics")
     public ResponseEntity<?> getServiceMetrics(
             @PathVariable String id,
-            @RequestParam(required = false, defaultValue = "10") int limit) {
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String step,
+            WebRequest request) {
         try {
             Optional<Service> service = storage.getService(id);
             if (!service.isPresent()) {
@@ -62,7 +83,35 @@ public class MetricsAndLogsController {
                         .body(Map.of("error", "Service not found"));
             }
 
-            List<Metric> metrics = storage.getMetricsForService(id, limit);
+            // A range ending now changes as time passes, without any new metrics
+            boolean relativeToNow = to == null && (from != null || step != null);
+            if (!relativeToNow && request.checkNotModified(ETags.of(storage.getMetricsVersion(id)))) {
+                return null;
+            }
+
+            List<Metric> metrics;
+            if (from == null && to == null && step == null) {
+                metrics = storage.getMetricsForService(id, limit != null ? limit : 10);
+            } else {
+                LocalDateTime rangeTo   = to != null ? to : LocalDateTime.now();
+                LocalDateTime rangeFrom = from != null ? from : rangeTo.minusHours(1);
+                int rangeLimit = limit != null ? limit : 1000;
+
+                Duration bucket;
+                try {
+                    bucket = step != null ? DurationStyle.detectAndParse(step) : null;
+                } catch (IllegalArgumentException e) {
+                    bucket = Duration.ZERO;
+                }
+                if (bucket != null && (bucket.isZero() || bucket.isNegative())) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "Invalid step: " + step));
+                }
+
+                metrics = bucket != null
+                        ? storage.getMetricsForService(id, rangeFrom, rangeTo, bucket, rangeLimit)
+                        : storage.getMetricsForService(id, rangeFrom, rangeTo, rangeLimit);
+            }
 
             // Format metrics for the frontend
             Map<String, Object> formattedMetrics = formatMetricsForFrontend(metrics);
@@ -77,15 +126,20 @@ public class MetricsAndLogsController {
 
     /**
      * Get logs for a specific service.
+     * <p>
+     * Without a cursor the most recent logs are returned, newest first. With {@code after}, only logs recorded after
+     * it are returned, oldest first, so pollers can pass the id of the last log they received.
      *
      * @param id the service ID
      * @param limit the maximum number of logs to return (optional, default 100)
+     * @param after the id of the last log already seen (optional)
      * @return the logs for the specified service
      */
     @GetMapping("/services/{id}/logs")
     public ResponseEntity<?> getServiceLogs(
             @PathVariable String id,
-            @RequestParam(required = false, defaultValue = "100") int limit) {
+            @RequestParam(required = false, defaultValue = "100") int limit,
+            @RequestParam(required = false) Long after) {
         try {
             Optional<Service> service = storage.getService(id);
             if (!service.isPresent()) {
@@ -93,7 +147,9 @@ public class MetricsAndLogsController {
                         .body(Map.of("error", "Service not found"));
             }
 
-            List<Log> logs = storage.getLogsForService(id, limit);
+            List<Log> logs = after == null
+                ? storage.getLogsForService(id, limit)
+                : storage.getLogsForService(id, after, limit);
 
             return ResponseEntity.ok(logs);
         } catch (Exception e) {
@@ -103,6 +159,73 @@ public class MetricsAndLogsController {
         }
     }
 
+    /**
+     * Search the retained logs.
+     * <p>
+     * Query terms are matched case-insensitively against whole words of the message, and all of them must occur.
+     * Dotted names are also indexed by their parts, so {@code IllegalStateException} finds
+     * {@code java.lang.IllegalStateException}.
+     *
+     * @param q the search terms (optional, any message when absent)
+     * @param serviceId the service to search (optional, all services when absent)
+     * @param level the log level, e.g. {@code ERROR} (optional)
+     * @param from the oldest timestamp to include (optional, ISO date-time)
+     * @param to the newest timestamp to include (optional, ISO date-time)
+     * @param limit the maximum number of logs to return (optional, default 100)
+     * @return the matching logs, newest first
+     */
+    @GetMapping("/logs/search")
+    public ResponseEntity<?> searchLogs(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String serviceId,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false, defaultValue = "100") int limit) {
+        try {
+            if (serviceId != null && storage.getService(serviceId).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Service not found"));
+            }
+
+            return ResponseEntity.ok(storage.searchLogs(serviceId, q, level, from, to, limit));
+        } catch (Exception e) {
+            logger.error("Error searching logs", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to search logs"));
+        }
+    }
+
+    /**
+     * Get the most frequent log patterns.
+     * <p>
+     * Log messages are grouped into templates as they are stored, with the variable parts shown as {@code <*>}.
+     * Each pattern carries its total count and its rate over the last five minutes.
+     *
+     * @param serviceId the service (optional, all services when absent)
+     * @param level the log level, e.g. {@code ERROR} for the top error patterns (optional)
+     * @param limit the maximum number of patterns to return (optional, default 20)
+     * @return the patterns, most frequent first
+     */
+    @GetMapping("/logs/patterns")
+    public ResponseEntity<?> getLogPatterns(
+            @RequestParam(required = false) String serviceId,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        try {
+            if (serviceId != null && storage.getService(serviceId).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Service not found"));
+            }
+
+            return ResponseEntity.ok(storage.getLogPatterns(serviceId, level, limit));
+        } catch (Exception e) {
+            logger.error("Error fetching log patterns", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to fetch log patterns"));
+        }
+    }
+
     /**
      * Trigger a health check for a specific service.
      *
@@ -0,0 +1,84 @@
+package org.newtco.obserra.backend.controller;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+
+import org.newtco.obserra.backend.config.properties.EventStreamProperties;
+import org.newtco.obserra.backend.service.ServiceEventLog;
+import org.newtco.obserra.backend.service.ServiceEventLog.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the collection results as Server-Sent Events, for clients that do not use the GraphQL subscription.
+ * <p>
+ * Each connection is served by its own virtual thread reading a {@link Subscription} of the {@link ServiceEventLog},
+ * so an idle connection costs a parked thread and its buffer, and a slow one only holds up itself.
+ */
+@RestController
+public class ServiceEventStreamController {
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceEventStreamController.class);
+
+    private final ServiceEventLog       events;
+    private final EventStreamProperties properties;
+    private final ThreadFactory         streams = Thread.ofVirtual().name("event-stream-", 0).factory();
+
+    public ServiceEventStreamController(ServiceEventLog events, EventStreamProperties properties) {
+        this.events     = events;
+        this.properties = properties;
+    }
+
+    /**
+     * Stream the status transitions and metric samples of the services as they are collected.
+     * <p>
+     * Events are named {@code status} and {@code metrics}, with JSON data. A client reconnecting with a
+     * {@code Last-Event-ID} header resumes after that event. If it missed more than the server keeps, it first
+     * receives a {@code reset} event and should reload the services.
+     *
+     * @param serviceId   the ID of the service to stream events of, or all services if null
+     * @param lastEventId the ID of the last event received before reconnecting
+     *
+     * @return the event stream
+     */
+    @GetMapping(path = "/api/services/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestParam(required = false) String serviceId,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        var emitter      = new SseEmitter(properties.timeout().toMillis());
+        var subscription = events.subscribe(lastEventId);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+
+        streams.newThread(() -> stream(emitter, subscription, serviceId)).start();
+        return emitter;
+    }
+
+    private void stream(SseEmitter emitter, Subscription subscription, String serviceId) {
+        try (subscription) {
+            while (!subscription.isClosed()) {
+                var event = subscription.poll(properties.heartbeat());
+                if (event == null) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else if (serviceId == null || event.serviceId() == null || serviceId.equals(event.serviceId())) {
+                    emitter.send(SseEmitter.event()
+                        .id(Long.toString(event.id()))
+                        .name(event.type())
+                        .data(event.data()));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, or the emitter completed while sending
+            LOG.debug("Event stream closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+}
@@ -1,15 +1,9 @@
 package org.newtco.obserra.backend.controller;
 
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
 
-import org.newtco.obserra.backend.insight.ServiceInsightProvider;
-import org.newtco.obserra.backend.insight.ServiceStatusProvider;
 import org.newtco.obserra.backend.model.Service;
-import org.newtco.obserra.backend.model.ServiceStatus;
-import org.newtco.obserra.backend.model.ui.UiService;
+import org.newtco.obserra.backend.service.UiServiceCache;
 import org.newtco.obserra.backend.storage.Storage;
 import org.newtco.obserra.shared.model.ErrorResponse;
 import org.slf4j.Logger;
@@ -19,37 +13,39 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 public class UiServiceController {
     private static final Logger LOG = LoggerFactory.getLogger(UiServiceController.class);
 
-    private final Storage                         storage;
-    private final List<ServiceInsightProvider<?>> insightProviders;
-    private final List<ServiceStatusProvider>     statusProviders;
+    private final Storage        storage;
+    private final UiServiceCache uiServices;
 
-    public UiServiceController(
-        Storage storage,
-        List<ServiceInsightProvider<?>> insightProviders,
-        List<ServiceStatusProvider> statusProviders) {
-        this.storage          = storage;
-        this.insightProviders = insightProviders;
-        this.statusProviders  = statusProviders;
+    public UiServiceController(Storage storage, UiServiceCache uiServices) {
+        this.storage    = storage;
+        this.uiServices = uiServices;
     }
 
     /**
      * Get all registered services.
+     * <p>
+     * Responds with 304 Not Modified if the {@code If-None-Match} tag is still current.
+     *
+     * @param request the request, for the conditional headers
      *
      * @return a list of all registered services
      */
     @GetMapping("/api/services")
-    public ResponseEntity<?> getServices() {
+    public ResponseEntity<?> getServices(WebRequest request) {
         try {
-            return ResponseEntity.ok(
-                storage.getAllServices().stream()
-                    .map(this::toUiService)
-                    .toList()
-            );
+            var services = storage.getAllServices();
+            if (request.checkNotModified(uiServices.getAllETag(services))) {
+                return null;
+            }
+
+            // Written from the cached JSON of each service, without serializing
+            return ResponseEntity.ok(uiServices.getAllJson(services));
         } catch (Exception e) {
             LOG.error("Error fetching services", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -59,17 +55,23 @@ public class UiServiceController {
 
     /**
      * Get a specific service by ID.
+     * <p>
+     * Responds with 304 Not Modified if the {@code If-None-Match} tag is still current.
      *
      * @param id the service ID
+     * @param request the request, for the conditional headers
      *
      * @return the service with the specified ID
      */
     @GetMapping("/api/services/{id}")
-    public ResponseEntity<?> getService(@PathVariable String id) {
+    public ResponseEntity<?> getService(@PathVariable String id, WebRequest request) {
         try {
             Optional<Service> service = storage.getService(id);
             if (service.isPresent()) {
-                return ResponseEntity.ok(service.map(this::toUiService).get());
+                if (request.checkNotModified(uiServices.getETag(service.get()))) {
+                    return null;
+                }
+                return ResponseEntity.ok(uiServices.get(service.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ErrorResponse("Service '%s' not found".formatted(id)));
@@ -80,30 +82,4 @@ public class UiServiceController {
                 .body(new ErrorResponse("Failed to fetch service '%s'".formatted(id)));
         }
     }
-
-    private UiService toUiService(Service service) {
-        return new UiService(
-            service.getId(),
-            service.getAppId(),
-            service.getName(),
-            service.getVersion(),
-            getServiceStatus(service),
-            service.getLastUpdated(),
-            insightProviders.stream()
-                .map(provider -> provider.provide(service))
-                .collect(
-                    TreeMap::new,
-                    (m, u) -> m.put(u.type(), u.insight()),
-                    Map::putAll));
-    }
-
-    private ServiceStatus getServiceStatus(Service service) {
-        for (ServiceStatusProvider provider : statusProviders) {
-            var status = provider.status(service);
-            if (status != ServiceStatus.UP) {
-                return status;
-            }
-        }
-        return ServiceStatus.UP;
-    }
 }
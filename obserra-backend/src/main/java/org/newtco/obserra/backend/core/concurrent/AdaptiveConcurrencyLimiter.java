@@ -0,0 +1,188 @@
+package org.newtco.obserra.backend.core.concurrent;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/// A concurrency limiter whose limit adapts to what the downstream can sustain, using additive-increase /
+/// multiplicative-decrease (AIMD).
+///
+/// Every acquired [Permit] must be completed with [Permit#onSuccess()], [Permit#onDropped()] or [Permit#release()]:
+///
+/// - A success that completes within the latency threshold grows the limit by `1/limit`, i.e. by roughly one per
+///   window of requests, as long as the limit is actually being used.
+/// - A drop (timeout, connection failure) or a success slower than the latency threshold multiplies the limit by the
+///   backoff ratio. Only one decrease is applied per window: permits acquired before the last decrease don't decrease
+///   it again, so a burst of timeouts from one overloaded window doesn't collapse the limit to its minimum.
+/// - A release leaves the limit unchanged; use it for outcomes that say nothing about downstream capacity.
+///
+/// The limit always stays within `[minLimit, maxLimit]`.
+public class AdaptiveConcurrencyLimiter {
+
+    private final int          minLimit;
+    private final int          maxLimit;
+    private final double       backoffRatio;
+    private final long         latencyThresholdNanos;
+    private final LongSupplier nanoTime;
+
+    private final ReentrantLock lock      = new ReentrantLock();
+    private final Condition     available = lock.newCondition();
+    private final LongAdder     rejected  = new LongAdder();
+
+    private double limit;
+    private int    inFlight;
+    private long   lastDecreaseNanos;
+
+    /// @param initialLimit     starting limit
+    /// @param minLimit         lower bound of the limit, at least 1
+    /// @param maxLimit         upper bound of the limit
+    /// @param backoffRatio     factor in (0, 1) applied to the limit on a drop
+    /// @param latencyThreshold successes slower than this are treated as drops
+    public AdaptiveConcurrencyLimiter(int initialLimit,
+                                      int minLimit,
+                                      int maxLimit,
+                                      double backoffRatio,
+                                      Duration latencyThreshold) {
+        this(initialLimit, minLimit, maxLimit, backoffRatio, latencyThreshold, System::nanoTime);
+    }
+
+    // visible for testing
+    AdaptiveConcurrencyLimiter(int initialLimit,
+                               int minLimit,
+                               int maxLimit,
+                               double backoffRatio,
+                               Duration latencyThreshold,
+                               LongSupplier nanoTime) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit (%d) <= maxLimit (%d)"
+                                                   .formatted(minLimit, maxLimit));
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio %s must be between 0 and 1".formatted(backoffRatio));
+        }
+
+        this.minLimit              = minLimit;
+        this.maxLimit              = maxLimit;
+        this.backoffRatio          = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.nanoTime              = nanoTime;
+        this.limit                 = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.lastDecreaseNanos     = nanoTime.getAsLong();
+    }
+
+    /// Acquires a permit, waiting up to the given time for one to become available.
+    ///
+    /// @return the permit, or empty if none became available in time. Rejections are counted in [#rejected()].
+    ///
+    /// @throws InterruptedException if interrupted while waiting
+    public Optional<Permit> tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (nanos <= 0L) {
+                    rejected.increment();
+                    return Optional.empty();
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+
+            inFlight++;
+            return Optional.of(new Permit(nanoTime.getAsLong(), inFlight));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the current concurrency limit
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the number of permits currently held
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// @return the number of acquisitions that timed out waiting for a permit
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    private void complete(Permit permit, Outcome outcome) {
+        long now = nanoTime.getAsLong();
+
+        lock.lock();
+        try {
+            inFlight--;
+
+            var dropped = outcome == Outcome.DROPPED ||
+                          (outcome == Outcome.SUCCESS && now - permit.startNanos > latencyThresholdNanos);
+            if (dropped) {
+                // One decrease per window: only permits acquired after the last decrease may decrease again
+                if (permit.startNanos - lastDecreaseNanos >= 0) {
+                    limit             = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (outcome == Outcome.SUCCESS && permit.inFlightAtStart * 2 >= (int) limit) {
+                // Only grow when the current limit is actually being used
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum Outcome {SUCCESS, DROPPED, IGNORED}
+
+    /// A permit acquired from the limiter. Completing it more than once has no effect.
+    public final class Permit {
+        private final long          startNanos;
+        private final int           inFlightAtStart;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos      = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /// The guarded call succeeded. Its latency is used to adjust the limit.
+        public void onSuccess() {
+            complete(Outcome.SUCCESS);
+        }
+
+        /// The guarded call was dropped, timed out or was otherwise rejected by an overloaded downstream.
+        public void onDropped() {
+            complete(Outcome.DROPPED);
+        }
+
+        /// Return the permit without affecting the limit.
+        public void release() {
+            complete(Outcome.IGNORED);
+        }
+
+        private void complete(Outcome outcome) {
+            if (completed.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.complete(this, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.newtco.obserra.backend.graphql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.netflix.graphql.dgs.DgsDataLoader;
+import org.dataloader.MappedBatchLoader;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.storage.Storage;
+
+/**
+ * Batch loader of services by ID.
+ * <p>
+ * All services a query asks for, e.g. through aliased {@code service(id:)} fields, are looked up in one
+ * {@link Storage#getServices} call, and each ID is looked up once per request.
+ */
+@DgsDataLoader(name = ServiceDataLoader.NAME)
+public class ServiceDataLoader implements MappedBatchLoader<String, Service> {
+    public static final String NAME = "services";
+
+    private final Storage storage;
+
+    public ServiceDataLoader(Storage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public CompletionStage<Map<String, Service>> load(Set<String> ids) {
+        var result = new HashMap<String, Service>(ids.size());
+        for (var service : storage.getServices(ids)) {
+            result.put(service.getId(), service);
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+}
@@ -1,12 +1,17 @@
 package org.newtco.obserra.backend.graphql;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.netflix.graphql.dgs.DgsComponent;
 import com.netflix.graphql.dgs.DgsData;
 import com.netflix.graphql.dgs.DgsDataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import org.dataloader.DataLoader;
 import org.newtco.obserra.backend.model.ui.UiService;
 import org.newtco.obserra.shared.model.ui.HealthInsight;
 import org.newtco.obserra.shared.model.ui.MetricsInsight;
@@ -29,15 +34,40 @@ public class ServiceInsightsDataFetcher {
 
     /**
      * Data fetcher for the insights field in the Service type.
+     * <p>
+     * Only the selected insights are computed, and the insights of all services in the query are loaded in one
+     * batch, see {@link ServiceInsightsDataLoader}.
      * 
      * @param dfe the data-fetching environment
      * @return a map containing the service insights
      */
     @DgsData(parentType = "Service", field = "insights")
-    public Map<String, ?> serviceInsights(DgsDataFetchingEnvironment dfe) {
+    public CompletableFuture<Map<String, ?>> serviceInsights(DgsDataFetchingEnvironment dfe) {
         UiService service = dfe.getSource();
         LOG.debug("Fetching insights for service: {}", service.id());
-        return service.insights();
+        if (service.insights() != null) {
+            // Views pushed to subscribers carry all their insights
+            return CompletableFuture.completedFuture(service.insights());
+        }
+
+        DataLoader<ServiceInsightsDataLoader.Key, Map<String, ?>> insights =
+            dfe.getDataLoader(ServiceInsightsDataLoader.NAME);
+        return insights.load(new ServiceInsightsDataLoader.Key(service.id(), selectedInsights(dfe.getSelectionSet())));
+    }
+
+    /**
+     * Get the insights selected below the insights field of a Service. The fields of the ServiceInsights type are
+     * named after the provider types of the insights.
+     *
+     * @param selectionSet the selection set of the insights field
+     * @return the provider types of the selected insights
+     */
+    static Set<String> selectedInsights(DataFetchingFieldSelectionSet selectionSet) {
+        var types = new HashSet<String>();
+        for (var field : selectionSet.getImmediateFields()) {
+            types.add(field.getName());
+        }
+        return types;
     }
 
     /**
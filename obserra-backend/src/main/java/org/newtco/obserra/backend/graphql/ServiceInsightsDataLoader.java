@@ -0,0 +1,65 @@
+package org.newtco.obserra.backend.graphql;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.netflix.graphql.dgs.DgsDataLoader;
+import org.dataloader.MappedBatchLoader;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.service.UiServiceCache;
+import org.newtco.obserra.backend.storage.Storage;
+
+/**
+ * Batch loader of the insights of services.
+ * <p>
+ * The insights of all services in a query are resolved together: the services are looked up in one
+ * {@link Storage#getServices} call, and only the selected insights are taken from their cached views. Each service
+ * and selection is loaded once per request.
+ */
+@DgsDataLoader(name = ServiceInsightsDataLoader.NAME)
+public class ServiceInsightsDataLoader implements MappedBatchLoader<ServiceInsightsDataLoader.Key, Map<String, ?>> {
+    public static final String NAME = "serviceInsights";
+
+    private final Storage        storage;
+    private final UiServiceCache uiServices;
+
+    public ServiceInsightsDataLoader(Storage storage, UiServiceCache uiServices) {
+        this.storage    = storage;
+        this.uiServices = uiServices;
+    }
+
+    @Override
+    public CompletionStage<Map<Key, Map<String, ?>>> load(Set<Key> keys) {
+        var ids = new HashSet<String>(keys.size());
+        for (var key : keys) {
+            ids.add(key.serviceId());
+        }
+
+        var services = new HashMap<String, Service>(ids.size());
+        for (var service : storage.getServices(ids)) {
+            services.put(service.getId(), service);
+        }
+
+        var result = new HashMap<Key, Map<String, ?>>(keys.size());
+        for (var key : keys) {
+            var service = services.get(key.serviceId());
+            if (service != null) {
+                result.put(key, uiServices.get(service, key.insightTypes()).insights());
+            }
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    /**
+     * The insights of one service.
+     *
+     * @param serviceId    the ID of the service
+     * @param insightTypes the provider types of the selected insights
+     */
+    public record Key(String serviceId, Set<String> insightTypes) {
+    }
+}
@@ -0,0 +1,137 @@
+package org.newtco.obserra.backend.graphql;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.netflix.graphql.dgs.DgsComponent;
+import com.netflix.graphql.dgs.DgsSubscription;
+import org.newtco.obserra.backend.collector.ServiceCollectedEvent;
+import org.newtco.obserra.backend.model.ui.UiService;
+import org.newtco.obserra.backend.service.UiServiceCache;
+import org.newtco.obserra.backend.storage.Storage;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * GraphQL subscriptions pushing service changes to clients, over the WebSocket endpoint.
+ * <p>
+ * After each collection, the service is pushed to all subscribers if its status or insights changed since it was
+ * last pushed. Clients load the full list once with the {@code services} query and then apply the pushed services.
+ * <p>
+ * Every subscriber has its own queue holding at most one pending state per service, and services are only emitted as
+ * the client requests them. A slow client therefore skips the intermediate states of a service and receives only its
+ * latest one, and never holds up the other clients or the collectors.
+ * <p>
+ * Views are only built while there are subscribers, so collections cost nothing here otherwise.
+ */
+@DgsComponent
+public class ServiceSubscriptionDataFetcher {
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceSubscriptionDataFetcher.class);
+
+    private final UiServiceCache            uiServices;
+    private final Storage                   storage;
+    private final Map<String, UiService>    lastPushed  = new ConcurrentHashMap<>();
+    private final Set<CoalescingSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    public ServiceSubscriptionDataFetcher(UiServiceCache uiServices, Storage storage) {
+        this.uiServices = uiServices;
+        this.storage    = storage;
+    }
+
+    /**
+     * GraphQL subscription to the services whose status or insights changed.
+     *
+     * @return the changed services, as they are collected
+     */
+    @DgsSubscription
+    public Publisher<UiService> serviceUpdates() {
+        LOG.debug("GraphQL subscription: serviceUpdates");
+        return Flux.create(sink -> {
+            var subscriber = new CoalescingSubscriber(sink);
+            subscribers.add(subscriber);
+            sink.onRequest(n -> subscriber.drain());
+            sink.onDispose(() -> subscribers.remove(subscriber));
+        });
+    }
+
+    /**
+     * Push a collected service to the subscribers if its status or insights changed.
+     *
+     * @param event the collection event
+     */
+    @EventListener
+    public void onServiceCollected(ServiceCollectedEvent event) {
+        if (subscribers.isEmpty()) {
+            // A later subscriber loads the full list first, so nothing needs to be compared against
+            lastPushed.clear();
+            return;
+        }
+
+        var view     = uiServices.get(event.service());
+        var previous = lastPushed.put(view.id(), view);
+        if (previous != null
+            && previous.status() == view.status()
+            && Objects.equals(previous.insights(), view.insights())) {
+            return;
+        }
+
+        for (var subscriber : subscribers) {
+            subscriber.offer(view);
+        }
+    }
+
+    /**
+     * Forget the last pushed states of services that are no longer registered.
+     */
+    @Scheduled(fixedDelayString = "${obserra.service-discovery.interval-ms:60000}")
+    public void evictRemoved() {
+        if (lastPushed.isEmpty()) {
+            return;
+        }
+
+        var ids = new HashSet<String>();
+        for (var service : storage.getAllServices()) {
+            ids.add(service.getId());
+        }
+        lastPushed.keySet().retainAll(ids);
+    }
+
+    /**
+     * Queue of one subscriber, keeping only the latest pending state of each service.
+     */
+    private static final class CoalescingSubscriber {
+        private final FluxSink<UiService>    sink;
+        private final Map<String, UiService> pending = new LinkedHashMap<>();
+
+        CoalescingSubscriber(FluxSink<UiService> sink) {
+            this.sink = sink;
+        }
+
+        void offer(UiService view) {
+            synchronized (this) {
+                // Replaces an older pending state, keeping the position of the service in the queue
+                pending.put(view.id(), view);
+            }
+            drain();
+        }
+
+        synchronized void drain() {
+            Iterator<UiService> queued = pending.values().iterator();
+            while (queued.hasNext() && sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                var view = queued.next();
+                queued.remove();
+                sink.next(view);
+            }
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package org.newtco.obserra.backend.k8s;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.informer.cache.Caches;
+import io.kubernetes.client.informer.cache.Indexer;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.apis.DiscoveryV1Api;
+import io.kubernetes.client.openapi.models.DiscoveryV1EndpointPort;
+import io.kubernetes.client.openapi.models.V1Endpoint;
+import io.kubernetes.client.openapi.models.V1EndpointSlice;
+import io.kubernetes.client.openapi.models.V1EndpointSliceList;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.kubernetes.client.openapi.models.V1PodList;
+import org.newtco.obserra.backend.model.RegistrationSource;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+import org.newtco.obserra.backend.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discovery of the Spring Boot actuator endpoints of one Kubernetes cluster, see {@link KubernetesServiceDiscovery}.
+ * <p>
+ * Collection targets are discovered from the {@code discovery.k8s.io/v1} EndpointSlices of the services: every ready
+ * endpoint of a pod is registered as its own service, with an actuator URL of the pod address, so each replica is
+ * collected directly instead of through the load-balanced service address. An endpoint is deregistered as soon as it
+ * is no longer ready, e.g. while its pod terminates, or leaves its slice. A pod endpoint listed by several slices,
+ * e.g. of two services selecting the pod on the same port, is registered once and deregistered when no slice lists it
+ * anymore. Registered services are tagged with the name of the cluster.
+ * <p>
+ * Endpoint slices and pods are tracked with shared informers: each is listed once, then watched from the resource
+ * version of the list, keeping a local cache up to date, so discovery never lists the cluster again. The pods are
+ * cached for their labels, which name the application; an endpoint whose pod is not cached yet is registered once the
+ * pod arrives, and the endpoints of a pod are registered again when its application name changes. The informers
+ * resync from their caches every discovery interval, without calling the API server.
+ * <p>
+ * Services restored from storage are adopted when an endpoint lists them again. Once both caches are synced, the
+ * services of the cluster that no endpoint lists, e.g. of pods deleted while the backend was down, are deregistered.
+ * <p>
+ * The informers run on virtual threads of an executor of this cluster alone, and the event handlers lock only this
+ * discovery, so a slow or failing cluster does not hold up the others.
+ */
+class ClusterDiscovery implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterDiscovery.class);
+
+    /** Label of an endpoint slice naming the service it belongs to. */
+    private static final String SERVICE_NAME_LABEL = "kubernetes.io/service-name";
+
+    /** Delay between checks whether the informer caches are synced. */
+    private static final long SYNC_POLL_MS = 100;
+
+    private final String cluster;
+    private final Storage storage;
+    private final ApiClient client;
+    private final long resyncPeriodMs;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private SharedInformerFactory informers;
+    private Indexer<V1Pod> pods;
+    private Indexer<V1EndpointSlice> slices;
+    /** The targets of each endpoint slice, by slice key. */
+    private final Map<String, Set<Target>> sliceTargets = new HashMap<>();
+    /** The registered service of each pod endpoint listed by any slice. */
+    private final Map<Endpoint, Registration> registered = new HashMap<>();
+    /** The keys of the pods with ready endpoints in each endpoint slice, by slice key. */
+    private final Map<String, Set<String>> slicePods = new HashMap<>();
+    /** The keys of the endpoint slices with ready endpoints of each pod, by pod key. */
+    private final Map<String, Set<String>> podSlices = new HashMap<>();
+
+    /**
+     * Create a discovery of the cluster behind the given client.
+     *
+     * @param cluster the name of the cluster, tagged on the discovered services
+     * @param storage the storage to register services in
+     * @param client the Kubernetes API client of the cluster
+     * @param resyncPeriodMs the resync period of the informers
+     */
+    ClusterDiscovery(String cluster, Storage storage, ApiClient client, long resyncPeriodMs) {
+        this.cluster = cluster;
+        this.storage = storage;
+        this.client = client;
+        this.resyncPeriodMs = resyncPeriodMs;
+    }
+
+    /**
+     * @return the name of the cluster
+     */
+    String cluster() {
+        return cluster;
+    }
+
+    /**
+     * Start watching the endpoint slices and pods of the cluster. Does nothing if the informers are already running.
+     */
+    synchronized void start() {
+        if (informers != null) {
+            return;
+        }
+
+        // Watches are long-lived requests, closed by the server after their timeout
+        client.setHttpClient(client.getHttpClient().newBuilder().readTimeout(0, TimeUnit.SECONDS).build());
+        var coreApi = new CoreV1Api(client);
+        var discoveryApi = new DiscoveryV1Api(client);
+
+        informers = new SharedInformerFactory(client, executor);
+        SharedIndexInformer<V1Pod> podInformer = informers.sharedIndexInformerFor(
+            params -> coreApi.listPodForAllNamespaces()
+                .resourceVersion(params.resourceVersion)
+                .timeoutSeconds(params.timeoutSeconds)
+                .watch(params.watch)
+                .buildCall(null),
+            V1Pod.class, V1PodList.class, resyncPeriodMs);
+        SharedIndexInformer<V1EndpointSlice> sliceInformer = informers.sharedIndexInformerFor(
+            params -> discoveryApi.listEndpointSliceForAllNamespaces()
+                .resourceVersion(params.resourceVersion)
+                .timeoutSeconds(params.timeoutSeconds)
+                .watch(params.watch)
+                .buildCall(null),
+            V1EndpointSlice.class, V1EndpointSliceList.class, resyncPeriodMs);
+        pods   = podInformer.getIndexer();
+        slices = sliceInformer.getIndexer();
+
+        podInformer.addEventHandler(new ResourceEventHandler<>() {
+            @Override
+            public void onAdd(V1Pod pod) {
+                processPod(pod);
+            }
+
+            @Override
+            public void onUpdate(V1Pod oldPod, V1Pod newPod) {
+                // Only the application name is read from the pod, resyncs and status changes leave it alone
+                if (!Objects.equals(appName(oldPod), appName(newPod))) {
+                    processPod(newPod);
+                }
+            }
+
+            @Override
+            public void onDelete(V1Pod pod, boolean deletedFinalStateUnknown) {
+                // The endpoints of the pod are removed from their slices
+            }
+        });
+        sliceInformer.addEventHandler(new ResourceEventHandler<>() {
+            @Override
+            public void onAdd(V1EndpointSlice slice) {
+                processSlice(slice);
+            }
+
+            @Override
+            public void onUpdate(V1EndpointSlice oldSlice, V1EndpointSlice newSlice) {
+                processSlice(newSlice);
+            }
+
+            @Override
+            public void onDelete(V1EndpointSlice slice, boolean deletedFinalStateUnknown) {
+                removeSlice(Caches.metaNamespaceKeyFunc(slice));
+            }
+        });
+
+        informers.startAllRegisteredInformers();
+        executor.submit(() -> {
+            while (!podInformer.hasSynced() || !sliceInformer.hasSynced()) {
+                Thread.sleep(SYNC_POLL_MS);
+            }
+            removeOrphans();
+            return null;
+        });
+        logger.info("Kubernetes service discovery of cluster {} started", cluster);
+    }
+
+    /**
+     * Stop watching the cluster. The discovered services stay registered.
+     */
+    @Override
+    public synchronized void close() {
+        if (informers != null) {
+            informers.stopAllRegisteredInformers();
+            informers = null;
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Process the slices listing a pod, once it is cached or when its application name changes.
+     *
+     * @param pod the Kubernetes pod
+     */
+    private synchronized void processPod(V1Pod pod) {
+        Set<String> listing = podSlices.get(Caches.metaNamespaceKeyFunc(pod));
+        if (listing == null) {
+            return;
+        }
+
+        // Processing a slice updates the index
+        for (String key : List.copyOf(listing)) {
+            V1EndpointSlice slice = slices.getByKey(key);
+            if (slice != null) {
+                processSlice(slice);
+            }
+        }
+    }
+
+    /**
+     * Process a Kubernetes endpoint slice, registering its ready pod endpoints and deregistering those no longer ready.
+     *
+     * @param slice the Kubernetes endpoint slice
+     */
+    private synchronized void processSlice(V1EndpointSlice slice) {
+        String key = Caches.metaNamespaceKeyFunc(slice);
+        String namespace = slice.getMetadata().getNamespace();
+        Map<String, String> labels = slice.getMetadata().getLabels();
+        String serviceName = labels != null ? labels.get(SERVICE_NAME_LABEL) : null;
+        Integer port = firstPort(slice.getPorts());
+
+        Set<Target> targets = new HashSet<>();
+        Set<String> podKeys = new HashSet<>();
+        if (serviceName != null && port != null && slice.getEndpoints() != null) {
+            for (V1Endpoint endpoint : slice.getEndpoints()) {
+                var pod = endpoint.getTargetRef();
+                if (!isReady(endpoint) || pod == null || !"Pod".equals(pod.getKind())
+                    || endpoint.getAddresses() == null || endpoint.getAddresses().isEmpty()) {
+                    continue;
+                }
+
+                String podKey = namespace + "/" + pod.getName();
+                podKeys.add(podKey);
+                V1Pod cachedPod = pods.getByKey(podKey);
+                if (cachedPod == null) {
+                    continue;
+                }
+
+                String appName = appName(cachedPod);
+                if (appName == null) {
+                    continue;
+                }
+
+                String address = endpoint.getAddresses().get(0);
+                String host = "IPv6".equals(slice.getAddressType()) ? "[" + address + "]" : address;
+                targets.add(new Target(namespace, serviceName, pod.getName(), appName,
+                    String.format("http://%s:%d", host, port)));
+            }
+        }
+
+        indexPods(key, podKeys);
+        updateTargets(key, targets);
+    }
+
+    /**
+     * Forget a deleted endpoint slice, deregistering the targets no longer listed by any slice.
+     *
+     * @param key the key of the endpoint slice
+     */
+    private synchronized void removeSlice(String key) {
+        indexPods(key, Set.of());
+        updateTargets(key, Set.of());
+    }
+
+    /**
+     * Replace the pods listed by an endpoint slice in the index of the slices of each pod.
+     *
+     * @param key the key of the endpoint slice
+     * @param podKeys the keys of the pods with ready endpoints in the slice
+     */
+    private void indexPods(String key, Set<String> podKeys) {
+        Set<String> previous = podKeys.isEmpty() ? slicePods.remove(key) : slicePods.put(key, podKeys);
+        if (previous != null) {
+            for (String podKey : previous) {
+                if (!podKeys.contains(podKey)) {
+                    Set<String> listing = podSlices.get(podKey);
+                    listing.remove(key);
+                    if (listing.isEmpty()) {
+                        podSlices.remove(podKey);
+                    }
+                }
+            }
+        }
+        for (String podKey : podKeys) {
+            podSlices.computeIfAbsent(podKey, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Replace the targets of an endpoint slice, registering the new ones and deregistering those no longer listed by
+     * any slice.
+     *
+     * @param key the key of the endpoint slice
+     * @param targets the current targets of the slice
+     */
+    private synchronized void updateTargets(String key, Set<Target> targets) {
+        Set<Target> previous = targets.isEmpty() ? sliceTargets.remove(key) : sliceTargets.put(key, targets);
+        Set<Endpoint> listed = new HashSet<>();
+        if (previous != null) {
+            for (Target target : previous) {
+                listed.add(target.endpoint());
+            }
+        }
+
+        Set<Endpoint> listing = new HashSet<>();
+        for (Target target : targets) {
+            Endpoint endpoint = target.endpoint();
+            if (!listing.add(endpoint)) {
+                continue;
+            }
+
+            Registration registration = registered.get(endpoint);
+            if (registration == null) {
+                registered.put(endpoint, registerTarget(target));
+                continue;
+            }
+            if (!listed.contains(endpoint)) {
+                registration.slices++;
+            }
+            if (!registration.appName.equals(target.appName())) {
+                // The application of the pod was renamed, register it under its new name
+                storage.deleteService(registration.serviceId);
+                Registration renamed = registerTarget(target);
+                renamed.slices = registration.slices;
+                registered.put(endpoint, renamed);
+            }
+        }
+
+        for (Endpoint endpoint : listed) {
+            if (!listing.contains(endpoint)) {
+                releaseEndpoint(endpoint);
+            }
+        }
+    }
+
+    /**
+     * Release a pod endpoint no longer listed by one of its slices, deregistering its service once no slice lists it.
+     *
+     * @param endpoint the pod endpoint
+     */
+    private void releaseEndpoint(Endpoint endpoint) {
+        Registration registration = registered.get(endpoint);
+        if (registration == null || --registration.slices > 0) {
+            return;
+        }
+
+        registered.remove(endpoint);
+        storage.deleteService(registration.serviceId);
+        logger.info("Deregistered service: {} ({}, {}) of cluster {}", registration.appName, endpoint.podName(),
+            endpoint.actuatorUrl(), cluster);
+    }
+
+    /**
+     * Deregister the services of the cluster that no endpoint slice lists, once the caches are synced. Slices are
+     * processed from the cache first, as their event handlers may still be catching up with it.
+     */
+    private synchronized void removeOrphans() {
+        if (informers == null) {
+            return;
+        }
+
+        for (V1EndpointSlice slice : slices.list()) {
+            processSlice(slice);
+        }
+
+        Set<String> listed = new HashSet<>();
+        for (Registration registration : registered.values()) {
+            listed.add(registration.serviceId);
+        }
+        for (Service service : storage.getAllServices()) {
+            if (service.getRegistrationSource() == RegistrationSource.KUBERNETES
+                && cluster.equals(service.getCluster())
+                && !listed.contains(service.getId())) {
+                storage.deleteService(service.getId());
+                logger.info("Deregistered service: {} ({}, {}) of cluster {}, no endpoint lists it",
+                    service.getName(), service.getPodName(), service.getActuatorUrl(), cluster);
+            }
+        }
+    }
+
+    /**
+     * Register the service of a ready pod endpoint, or adopt its service if it is already registered, e.g. restored
+     * from storage.
+     *
+     * @param target the collection target
+     * @return the registration of the target, listed by one slice
+     */
+    private Registration registerTarget(Target target) {
+        Optional<Service> existingService = storage.getServicesByNamespace(target.namespace()).stream()
+            .filter(service -> service.getRegistrationSource() == RegistrationSource.KUBERNETES)
+            .filter(service -> cluster.equals(service.getCluster()))
+            .filter(service -> target.podName().equals(service.getPodName()))
+            .filter(service -> target.actuatorUrl().equals(service.getActuatorUrl()))
+            .findFirst();
+
+        if (existingService.isPresent()) {
+            logger.debug("Service already registered for pod {} at {}", target.podName(), target.actuatorUrl());
+            return new Registration(existingService.get().getId(), target.appName());
+        }
+
+        // Create a new service
+        Service service = new Service();
+        service.setName(target.appName());
+        service.setNamespace(target.namespace());
+        service.setCluster(cluster);
+        service.setPodName(target.podName());
+        service.setStatus(ServiceStatus.UNKNOWN);
+        service.setClusterDns(String.format("%s.%s.svc.cluster.local", target.serviceName(), target.namespace()));
+        service.setActuatorUrl(target.actuatorUrl());
+        service.setRegistrationSource(RegistrationSource.KUBERNETES);
+
+        // Register the service
+        Service registeredService = storage.createService(service);
+        logger.info("Registered new service: {} ({}, {}) of cluster {}", registeredService.getName(),
+            registeredService.getPodName(), registeredService.getActuatorUrl(), cluster);
+        return new Registration(registeredService.getId(), target.appName());
+    }
+
+    /**
+     * Check if an endpoint is ready. Endpoints of terminating pods are not; an unknown state counts as ready.
+     *
+     * @param endpoint the endpoint of a slice
+     * @return whether the endpoint is ready to be collected
+     */
+    private static boolean isReady(V1Endpoint endpoint) {
+        return endpoint.getConditions() == null || !Boolean.FALSE.equals(endpoint.getConditions().getReady());
+    }
+
+    /**
+     * @param ports the ports of an endpoint slice
+     * @return the first port number, or null if there is none
+     */
+    private static Integer firstPort(List<DiscoveryV1EndpointPort> ports) {
+        if (ports == null) {
+            return null;
+        }
+        for (DiscoveryV1EndpointPort port : ports) {
+            if (port.getPort() != null) {
+                return port.getPort();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the application name of a pod, from the labels that indicate Spring Boot actuator endpoints.
+     *
+     * @param pod the Kubernetes pod
+     * @return the application name, or null if the pod is not an application to collect
+     */
+    private static String appName(V1Pod pod) {
+        Map<String, String> labels = pod.getMetadata().getLabels();
+        if (labels == null || labels.isEmpty()) {
+            return null;
+        }
+
+        // Assume it's Spring Boot if it has an app or app.kubernetes.io/name label
+        if (labels.containsKey("app")) {
+            return labels.get("app");
+        }
+        return labels.get("app.kubernetes.io/name");
+    }
+
+    /**
+     * A collection target: a ready endpoint of a pod, in a service's endpoint slice.
+     *
+     * @param namespace the namespace of the service and the pod
+     * @param serviceName the name of the Kubernetes service
+     * @param podName the name of the pod
+     * @param appName the application name of the pod
+     * @param actuatorUrl the URL of the pod endpoint
+     */
+    private record Target(String namespace, String serviceName, String podName, String appName, String actuatorUrl) {
+
+        /**
+         * @return the pod endpoint of the target, shared by the targets of all slices listing it
+         */
+        Endpoint endpoint() {
+            return new Endpoint(namespace, podName, actuatorUrl);
+        }
+    }
+
+    /**
+     * A pod endpoint, the unit of registration.
+     *
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @param actuatorUrl the URL of the pod endpoint
+     */
+    private record Endpoint(String namespace, String podName, String actuatorUrl) {
+    }
+
+    /**
+     * The registered service of a pod endpoint, and the number of endpoint slices listing it.
+     */
+    private static final class Registration {
+        private final String serviceId;
+        private final String appName;
+        private int slices = 1;
+
+        private Registration(String serviceId, String appName) {
+            this.serviceId = serviceId;
+            this.appName = appName;
+        }
+    }
+}
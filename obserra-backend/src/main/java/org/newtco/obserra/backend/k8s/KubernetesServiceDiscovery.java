@@ -1,22 +1,21 @@
 package org.newtco.obserra.backend.k8s;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.Configuration;
-import io.kubernetes.client.openapi.apis.CoreV1Api;
-import io.kubernetes.client.openapi.models.V1Pod;
-import io.kubernetes.client.openapi.models.V1Service;
-import io.kubernetes.client.openapi.models.V1ServiceList;
+import io.kubernetes.client.util.ClientBuilder;
 import io.kubernetes.client.util.Config;
-import org.newtco.obserra.backend.model.RegistrationSource;
-import org.newtco.obserra.backend.model.Service;
-import org.newtco.obserra.backend.model.ServiceStatus;
+import io.kubernetes.client.util.KubeConfig;
+import org.newtco.obserra.backend.config.properties.KubernetesDiscoveryProperties;
+import org.newtco.obserra.backend.config.properties.KubernetesDiscoveryProperties.ClusterProperties;
 import org.newtco.obserra.backend.storage.Storage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,223 +23,179 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
  * Service discovery for Kubernetes.
  * This class is responsible for discovering and registering Kubernetes services with Spring Boot actuator endpoints.
+ * <p>
+ * Services are discovered in every configured cluster, each given by a kubeconfig context, or in the cluster of the
+ * default client if none is configured. Each cluster is discovered by its own {@link ClusterDiscovery}, which tags the
+ * services it registers with the name of the cluster.
+ * <p>
+ * Clusters are started concurrently, each on its own virtual thread, as connecting may block, e.g. on a credential
+ * plugin of the kubeconfig. Failures are isolated: a cluster that cannot be connected to is retried every discovery
+ * interval, while the other clusters are discovered as usual.
  */
 @Component
-public class KubernetesServiceDiscovery {
+public class KubernetesServiceDiscovery implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(KubernetesServiceDiscovery.class);
 
     private final Storage storage;
     private final boolean kubernetesEnabled;
     private final long discoveryIntervalMs;
-    private CoreV1Api api;
+    private final Map<String, Callable<ApiClient>> clusters;
+    private final Map<String, ClusterDiscovery> discoveries = new LinkedHashMap<>();
+    private ExecutorService executor;
+    private boolean closed;
 
     @Autowired
     public KubernetesServiceDiscovery(
             Storage storage,
-            @Value("${obserra.service-discovery.kubernetes.enabled:false}") boolean kubernetesEnabled,
+            KubernetesDiscoveryProperties properties,
             @Value("${obserra.service-discovery.interval-ms:60000}") long discoveryIntervalMs) {
         this.storage = storage;
-        this.kubernetesEnabled = kubernetesEnabled;
+        this.kubernetesEnabled = properties.enabled();
         this.discoveryIntervalMs = discoveryIntervalMs;
-        
-        if (kubernetesEnabled) {
-            try {
-                ApiClient client = Config.defaultClient();
-                Configuration.setDefaultApiClient(client);
-                this.api = new CoreV1Api();
-                logger.info("Kubernetes client initialized");
-            } catch (IOException e) {
-                logger.error("Failed to initialize Kubernetes client", e);
+        this.clusters = new LinkedHashMap<>();
+
+        if (properties.clusters().isEmpty()) {
+            clusters.put("default", Config::defaultClient);
+        }
+        for (ClusterProperties cluster : properties.clusters()) {
+            if (clusters.put(cluster.name(), () -> clientFor(cluster)) != null) {
+                throw new IllegalArgumentException("Duplicate Kubernetes cluster name: " + cluster.name());
             }
         }
     }
 
+    /**
+     * Create a discovery watching the clusters behind the given clients.
+     *
+     * @param storage the storage to register services in
+     * @param clusters the factories of the Kubernetes API clients, by cluster name
+     * @param discoveryIntervalMs the resync period of the informers, and the delay between connection attempts
+     */
+    KubernetesServiceDiscovery(Storage storage, Map<String, Callable<ApiClient>> clusters, long discoveryIntervalMs) {
+        this.storage = storage;
+        this.kubernetesEnabled = true;
+        this.discoveryIntervalMs = discoveryIntervalMs;
+        this.clusters = new LinkedHashMap<>(clusters);
+    }
+
     /**
      * Initialize service discovery when the application is ready.
      * This method is called once when the application is fully started.
      */
     @EventListener(ApplicationReadyEvent.class)
     public void onApplicationReady() {
-        logger.info("Application ready, starting initial service discovery");
+        logger.info("Application ready, starting service discovery");
         discoverServices();
     }
 
     /**
-     * Scheduled service discovery.
-     * This method is called periodically to discover new services.
+     * Start discovering services in every cluster, in the background. Does nothing if discovery is already running.
      */
-    @Scheduled(fixedDelayString = "${obserra.service-discovery.interval-ms:60000}")
-    public void scheduledDiscovery() {
-        if (kubernetesEnabled) {
-            logger.debug("Running scheduled service discovery");
-            discoverServices();
-        }
-    }
-
-    /**
-     * Discover Kubernetes services with Spring Boot actuator endpoints.
-     */
-    public void discoverServices() {
-        if (!kubernetesEnabled || api == null) {
+    public synchronized void discoverServices() {
+        if (!kubernetesEnabled) {
             logger.info("Kubernetes service discovery is disabled");
             return;
         }
+        if (executor != null || closed) {
+            return;
+        }
 
-        try {
-            // Get all pods in all namespaces
-            var podList = api.listPodForAllNamespaces().execute();
-            
-            // Get all services in all namespaces
-            var serviceList = api.listServiceForAllNamespaces().execute();
-            
-            // Map services to pods
-            for (V1Pod pod : podList.getItems()) {
-                processPod(pod, serviceList);
-            }
-            
-            logger.info("Service discovery completed, processed {} pods", podList.getItems().size());
-        } catch (ApiException e) {
-            logger.error("Failed to discover Kubernetes services: {}", e.getResponseBody(), e);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (var cluster : clusters.entrySet()) {
+            executor.submit(() -> startCluster(cluster.getKey(), cluster.getValue()));
         }
     }
 
     /**
-     * Process a Kubernetes pod to check if it has Spring Boot actuator endpoints.
-     *
-     * @param pod the Kubernetes pod to process
-     * @param serviceList the list of Kubernetes services
+     * Stop watching every cluster. The discovered services stay registered.
      */
-    private void processPod(V1Pod pod, V1ServiceList serviceList) {
-        String podName = pod.getMetadata().getName();
-        String namespace = pod.getMetadata().getNamespace();
-        Map<String, String> labels = pod.getMetadata().getLabels();
-        
-        if (labels == null || labels.isEmpty()) {
-            return;
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (ClusterDiscovery discovery : discoveries.values()) {
+            discovery.close();
         }
-        
-        // Check if this pod has the Spring Boot actuator label or other indicators
-        boolean isSpringBoot = false;
-        String appName = null;
-        
-        if (labels.containsKey("app")) {
-            appName = labels.get("app");
-            isSpringBoot = true; // Assume it's Spring Boot if it has an app label
-        } else if (labels.containsKey("app.kubernetes.io/name")) {
-            appName = labels.get("app.kubernetes.io/name");
-            isSpringBoot = true; // Assume it's Spring Boot if it has an app.kubernetes.io/name label
-        }
-        
-        if (!isSpringBoot || appName == null) {
-            return;
-        }
-        
-        // Find the service that targets this pod
-        List<V1Service> matchingServices = findServicesForPod(pod, serviceList);
-        
-        if (matchingServices.isEmpty()) {
-            logger.debug("No matching service found for pod {}", podName);
-            return;
-        }
-        
-        // For each matching service, try to register it
-        for (V1Service k8sService : matchingServices) {
-            registerService(pod, k8sService, appName);
+        discoveries.clear();
+        if (executor != null) {
+            executor.shutdownNow();
         }
     }
 
     /**
-     * Find Kubernetes services that target a specific pod.
+     * Connect to a cluster and start its discovery, retrying every discovery interval until it succeeds or discovery
+     * is closed.
      *
-     * @param pod the Kubernetes pod
-     * @param serviceList the list of Kubernetes services
-     * @return a list of Kubernetes services that target the pod
+     * @param cluster the name of the cluster
+     * @param clientFactory the factory of the Kubernetes API client of the cluster
      */
-    private List<V1Service> findServicesForPod(V1Pod pod, V1ServiceList serviceList) {
-        List<V1Service> matchingServices = new ArrayList<>();
-        Map<String, String> podLabels = pod.getMetadata().getLabels();
-        
-        if (podLabels == null || podLabels.isEmpty()) {
-            return matchingServices;
-        }
-        
-        for (V1Service k8sService : serviceList.getItems()) {
-            if (!pod.getMetadata().getNamespace().equals(k8sService.getMetadata().getNamespace())) {
-                continue;
-            }
-            
-            Map<String, String> selector = k8sService.getSpec().getSelector();
-            if (selector == null || selector.isEmpty()) {
-                continue;
-            }
-            
-            boolean matches = true;
-            for (Map.Entry<String, String> entry : selector.entrySet()) {
-                String key = entry.getKey();
-                String value = entry.getValue();
-                
-                if (!value.equals(podLabels.get(key))) {
-                    matches = false;
-                    break;
+    private void startCluster(String cluster, Callable<ApiClient> clientFactory) {
+        while (true) {
+            ClusterDiscovery discovery = null;
+            try {
+                discovery = new ClusterDiscovery(cluster, storage, clientFactory.call(), discoveryIntervalMs);
+                synchronized (this) {
+                    if (closed) {
+                        discovery.close();
+                        return;
+                    }
+                    discovery.start();
+                    discoveries.put(cluster, discovery);
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (discovery != null) {
+                    discovery.close();
                 }
+                logger.error("Failed to start Kubernetes service discovery of cluster {}, retrying in {} ms",
+                    cluster, discoveryIntervalMs, e);
             }
-            
-            if (matches) {
-                matchingServices.add(k8sService);
+
+            try {
+                Thread.sleep(discoveryIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
         }
-        
-        return matchingServices;
     }
 
     /**
-     * Register a Kubernetes service with Spring Boot actuator endpoints.
+     * Create a Kubernetes API client for a configured cluster.
      *
-     * @param pod the Kubernetes pod
-     * @param k8sService the Kubernetes service
-     * @param appName the application name
+     * @param cluster the cluster configuration
+     * @return the client connecting with the kubeconfig context of the cluster
+     * @throws IOException if the kubeconfig cannot be read or has no such context
      */
-    private void registerService(V1Pod pod, V1Service k8sService, String appName) {
-        String podName = pod.getMetadata().getName();
-        String namespace = pod.getMetadata().getNamespace();
-        String serviceName = k8sService.getMetadata().getName();
-        
-        // Check if this service is already registered
-        Optional<Service> existingService = storage.getServiceByPodName(podName);
-        
-        if (existingService.isPresent()) {
-            logger.debug("Service already registered for pod {}", podName);
-            return;
+    private static ApiClient clientFor(ClusterProperties cluster) throws IOException {
+        Path path = cluster.kubeconfig() != null ? Path.of(cluster.kubeconfig()) : defaultKubeConfig();
+        try (var reader = Files.newBufferedReader(path)) {
+            KubeConfig kubeConfig = KubeConfig.loadKubeConfig(reader);
+            // Relative paths of certificates and credential plugins are resolved against the kubeconfig
+            kubeConfig.setFile(path.toAbsolutePath().toFile());
+            if (cluster.context() != null && !kubeConfig.setContext(cluster.context())) {
+                throw new IOException("No context " + cluster.context() + " in kubeconfig " + path);
+            }
+            return ClientBuilder.kubeconfig(kubeConfig).build();
+        }
+    }
+
+    /**
+     * @return the path of the default kubeconfig: the first file of {@code KUBECONFIG}, or {@code ~/.kube/config}
+     */
+    private static Path defaultKubeConfig() {
+        String env = System.getenv("KUBECONFIG");
+        if (env != null && !env.isBlank()) {
+            return Path.of(env.split(File.pathSeparator)[0]);
         }
-        
-        // Construct the actuator URL
-        String clusterDns = String.format("%s.%s.svc.cluster.local", serviceName, namespace);
-        Integer port = k8sService.getSpec().getPorts().get(0).getPort();
-        String actuatorUrl = String.format("http://%s:%d", clusterDns, port);
-        
-        // Create a new service
-        Service service = new Service();
-        service.setName(appName);
-        service.setNamespace(namespace);
-        service.setPodName(podName);
-        service.setStatus(ServiceStatus.UNKNOWN);
-        service.setClusterDns(clusterDns);
-        service.setActuatorUrl(actuatorUrl);
-        service.setRegistrationSource(RegistrationSource.KUBERNETES);
-//        service.setHealthCheckPath("/actuator/health");
-//        service.setMetricsPath("/actuator/metrics");
-//        service.setLogsPath("/actuator/logfile");
-//        service.setConfigPath("/actuator/env");
-        
-        // Register the service
-        Service registeredService = storage.createService(service);
-        logger.info("Registered new service: {} ({})", registeredService.getName(), registeredService.getPodName());
+        return Path.of(System.getProperty("user.home"), ".kube", "config");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package org.newtco.obserra.backend.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, versioned snapshot of the data collectors stored for a service, keyed by collector type.
+ * <p>
+ * A snapshot never changes once published. Collectors publish a new snapshot with their entry replaced, see
+ * {@link Service#collectorData(String, Object)}, so readers take the current one without locking or copying and
+ * always see a consistent set of entries.
+ * <p>
+ * Versions come from a counter shared by all services, so a newer snapshot always has a higher version. Caches
+ * derived from a service's collector data can key on the version and compare a single long to tell if it changed.
+ */
+public final class CollectorData {
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /** The snapshot of a service nothing was collected for yet. */
+    public static final CollectorData EMPTY = new CollectorData(0, Map.of());
+
+    private final long                version;
+    private final Map<String, Object> entries;
+
+    private CollectorData(long version, Map<String, Object> entries) {
+        this.version = version;
+        this.entries = entries;
+    }
+
+    /**
+     * @return the version of this snapshot, 0 for {@link #EMPTY}
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @param type the collector type
+     * @return the data stored by the collector, or null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String type) {
+        return (T) entries.get(type);
+    }
+
+    /**
+     * @return the entries of this snapshot, unmodifiable
+     */
+    public Map<String, Object> entries() {
+        return entries;
+    }
+
+    /**
+     * Create the snapshot following this one, with the data of one collector replaced.
+     *
+     * @param type the collector type
+     * @param data the data stored by the collector
+     * @return the new snapshot, with a new version
+     */
+    CollectorData with(String type, Object data) {
+        var copy = new LinkedHashMap<>(entries);
+        copy.put(type, data);
+        return new CollectorData(VERSIONS.incrementAndGet(), Collections.unmodifiableMap(copy));
+    }
+}
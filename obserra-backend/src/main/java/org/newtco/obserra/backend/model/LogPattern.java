@@ -0,0 +1,85 @@
+package org.newtco.obserra.backend.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Model representing a log template mined from the logs of a service.
+ * The variable parts of the messages matching the template are shown as {@code <*>}.
+ */
+public class LogPattern {
+
+    private String id;
+    private String serviceId;
+    private String level;
+    private String template;
+    private long count;
+    private double ratePerMinute;
+    private LocalDateTime firstSeen;
+    private LocalDateTime lastSeen;
+
+    // Getters and Setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public void setLevel(String level) {
+        this.level = level;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(String template) {
+        this.template = template;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getRatePerMinute() {
+        return ratePerMinute;
+    }
+
+    public void setRatePerMinute(double ratePerMinute) {
+        this.ratePerMinute = ratePerMinute;
+    }
+
+    public LocalDateTime getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(LocalDateTime firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(LocalDateTime lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+}
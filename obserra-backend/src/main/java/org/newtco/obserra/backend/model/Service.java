@@ -1,11 +1,11 @@
 package org.newtco.obserra.backend.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -13,12 +13,26 @@ import java.util.Optional;
  * <p>
  * The Service class is now responsible for storing its own data, separated into: 1. Runtime data required for service
  * interaction (id, name, status, etc.) 2. Collector data stored by collector instances (health, metrics, logs, etc.)
+ * <p>
+ * Collector data is an immutable {@link CollectorData} snapshot that collectors replace atomically, so request threads
+ * can read it while collectors are writing without locking.
  */
 public class Service {
+    private static final VarHandle COLLECTOR_DATA;
+
+    static {
+        try {
+            COLLECTOR_DATA = MethodHandles.lookup().findVarHandle(Service.class, "collectorData", CollectorData.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     // Runtime data required for service interaction
     private String                 id;
     private String                 name;
     private String                 namespace          = "default";
+    private String                 cluster;
     private String                 version            = "unknown";
     private String                 podName;
     private ServiceStatus          status             = ServiceStatus.UNKNOWN;
@@ -31,7 +45,7 @@ public class Service {
     private Boolean                autoRegister       = false;
     private Duration               checkInterval;
     private List<ActuatorEndpoint> actuatorEndpoints  = new ArrayList<>();
-    private Map<String, Object>    collectorData      = new LinkedHashMap<>();
+    private volatile CollectorData collectorData      = CollectorData.EMPTY;
 
     // Collector data stored by collector instances
     private ServiceData serviceData = new ServiceData();
@@ -64,6 +78,15 @@ public class Service {
         return this;
     }
 
+    public String getCluster() {
+        return cluster;
+    }
+
+    public Service setCluster(String cluster) {
+        this.cluster = cluster;
+        return this;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -202,13 +225,41 @@ public class Service {
                                      .filter(ActuatorEndpoint::isEnabled);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Get the data a collector stored for this service
+     *
+     * @param type The collector type
+     *
+     * @return The data from the current snapshot, or null
+     */
     public <T> T collectorData(String type) {
-        return (T) collectorData.get(type);
+        return collectorData.get(type);
+    }
+
+    /**
+     * Get the current snapshot of the collector data. Read it once and use it for all entries that must be
+     * consistent with each other.
+     *
+     * @return The current snapshot
+     */
+    public CollectorData collectorData() {
+        return collectorData;
     }
 
+    /**
+     * Publish a new snapshot of the collector data with the data of one collector replaced. Concurrent collectors
+     * retry on each other's snapshots, so no write is lost.
+     *
+     * @param type The collector type
+     * @param data The data stored by the collector
+     *
+     * @return This service instance for method chaining
+     */
     public Service collectorData(String type, Object data) {
-        this.collectorData.put(type, data);
+        var current = collectorData;
+        while (!COLLECTOR_DATA.compareAndSet(this, current, current.with(type, data))) {
+            current = collectorData;
+        }
         return this;
     }
 
@@ -238,6 +289,7 @@ public class Service {
         this.id = service.id;
         this.name = service.name;
         this.namespace = service.namespace;
+        this.cluster = service.cluster;
         this.version = service.version;
         this.podName = service.podName;
         this.status = service.status;
@@ -0,0 +1,43 @@
+package org.newtco.obserra.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A JSON array assembled from already serialized elements.
+ * <p>
+ * Returned from a controller, it is written by copying the elements straight into the response, see
+ * {@link org.newtco.obserra.backend.config.JsonFragmentsHttpMessageConverter}, so serving it does no serialization.
+ *
+ * @param elements the serialized elements, each a complete JSON value
+ */
+public record JsonFragments(List<byte[]> elements) {
+
+    /**
+     * @return the length of the array in bytes
+     */
+    public long contentLength() {
+        long length = 2 + Math.max(0, elements.size() - 1);
+        for (var element : elements) {
+            length += element.length;
+        }
+        return length;
+    }
+
+    /**
+     * Write the array.
+     *
+     * @param out the stream to write to
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(elements.get(i));
+        }
+        out.write(']');
+    }
+}
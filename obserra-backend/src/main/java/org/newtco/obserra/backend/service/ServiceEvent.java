@@ -0,0 +1,13 @@
+package org.newtco.obserra.backend.service;
+
+/**
+ * An event of the {@link ServiceEventLog}, with its payload already serialized so it is written to every client as
+ * it is.
+ *
+ * @param id        the id of the event, increasing
+ * @param type      the type of the event, {@code status}, {@code metrics} or {@code reset}
+ * @param serviceId the id of the service, null for {@code reset}
+ * @param data      the payload, as JSON
+ */
+public record ServiceEvent(long id, String type, String serviceId, String data) {
+}
@@ -0,0 +1,308 @@
+package org.newtco.obserra.backend.service;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.newtco.obserra.backend.collector.ServiceCollectedEvent;
+import org.newtco.obserra.backend.config.properties.EventStreamProperties;
+import org.newtco.obserra.backend.model.ServiceStatus;
+import org.newtco.obserra.backend.storage.ServiceListener;
+import org.newtco.obserra.backend.storage.Storage;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-memory log of the status transitions and metric samples of the services, as they are collected, for the
+ * Server-Sent Events stream.
+ * <p>
+ * Each collection that stored new data is turned into events: a {@code status} event when the status of the service
+ * changed, and a {@code metrics} event when new metrics were collected. Payloads are serialized once, when the event
+ * is appended, and shared by all clients.
+ * <p>
+ * The log keeps the most recent events, so a client reconnecting with the id of the last event it received resumes
+ * right after it. Ids start at the start time of this instance in microseconds, so ids issued by an earlier run are
+ * older than the log, and clients holding one are sent a {@code reset} event telling them to reload the services.
+ * <p>
+ * Clients read through a {@link Subscription}, with a bounded buffer that collectors append to without blocking. When
+ * the buffer of a slow client overflows, the client reads the events it missed from the log instead, and is only
+ * reset if they were already overwritten there.
+ * <p>
+ * While no client is subscribed, collections are not turned into events at all. Clients resuming from before such a
+ * collection are reset, since the log does not have what they missed.
+ */
+@Component
+public class ServiceEventLog {
+    static final String STATUS  = "status";
+    static final String METRICS = "metrics";
+    static final String RESET   = "reset";
+
+    private final UiServiceCache             uiServices;
+    private final ObjectMapper               objectMapper;
+    private final int                        clientBuffer;
+    private final ServiceEvent[]             events;
+    private final long                       first;
+    private final Set<Subscription>          subscriptions = ConcurrentHashMap.newKeySet();
+    private final Map<String, ServiceStatus> statuses      = new ConcurrentHashMap<>();
+    private final Map<String, Object>        metrics       = new ConcurrentHashMap<>();
+
+    /** The id of the next event, guarded by this. */
+    private long next;
+    /** The id of the last event before a collection was skipped, guarded by this. */
+    private long skippedAfter = Long.MIN_VALUE;
+
+    public ServiceEventLog(EventStreamProperties properties, UiServiceCache uiServices, ObjectMapper objectMapper,
+                           Storage storage) {
+        this.uiServices   = uiServices;
+        this.objectMapper = objectMapper;
+        this.clientBuffer = properties.clientBuffer();
+        this.events       = new ServiceEvent[properties.logCapacity()];
+        this.first        = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.next         = first;
+
+        storage.addServiceListener(new ServiceListener() {
+            @Override
+            public void onServiceDeleted(String serviceId) {
+                forget(serviceId);
+            }
+        });
+    }
+
+    /**
+     * Append the events of a collection.
+     *
+     * @param event the collection event
+     */
+    @EventListener
+    public void onServiceCollected(ServiceCollectedEvent event) {
+        var service = event.service();
+        if (subscriptions.isEmpty()) {
+            // Nobody would read the payloads. The next collection after a client subscribes starts over, with no
+            // previous status
+            synchronized (this) {
+                skippedAfter = next - 1;
+            }
+            forget(service.getId());
+            return;
+        }
+
+        // Only the status is needed, the insights are left to be computed by whoever reads them
+        var view    = uiServices.get(service, Set.of());
+
+        var previous = statuses.put(service.getId(), view.status());
+        if (previous != view.status()) {
+            append(STATUS, service.getId(), new StatusChange(service.getId(), previous, view.status(), view.updated()));
+        }
+
+        // Collectors store a new object for every sample
+        Object sample = service.collectorData("metrics");
+        if (sample != null && metrics.put(service.getId(), sample) != sample) {
+            append(METRICS, service.getId(), new MetricsSample(service.getId(), LocalDateTime.now(), sample));
+        }
+    }
+
+    /**
+     * Subscribe to the events appended from now on, or since the given event.
+     * <p>
+     * If the given event is no longer in the log, was issued by an earlier run or is not an event id at all, the
+     * subscription starts with a {@code reset} event.
+     *
+     * @param lastEventId the id of the last event the client received, or null to start with the next event
+     *
+     * @return the subscription, to be closed when the client is gone
+     */
+    public Subscription subscribe(String lastEventId) {
+        var subscription = new Subscription();
+        // Subscribe before reading the log, events appended in between are received twice and skipped by id
+        subscriptions.add(subscription);
+        subscription.lastId = lastId();
+        if (lastEventId != null) {
+            try {
+                subscription.lastId = Long.parseLong(lastEventId.trim());
+                subscription.catchUp();
+            } catch (NumberFormatException e) {
+                subscription.resetPending = true;
+            }
+        }
+        return subscription;
+    }
+
+    ServiceEvent append(String type, String serviceId, Object payload) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ServiceEvent event;
+        synchronized (this) {
+            event = new ServiceEvent(next++, type, serviceId, data);
+            events[index(event.id())] = event;
+        }
+
+        // Outside the lock, so subscriptions may receive concurrent events out of order and resolve it from the log
+        for (var subscription : subscriptions) {
+            subscription.offer(event);
+        }
+        return event;
+    }
+
+    private void forget(String serviceId) {
+        statuses.remove(serviceId);
+        metrics.remove(serviceId);
+    }
+
+    private synchronized long lastId() {
+        return next - 1;
+    }
+
+    /**
+     * @return the events after the given one, or null if events after it are no longer in the log or were skipped
+     */
+    private synchronized List<ServiceEvent> after(long lastId) {
+        long oldest = Math.max(first, next - events.length);
+        if (lastId < oldest - 1 || lastId >= next || lastId <= skippedAfter) {
+            return null;
+        }
+
+        var result = new ArrayList<ServiceEvent>((int) (next - lastId - 1));
+        for (long id = lastId + 1; id < next; id++) {
+            result.add(events[index(id)]);
+        }
+        return result;
+    }
+
+    private int index(long id) {
+        return (int) Math.floorMod(id, (long) events.length);
+    }
+
+    /**
+     * Payload of a {@code status} event.
+     *
+     * @param serviceId the id of the service
+     * @param previous  the status before, null when the service was first collected while a client was subscribed
+     * @param status    the status now
+     * @param updated   the time the service was last updated
+     */
+    public record StatusChange(String serviceId, ServiceStatus previous, ServiceStatus status, LocalDateTime updated) {
+    }
+
+    /**
+     * Payload of a {@code metrics} event.
+     *
+     * @param serviceId the id of the service
+     * @param timestamp the time the sample was published
+     * @param metrics   the collected metrics
+     */
+    public record MetricsSample(String serviceId, LocalDateTime timestamp, Object metrics) {
+    }
+
+    /**
+     * The events of one client, in order and each once. Only one thread may poll a subscription.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final BlockingQueue<ServiceEvent> buffer = new ArrayBlockingQueue<>(clientBuffer);
+        private volatile boolean                  overflowed;
+        private volatile boolean                  closed;
+
+        // Only used by the polling thread
+        private Iterator<ServiceEvent> backlog;
+        private long                   lastId;
+        private boolean                resetPending;
+
+        private Subscription() {
+        }
+
+        /**
+         * Wait for the next event.
+         *
+         * @param timeout the maximum time to wait
+         *
+         * @return the next event, or null if none arrived in time
+         */
+        public ServiceEvent poll(Duration timeout) throws InterruptedException {
+            while (true) {
+                if (resetPending) {
+                    resetPending = false;
+                    lastId       = lastId();
+                    return new ServiceEvent(lastId, RESET, null, "{}");
+                }
+
+                if (backlog != null) {
+                    if (backlog.hasNext()) {
+                        return delivered(backlog.next());
+                    }
+                    backlog = null;
+                }
+
+                if (overflowed) {
+                    // Everything in the buffer is also in the log
+                    overflowed = false;
+                    buffer.clear();
+                    catchUp();
+                    continue;
+                }
+
+                var event = buffer.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                if (event == null) {
+                    return null;
+                }
+                if (event.id() <= lastId) {
+                    continue;
+                }
+                if (event.id() > lastId + 1) {
+                    // An event was dropped or is still being offered, take the ones in between from the log
+                    catchUp();
+                    continue;
+                }
+                return delivered(event);
+            }
+        }
+
+        /**
+         * @return whether the subscription was closed
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            buffer.clear();
+        }
+
+        void offer(ServiceEvent event) {
+            if (!buffer.offer(event)) {
+                overflowed = true;
+            }
+        }
+
+        private void catchUp() {
+            var missed = after(lastId);
+            if (missed == null) {
+                resetPending = true;
+            } else {
+                backlog = missed.iterator();
+            }
+        }
+
+        private ServiceEvent delivered(ServiceEvent event) {
+            lastId = event.id();
+            return event;
+        }
+    }
+}
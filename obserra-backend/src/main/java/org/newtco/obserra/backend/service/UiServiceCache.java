@@ -0,0 +1,293 @@
+package org.newtco.obserra.backend.service;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.newtco.obserra.backend.insight.ServiceInsightProvider;
+import org.newtco.obserra.backend.insight.ServiceStatusProvider;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+import org.newtco.obserra.backend.model.ui.UiService;
+import org.newtco.obserra.backend.util.ETags;
+import org.newtco.obserra.shared.model.ui.ServiceInsight;
+import org.springframework.stereotype.Component;
+
+/**
+ * Materialized {@link UiService} views of the registered services, shared by the REST and GraphQL endpoints.
+ * <p>
+ * Building a view runs every insight and status provider over the collected data, so views are built once per
+ * collector write and then served as they are, whoever asks for them. Each view is keyed by the version of the
+ * collector data it was built from, and by the registry fields it copies, and is rebuilt on the first read after
+ * either changes. Views are immutable, so they can be shared by concurrent requests.
+ * <p>
+ * Insights are computed on first use, one provider at a time, so callers that only need some of them, like GraphQL
+ * queries selecting few fields, get a view without running the other providers. A services list without insights
+ * costs no more than reading the registry and evaluating the statuses.
+ * <p>
+ * Each view is also kept serialized, on first use, so the services list can be written as {@link JsonFragments}
+ * without running Jackson over every service on every poll.
+ * <p>
+ * Every view gets a new version when it is built, from which the entity tags of the service and the services list
+ * are derived, so unchanged responses can be answered with a 304 without touching the view.
+ */
+@Component
+public class UiServiceCache {
+
+    private final List<ServiceInsightProvider<?>> insightProviders;
+    private final List<ServiceStatusProvider>     statusProviders;
+    private final ObjectMapper                    objectMapper;
+    private final Map<String, CachedView>         views        = new ConcurrentHashMap<>();
+    private final AtomicLong                      viewVersions = new AtomicLong();
+
+    public UiServiceCache(
+        List<ServiceInsightProvider<?>> insightProviders,
+        List<ServiceStatusProvider> statusProviders,
+        ObjectMapper objectMapper) {
+        this.insightProviders = insightProviders;
+        this.statusProviders  = statusProviders;
+        this.objectMapper     = objectMapper;
+    }
+
+    /**
+     * Get the view of a service, building it if the service changed since it was last built.
+     *
+     * @param service the service
+     *
+     * @return the view of the service
+     */
+    public UiService get(Service service) {
+        return cached(service).view(service, insightProviders);
+    }
+
+    /**
+     * Get the view of a service with only the given insights, computing only those not computed for it yet.
+     *
+     * @param service      the service
+     * @param insightTypes the provider types of the insights to include, see
+     *                     {@link ServiceInsightProvider#providerType()}. Unknown types are ignored.
+     *
+     * @return the view of the service, with null insights if none were requested. It may include more insights than
+     * requested.
+     */
+    public UiService get(Service service, Set<String> insightTypes) {
+        var cached = cached(service);
+        if (insightTypes.isEmpty()) {
+            return cached.summary;
+        }
+
+        var selected = new ArrayList<ServiceInsightProvider<?>>(insightProviders.size());
+        for (var provider : insightProviders) {
+            if (insightTypes.contains(provider.providerType())) {
+                selected.add(provider);
+            }
+        }
+        return selected.size() == insightProviders.size()
+            ? cached.view(service, insightProviders)
+            : cached.partialView(service, selected);
+    }
+
+    /**
+     * Get the entity tag of the view of a service, building the view if the service changed since it was last built.
+     *
+     * @param service the service
+     *
+     * @return the quoted entity tag
+     */
+    public String getETag(Service service) {
+        return ETags.of(cached(service).version);
+    }
+
+    /**
+     * Get the entity tag of the views of the given services, in the same order. It changes when any of the views
+     * changes, or when services are added, removed or reordered.
+     *
+     * @param services all registered services
+     *
+     * @return the quoted entity tag
+     */
+    public String getAllETag(Collection<Service> services) {
+        long combined = 0;
+        for (var service : services) {
+            combined = ETags.combine(combined, cached(service).version);
+        }
+        return ETags.of(services.size(), combined);
+    }
+
+    /**
+     * Get the views of the given services, in the same order. Views of services no longer among them are dropped,
+     * so pass all registered services.
+     *
+     * @param services all registered services
+     *
+     * @return the views of the services
+     */
+    public List<UiService> getAll(Collection<Service> services) {
+        var result = new ArrayList<UiService>(services.size());
+        for (var service : services) {
+            result.add(get(service));
+        }
+        evictRemoved(services);
+        return result;
+    }
+
+    /**
+     * Get the views of the given services with only the given insights, see {@link #get(Service, Set)}. Like
+     * {@link #getAll(Collection)}, views of services no longer among them are dropped.
+     *
+     * @param services     all registered services
+     * @param insightTypes the provider types of the insights to include
+     *
+     * @return the views of the services
+     */
+    public List<UiService> getAll(Collection<Service> services, Set<String> insightTypes) {
+        var result = new ArrayList<UiService>(services.size());
+        for (var service : services) {
+            result.add(get(service, insightTypes));
+        }
+        evictRemoved(services);
+        return result;
+    }
+
+    /**
+     * Get the serialized views of the given services as a JSON array, in the same order. Like
+     * {@link #getAll(Collection)}, views of services no longer among them are dropped.
+     *
+     * @param services all registered services
+     *
+     * @return the serialized views of the services
+     */
+    public JsonFragments getAllJson(Collection<Service> services) {
+        var result = new ArrayList<byte[]>(services.size());
+        for (var service : services) {
+            result.add(cached(service).json(service, insightProviders, objectMapper));
+        }
+        evictRemoved(services);
+        return new JsonFragments(result);
+    }
+
+    private CachedView cached(Service service) {
+        var cached = views.get(service.getId());
+        if (cached != null && cached.isCurrent(service)) {
+            return cached;
+        }
+
+        // Compute so concurrent readers of a changed service build its view once
+        return views.compute(service.getId(), (id, current) ->
+            current != null && current.isCurrent(service) ? current : build(service));
+    }
+
+    private void evictRemoved(Collection<Service> services) {
+        if (views.size() > services.size()) {
+            var ids = new HashSet<String>(services.size());
+            for (var service : services) {
+                ids.add(service.getId());
+            }
+            views.keySet().retainAll(ids);
+        }
+    }
+
+    private CachedView build(Service service) {
+        // Read the version first, a view built from newer data than its version is only rebuilt once too often
+        var dataVersion = service.collectorData().version();
+
+        var summary = new UiService(
+            service.getId(),
+            service.getAppId(),
+            service.getName(),
+            service.getVersion(),
+            getServiceStatus(service),
+            service.getLastUpdated(),
+            null);
+        return new CachedView(dataVersion, viewVersions.incrementAndGet(), summary);
+    }
+
+    private ServiceStatus getServiceStatus(Service service) {
+        for (ServiceStatusProvider provider : statusProviders) {
+            var status = provider.status(service);
+            if (status != ServiceStatus.UP) {
+                return status;
+            }
+        }
+        return ServiceStatus.UP;
+    }
+
+    private static final class CachedView {
+        private final long                           dataVersion;
+        private final long                           version;
+        private final UiService                      summary;
+        private final Map<String, ServiceInsight<?>> insights = new ConcurrentHashMap<>();
+        private volatile UiService                   view;
+        private volatile byte[]                      json;
+
+        CachedView(long dataVersion, long version, UiService summary) {
+            this.dataVersion = dataVersion;
+            this.version     = version;
+            this.summary     = summary;
+        }
+
+        UiService view(Service service, List<ServiceInsightProvider<?>> providers) {
+            // Racing readers may both build it, from the same insights
+            var full = view;
+            if (full == null) {
+                full = partialView(service, providers);
+                view = full;
+            }
+            return full;
+        }
+
+        UiService partialView(Service service, List<ServiceInsightProvider<?>> providers) {
+            var full = view;
+            if (full != null) {
+                return full;
+            }
+
+            var result = new TreeMap<String, Object>();
+            for (var provider : providers) {
+                var insight = insights.computeIfAbsent(provider.providerType(), type -> provider.provide(service));
+                result.put(insight.type(), insight.insight());
+            }
+            return new UiService(
+                summary.id(),
+                summary.app(),
+                summary.name(),
+                summary.version(),
+                summary.status(),
+                summary.updated(),
+                Collections.unmodifiableMap(result));
+        }
+
+        byte[] json(Service service, List<ServiceInsightProvider<?>> providers, ObjectMapper objectMapper) {
+            // Racing readers may both serialize, the results are identical
+            var bytes = json;
+            if (bytes == null) {
+                try {
+                    bytes = objectMapper.writeValueAsBytes(view(service, providers));
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+                json = bytes;
+            }
+            return bytes;
+        }
+
+        boolean isCurrent(Service service) {
+            return dataVersion == service.collectorData().version()
+                   && Objects.equals(summary.app(), service.getAppId())
+                   && Objects.equals(summary.name(), service.getName())
+                   && Objects.equals(summary.version(), service.getVersion())
+                   && Objects.equals(summary.updated(), service.getLastUpdated());
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.newtco.obserra.backend.storage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.newtco.obserra.backend.config.properties.StorageProperties;
+import org.newtco.obserra.backend.model.ConfigProperty;
+import org.newtco.obserra.backend.model.Log;
+import org.newtco.obserra.backend.model.LogPattern;
+import org.newtco.obserra.backend.model.Metric;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+import org.newtco.obserra.backend.model.User;
+import org.newtco.obserra.backend.storage.journal.ServiceJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Storage decorator that journals the service registry, so a restart restores the registered services instead of
+ * waiting for every service to re-register or be rediscovered.
+ * <p>
+ * {@code createService}, {@code updateService}, {@code updateServiceByAppId}, {@code registerService} and
+ * {@code deleteService} are applied to the wrapped storage and then recorded in a {@link ServiceJournal}. The call
+ * returns once the record is on disk; concurrent registrations share a single {@code fsync}. Status and last-seen
+ * updates are not journaled, they are refreshed by the next collection anyway.
+ * <p>
+ * On startup the journal's snapshot and log are replayed into the wrapped storage before any other bean can use it.
+ * A new snapshot is written periodically and on shutdown, which also truncates the log.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "obserra.storage.journal", name = "enabled", havingValue = "true")
+@SuppressWarnings("deprecation")
+public class JournalingStorage implements Storage, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JournalingStorage.class);
+
+    private final Storage        delegate;
+    private final ServiceJournal journal;
+    private final Object         mutations = new Object();
+
+    @Autowired
+    public JournalingStorage(MemoryStorage delegate, StorageProperties properties) {
+        this(delegate, new ServiceJournal(properties.journal().directory()));
+    }
+
+    JournalingStorage(Storage delegate, ServiceJournal journal) {
+        this.delegate = delegate;
+        this.journal  = journal;
+
+        var start     = System.nanoTime();
+        var recovered = journal.recovered();
+        for (var service : recovered) {
+            delegate.createService(service);
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Restored {} services from the journal in {} ms",
+                        recovered.size(), (System.nanoTime() - start) / 1_000_000);
+            // Fold the replayed log into a fresh snapshot, so the next start reads the snapshot alone
+            journal.snapshot(delegate.getAllServices());
+        }
+    }
+
+    /**
+     * Writes a snapshot if services changed since the last one.
+     */
+    @Scheduled(fixedDelayString = "${obserra.storage.journal.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!journal.hasChanges()) {
+            return;
+        }
+
+        var start = System.nanoTime();
+        int count;
+        synchronized (mutations) {
+            var services = delegate.getAllServices();
+            count = services.size();
+            journal.snapshot(services);
+        }
+        logger.debug("Snapshot of {} services written in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Service journaled(Supplier<Service> mutation) {
+        Service service;
+        long    sequence;
+        synchronized (mutations) {
+            service  = mutation.get();
+            sequence = journal.put(service);
+        }
+        journal.sync(sequence);
+        return service;
+    }
+
+    @Override
+    public void close() {
+        snapshot();
+        journal.close();
+    }
+
+    // User methods
+    @Override
+    public Optional<User> getUser(String id) {
+        return delegate.getUser(id);
+    }
+
+    @Override
+    public Optional<User> getUserByUsername(String username) {
+        return delegate.getUserByUsername(username);
+    }
+
+    @Override
+    public User createUser(User user) {
+        return delegate.createUser(user);
+    }
+
+    // Service methods
+    @Override
+    public List<Service> getAllServices() {
+        return delegate.getAllServices();
+    }
+
+    @Override
+    public Optional<Service> getService(String id) {
+        return delegate.getService(id);
+    }
+
+    @Override
+    public List<Service> getServices(Collection<String> ids) {
+        return delegate.getServices(ids);
+    }
+
+    @Override
+    public Optional<Service> getServiceByPodName(String podName) {
+        return delegate.getServiceByPodName(podName);
+    }
+
+    @Override
+    public Optional<Service> getServiceByAppId(String appId) {
+        return delegate.getServiceByAppId(appId);
+    }
+
+    @Override
+    public List<Service> getServicesByNamespace(String namespace) {
+        return delegate.getServicesByNamespace(namespace);
+    }
+
+    @Override
+    public Service createService(Service service) {
+        return journaled(() -> delegate.createService(service));
+    }
+
+    @Override
+    public Service updateService(String id, Service service) {
+        return journaled(() -> delegate.updateService(id, service));
+    }
+
+    @Override
+    public Service updateServiceByAppId(String appId, Service service) {
+        return journaled(() -> delegate.updateServiceByAppId(appId, service));
+    }
+
+    @Override
+    public Service updateServiceStatus(String id, ServiceStatus status) {
+        return delegate.updateServiceStatus(id, status);
+    }
+
+    @Override
+    public Service updateServiceLastSeen(String id) {
+        return delegate.updateServiceLastSeen(id);
+    }
+
+    @Override
+    public void deleteService(String id) {
+        long sequence;
+        synchronized (mutations) {
+            delegate.deleteService(id);
+            sequence = journal.delete(id);
+        }
+        journal.sync(sequence);
+    }
+
+    @Override
+    public void addServiceListener(ServiceListener listener) {
+        delegate.addServiceListener(listener);
+    }
+
+    @Override
+    public Service persistServiceData(Service service) {
+        return delegate.persistServiceData(service);
+    }
+
+    // Service registration methods
+    @Override
+    public Service registerService(Service registration) {
+        return journaled(() -> delegate.registerService(registration));
+    }
+
+    // Health check methods
+    @Override
+    public List<Service> getServicesForHealthCheck(int maxAgeSeconds) {
+        return delegate.getServicesForHealthCheck(maxAgeSeconds);
+    }
+
+    // Metrics methods
+    @Override
+    public List<Metric> getMetricsForService(String serviceId, int limit) {
+        return delegate.getMetricsForService(serviceId, limit);
+    }
+
+    @Override
+    public List<Metric> getMetricsForService(String serviceId, LocalDateTime from, LocalDateTime to, int limit) {
+        return delegate.getMetricsForService(serviceId, from, to, limit);
+    }
+
+    @Override
+    public List<Metric> getMetricsForService(String serviceId, LocalDateTime from, LocalDateTime to, Duration step, int limit) {
+        return delegate.getMetricsForService(serviceId, from, to, step, limit);
+    }
+
+    @Override
+    public long getMetricsVersion(String serviceId) {
+        return delegate.getMetricsVersion(serviceId);
+    }
+
+    @Override
+    public Metric createMetric(Metric metric) {
+        return delegate.createMetric(metric);
+    }
+
+    // Logs methods
+    @Override
+    public List<Log> getLogsForService(String serviceId, int limit) {
+        return delegate.getLogsForService(serviceId, limit);
+    }
+
+    @Override
+    public List<Log> getLogsForService(String serviceId, long afterSequence, int limit) {
+        return delegate.getLogsForService(serviceId, afterSequence, limit);
+    }
+
+    @Override
+    public List<Log> searchLogs(String serviceId, String query, String level, LocalDateTime from, LocalDateTime to, int limit) {
+        return delegate.searchLogs(serviceId, query, level, from, to, limit);
+    }
+
+    @Override
+    public List<LogPattern> getLogPatterns(String serviceId, String level, int limit) {
+        return delegate.getLogPatterns(serviceId, level, limit);
+    }
+
+    @Override
+    public Log createLog(Log log) {
+        return delegate.createLog(log);
+    }
+
+    // Configuration methods
+    @Override
+    public List<ConfigProperty> getConfigPropertiesForService(String serviceId) {
+        return delegate.getConfigPropertiesForService(serviceId);
+    }
+
+    @Override
+    public Optional<ConfigProperty> getConfigProperty(String id) {
+        return delegate.getConfigProperty(id);
+    }
+
+    @Override
+    public ConfigProperty createConfigProperty(ConfigProperty property) {
+        return delegate.createConfigProperty(property);
+    }
+
+    @Override
+    public ConfigProperty updateConfigProperty(String id, ConfigProperty property) {
+        return delegate.updateConfigProperty(id, property);
+    }
+
+    @Override
+    public void deleteConfigProperty(String id) {
+        delegate.deleteConfigProperty(id);
+    }
+}
@@ -1,41 +1,112 @@
 package org.newtco.obserra.backend.storage;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+import org.newtco.obserra.backend.config.properties.StorageProperties;
+import org.newtco.obserra.backend.config.properties.StorageProperties.LogTemplateProperties;
 import org.newtco.obserra.backend.model.ConfigProperty;
 import org.newtco.obserra.backend.model.Log;
+import org.newtco.obserra.backend.model.LogPattern;
 import org.newtco.obserra.backend.model.Metric;
 import org.newtco.obserra.backend.model.Service;
 import org.newtco.obserra.backend.model.ServiceStatus;
 import org.newtco.obserra.backend.model.User;
+import org.newtco.obserra.backend.storage.logs.LogRing;
+import org.newtco.obserra.backend.storage.logs.LogTemplateMiner;
+import org.newtco.obserra.backend.storage.logs.ServiceLogs;
+import org.newtco.obserra.backend.storage.metrics.ChunkStore;
+import org.newtco.obserra.backend.storage.metrics.HeapChunkStore;
+import org.newtco.obserra.backend.storage.metrics.MetricHistory;
+import org.newtco.obserra.backend.storage.metrics.MetricSeries;
+import org.newtco.obserra.backend.storage.metrics.RollupTier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
  * In-memory implementation of the Storage interface. This class stores all data in memory using Maps.
+ * <p>
+ * Metrics are kept in a bounded, compressed {@link MetricHistory} per service, retaining
+ * {@code obserra.storage.metrics-retention} samples per series. Logs are kept in a bounded, lock-free
+ * {@link LogRing} per service holding the newest {@code obserra.storage.log-capacity} records, with an inverted
+ * index over their messages for {@link #searchLogs}. Messages are grouped into templates as they arrive, so only the
+ * template and parameters of each are kept, and the templates are counted for {@link #getLogPatterns}.
+ * <p>
+ * Services are indexed by app id, pod name and namespace, users by username and config properties by id, so the
+ * lookups on the registration and discovery paths are O(1). The indexes are updated by every storage mutation. Since
+ * services are mutable and may be changed outside of the storage, each index hit is checked against the service
+ * before it is returned.
+ * <p>
+ * {@link ServiceListener}s are notified after every service is created, updated or deleted. Status and last-seen
+ * updates are not reported, they happen on every collection.
  */
 @Component
+@ConditionalOnProperty(prefix = "obserra.storage", name = "type", havingValue = "memory", matchIfMissing = true)
 public class MemoryStorage implements Storage {
     private final Map<String, User>                 users            = new ConcurrentHashMap<>();
     private final Map<String, Service>              services         = new ConcurrentHashMap<>();
-    private final Map<String, List<Metric>>         metrics          = new ConcurrentHashMap<>();
-    private final Map<String, List<Log>>            logs             = new ConcurrentHashMap<>();
+    private final Map<String, MetricHistory>        metrics          = new ConcurrentHashMap<>();
+    private final Map<String, ServiceLogs>          logs             = new ConcurrentHashMap<>();
     private final Map<String, List<ConfigProperty>> configProperties = new ConcurrentHashMap<>();
 
+    // Secondary indexes, kept in sync by every mutation
+    private final Map<String, String>           userIdsByUsername     = new ConcurrentHashMap<>();
+    private final Map<String, String>           serviceIdsByAppId     = new ConcurrentHashMap<>();
+    private final Map<String, String>           serviceIdsByPodName   = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>>      serviceIdsByNamespace = new ConcurrentHashMap<>();
+    private final Map<String, ServiceIndexKeys> serviceIndexKeys      = new ConcurrentHashMap<>();
+    private final Map<String, ConfigProperty>   configPropertiesById  = new ConcurrentHashMap<>();
+
+    private final List<ServiceListener> serviceListeners = new CopyOnWriteArrayList<>();
+
     private AtomicLong currentUserId           = new AtomicLong(1);
     private AtomicLong currentServiceId        = new AtomicLong(1);
-    private AtomicLong currentMetricId         = new AtomicLong(1);
-    private AtomicLong currentLogId            = new AtomicLong(1);
     private AtomicLong currentConfigPropertyId = new AtomicLong(1);
 
+    private final int                       logCapacity;
+    private final LogTemplateProperties     logTemplates;
+    private final int                       metricsRetention;
+    private final int                       metricsChunkSize;
+    private final Map<RollupTier, Duration> metricsRollups = new EnumMap<>(RollupTier.class);
+
+    public MemoryStorage() {
+        this(new StorageProperties());
+    }
+
+    @Autowired
+    public MemoryStorage(StorageProperties properties) {
+        this.logCapacity      = properties.logCapacity();
+        this.logTemplates     = properties.logTemplates();
+        this.metricsRetention = properties.metricsRetention();
+        this.metricsChunkSize = properties.metricsChunkSize();
+
+        var rollups = properties.metricsRollups();
+        addRollupTier(RollupTier.ONE_MINUTE, rollups.oneMinute());
+        addRollupTier(RollupTier.FIVE_MINUTES, rollups.fiveMinutes());
+        addRollupTier(RollupTier.ONE_HOUR, rollups.oneHour());
+    }
+
+    private void addRollupTier(RollupTier tier, Duration retention) {
+        if (!retention.isZero() && !retention.isNegative()) {
+            metricsRollups.put(tier, retention);
+        }
+    }
+
     // User methods
     @Override
     public Optional<User> getUser(String id) {
@@ -44,15 +115,19 @@ public class MemoryStorage implements Storage {
 
     @Override
     public Optional<User> getUserByUsername(String username) {
-        return users.values().stream()
-                    .filter(user -> user.getUsername().equals(username))
-                    .findFirst();
+        var id = userIdsByUsername.get(username);
+        return id == null
+            ? Optional.empty()
+            : getUser(id).filter(user -> username.equals(user.getUsername()));
     }
 
     @Override
     public User createUser(User user) {
         user.setId(String.valueOf(currentUserId.getAndIncrement()));
         users.put(user.getId(), user);
+        if (user.getUsername() != null) {
+            userIdsByUsername.putIfAbsent(user.getUsername(), user.getId());
+        }
         return user;
     }
 
@@ -67,30 +142,59 @@ public class MemoryStorage implements Storage {
         return Optional.ofNullable(services.get(id));
     }
 
+    @Override
+    public List<Service> getServices(Collection<String> ids) {
+        var result = new ArrayList<Service>(ids.size());
+        for (var id : ids) {
+            var service = services.get(id);
+            if (service != null) {
+                result.add(service);
+            }
+        }
+        return result;
+    }
+
     @Override
     public Optional<Service> getServiceByPodName(String podName) {
-        return services.values().stream()
-                       .filter(service -> podName.equals(service.getPodName()))
-                       .findFirst();
+        return indexedService(serviceIdsByPodName.get(podName))
+            .filter(service -> podName.equals(service.getPodName()));
     }
 
     @Override
     public Optional<Service> getServiceByAppId(String appId) {
-        return services.values().stream()
-                       .filter(service -> appId.equals(service.getAppId()))
-                       .findFirst();
+        return indexedService(serviceIdsByAppId.get(appId))
+            .filter(service -> appId.equals(service.getAppId()));
+    }
+
+    @Override
+    public List<Service> getServicesByNamespace(String namespace) {
+        var ids = serviceIdsByNamespace.get(namespace);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+
+        return ids.stream()
+                  .map(services::get)
+                  .filter(service -> service != null && namespace.equals(service.getNamespace()))
+                  .collect(Collectors.toList());
+    }
+
+    private Optional<Service> indexedService(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(services.get(id));
     }
 
     @Override
     public Service createService(Service service) {
         service.setLastUpdated(LocalDateTime.now());
         services.put(service.getId(), service);
+        indexService(service.getId(), service);
 
         // Initialize empty lists for metrics and logs
-        metrics.put(service.getId(), new ArrayList<>());
-        logs.put(service.getId(), new ArrayList<>());
+        metrics.put(service.getId(), newMetricHistory(service.getId()));
+        logs.put(service.getId(), newServiceLogs(service.getId()));
         configProperties.put(service.getId(), new ArrayList<>());
 
+        serviceChanged(service);
         return service;
     }
 
@@ -103,7 +207,9 @@ public class MemoryStorage implements Storage {
 
         existingService.update(updatedService)
                 .setLastSeen(LocalDateTime.MIN);
+        indexService(id, existingService);
 
+        serviceChanged(existingService);
         return existingService;
     }
 
@@ -114,8 +220,13 @@ public class MemoryStorage implements Storage {
             return createService(service);
         }
 
-        return existing.get().update(service)
+        // update() also copies the id, so re-index under the id the service is stored under
+        var id = existing.get().getId();
+        var updated = existing.get().update(service)
             .setLastSeen(LocalDateTime.MIN);
+        indexService(id, updated);
+        serviceChanged(updated);
+        return updated;
     }
 
     @Override
@@ -143,10 +254,88 @@ public class MemoryStorage implements Storage {
 
     @Override
     public void deleteService(String id) {
-        services.remove(id);
+        var removed = services.remove(id);
+        indexService(id, null);
         metrics.remove(id);
         logs.remove(id);
-        configProperties.remove(id);
+
+        var properties = configProperties.remove(id);
+        if (properties != null) {
+            properties.forEach(property -> configPropertiesById.remove(property.getId(), property));
+        }
+
+        if (removed != null) {
+            for (var listener : serviceListeners) {
+                listener.onServiceDeleted(id);
+            }
+        }
+    }
+
+    @Override
+    public void addServiceListener(ServiceListener listener) {
+        serviceListeners.add(listener);
+    }
+
+    private void serviceChanged(Service service) {
+        for (var listener : serviceListeners) {
+            listener.onServiceChanged(service);
+        }
+    }
+
+    /**
+     * Re-indexes a service under its current app id, pod name and namespace, dropping the entries of its previous
+     * values.
+     *
+     * @param id      the id the service is stored under
+     * @param service the service, or null to drop it from the indexes
+     */
+    private void indexService(String id, Service service) {
+        if (id == null) {
+            return;
+        }
+
+        serviceIndexKeys.compute(id, (key, previous) -> {
+            var keys = service == null
+                ? null
+                : new ServiceIndexKeys(service.getAppId(), service.getPodName(), service.getNamespace());
+            if (Objects.equals(previous, keys)) {
+                return keys;
+            }
+
+            if (previous != null) {
+                if (previous.appId() != null) {
+                    serviceIdsByAppId.remove(previous.appId(), key);
+                }
+                if (previous.podName() != null) {
+                    serviceIdsByPodName.remove(previous.podName(), key);
+                }
+                if (previous.namespace() != null) {
+                    serviceIdsByNamespace.computeIfPresent(previous.namespace(), (namespace, ids) -> {
+                        ids.remove(key);
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+            }
+            if (keys != null) {
+                if (keys.appId() != null) {
+                    serviceIdsByAppId.put(keys.appId(), key);
+                }
+                if (keys.podName() != null) {
+                    serviceIdsByPodName.put(keys.podName(), key);
+                }
+                if (keys.namespace() != null) {
+                    serviceIdsByNamespace.computeIfAbsent(keys.namespace(), namespace -> ConcurrentHashMap.newKeySet())
+                                         .add(key);
+                }
+            }
+            return keys;
+        });
+    }
+
+    /**
+     * The values a service was last indexed under.
+     */
+    private record ServiceIndexKeys(String appId, String podName, String namespace) {
     }
 
     @Override
@@ -208,51 +397,150 @@ public class MemoryStorage implements Storage {
     // Metrics methods
     @Override
     public List<Metric> getMetricsForService(String serviceId, int limit) {
-        List<Metric> serviceMetrics = metrics.getOrDefault(serviceId, new ArrayList<>());
+        MetricHistory history = metrics.get(serviceId);
+        if (history == null) {
+            return new ArrayList<>();
+        }
+
+        // The history is already in time order, most recent first
+        return history.newest(limit);
+    }
+
+    @Override
+    public List<Metric> getMetricsForService(String serviceId, LocalDateTime from, LocalDateTime to, int limit) {
+        MetricHistory history = metrics.get(serviceId);
+        if (history == null) {
+            return new ArrayList<>();
+        }
+
+        return history.range(from, to, limit);
+    }
+
+    @Override
+    public List<Metric> getMetricsForService(String serviceId, LocalDateTime from, LocalDateTime to, Duration step, int limit) {
+        MetricHistory history = metrics.get(serviceId);
+        if (history == null) {
+            return new ArrayList<>();
+        }
+
+        return history.downsample(from, to, step, limit);
+    }
 
-        // Return the most recent metrics first
-        return serviceMetrics.stream()
-                             .sorted(Comparator.comparing(Metric::getTimestamp).reversed())
-                             .limit(limit)
-                             .collect(Collectors.toList());
+    @Override
+    public long getMetricsVersion(String serviceId) {
+        MetricHistory history = metrics.get(serviceId);
+        return history == null ? 0 : history.version();
     }
 
     @Override
     public Metric createMetric(Metric metric) {
-        metric.setId(String.valueOf(currentMetricId.getAndIncrement()));
         if (metric.getTimestamp() == null) {
             metric.setTimestamp(LocalDateTime.now());
         }
+        metric.setId(String.valueOf(MetricHistory.toEpochMillis(metric.getTimestamp())));
 
-        List<Metric> serviceMetrics = metrics.computeIfAbsent(metric.getServiceId(), k -> new ArrayList<>());
-        serviceMetrics.add(metric);
+        metrics.computeIfAbsent(metric.getServiceId(), this::newMetricHistory)
+               .append(metric);
 
         return metric;
     }
 
+    private MetricHistory newMetricHistory(String serviceId) {
+        return new MetricHistory(serviceId, metricsChunkSize, series -> newChunkStore(serviceId, series), metricsRollups);
+    }
+
+    /**
+     * Marks the metrics of a service as changed, for chunks dropped by its chunk stores outside of an append.
+     *
+     * @param serviceId the service whose chunks were dropped
+     */
+    protected void metricsChanged(String serviceId) {
+        MetricHistory history = metrics.get(serviceId);
+        if (history != null) {
+            history.touch();
+        }
+    }
+
+    /**
+     * Creates the store for the sealed chunks of a metric series.
+     *
+     * @param serviceId the service the series belongs to
+     * @param series    the metric series
+     * @return a store keeping the chunks on the heap
+     */
+    protected ChunkStore newChunkStore(String serviceId, MetricSeries series) {
+        return new HeapChunkStore(metricsRetention);
+    }
+
     // Logs methods
     @Override
     public List<Log> getLogsForService(String serviceId, int limit) {
-        List<Log> serviceLogs = logs.getOrDefault(serviceId, new ArrayList<>());
+        ServiceLogs serviceLogs = logs.get(serviceId);
+        if (serviceLogs == null) {
+            return new ArrayList<>();
+        }
+
+        // The ring is in arrival order, most recent first
+        return serviceLogs.newest(limit);
+    }
+
+    @Override
+    public List<Log> getLogsForService(String serviceId, long afterSequence, int limit) {
+        ServiceLogs serviceLogs = logs.get(serviceId);
+        if (serviceLogs == null) {
+            return new ArrayList<>();
+        }
+
+        return serviceLogs.after(afterSequence, limit);
+    }
+
+    @Override
+    public List<Log> searchLogs(String serviceId, String query, String level, LocalDateTime from, LocalDateTime to, int limit) {
+        if (serviceId != null) {
+            ServiceLogs serviceLogs = logs.get(serviceId);
+            return serviceLogs == null ? new ArrayList<>() : serviceLogs.search(query, level, from, to, limit);
+        }
 
-        // Return the most recent logs first
-        return serviceLogs.stream()
-                          .sorted(Comparator.comparing(Log::getTimestamp).reversed())
-                          .limit(limit)
-                          .collect(Collectors.toList());
+        // Each service returns its newest matches, so the overall newest are among them
+        return logs.values().stream()
+                   .flatMap(serviceLogs -> serviceLogs.search(query, level, from, to, limit).stream())
+                   .sorted(Comparator.comparing(Log::getTimestamp).reversed())
+                   .limit(limit)
+                   .collect(Collectors.toList());
     }
 
     @Override
     public Log createLog(Log log) {
-        log.setId(String.valueOf(currentLogId.getAndIncrement()));
         if (log.getTimestamp() == null) {
             log.setTimestamp(LocalDateTime.now());
         }
 
-        List<Log> serviceLogs = logs.computeIfAbsent(log.getServiceId(), k -> new ArrayList<>());
-        serviceLogs.add(log);
+        // The id is the log's sequence within its service, usable as the cursor of getLogsForService
+        return logs.computeIfAbsent(log.getServiceId(), this::newServiceLogs)
+                   .append(log);
+    }
+
+    @Override
+    public List<LogPattern> getLogPatterns(String serviceId, String level, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        if (serviceId != null) {
+            ServiceLogs serviceLogs = logs.get(serviceId);
+            return serviceLogs == null ? new ArrayList<>() : serviceLogs.patterns(level, now, limit);
+        }
+
+        return logs.values().stream()
+                   .flatMap(serviceLogs -> serviceLogs.patterns(level, now, limit).stream())
+                   .sorted(Comparator.comparingLong(LogPattern::getCount).reversed())
+                   .limit(limit)
+                   .collect(Collectors.toList());
+    }
 
-        return log;
+    private ServiceLogs newServiceLogs(String serviceId) {
+        LogTemplateMiner miner = logTemplates.enabled()
+            ? new LogTemplateMiner(logTemplates.depth(), logTemplates.similarity(), logTemplates.maxChildren(),
+                                   logTemplates.maxTemplates())
+            : null;
+        return new ServiceLogs(serviceId, logCapacity, miner);
     }
 
     // Configuration methods
@@ -263,10 +551,7 @@ public class MemoryStorage implements Storage {
 
     @Override
     public Optional<ConfigProperty> getConfigProperty(String id) {
-        return configProperties.values().stream()
-                               .flatMap(List::stream)
-                               .filter(property -> property.getId().equals(id))
-                               .findFirst();
+        return Optional.ofNullable(configPropertiesById.get(id));
     }
 
     @Override
@@ -279,22 +564,27 @@ public class MemoryStorage implements Storage {
         List<ConfigProperty> serviceProperties = configProperties.computeIfAbsent(
                 property.getServiceId(), k -> new ArrayList<>());
         serviceProperties.add(property);
+        configPropertiesById.put(property.getId(), property);
 
         return property;
     }
 
     @Override
     public ConfigProperty updateConfigProperty(String id, ConfigProperty updatedProperty) {
-        // Find the property to update
-        for (List<ConfigProperty> properties : configProperties.values()) {
-            for (int i = 0; i < properties.size(); i++) {
-                ConfigProperty property = properties.get(i);
-                if (property.getId().equals(id)) {
-                    updatedProperty.setId(id);
-                    updatedProperty.setLastUpdated(LocalDateTime.now());
-                    properties.set(i, updatedProperty);
-                    return updatedProperty;
-                }
+        ConfigProperty property = configPropertiesById.get(id);
+        if (property == null) {
+            throw new IllegalArgumentException("Config property not found with id: " + id);
+        }
+
+        // Replace the property in its service's list
+        List<ConfigProperty> properties = configProperties.getOrDefault(property.getServiceId(), new ArrayList<>());
+        for (int i = 0; i < properties.size(); i++) {
+            if (properties.get(i) == property) {
+                updatedProperty.setId(id);
+                updatedProperty.setLastUpdated(LocalDateTime.now());
+                properties.set(i, updatedProperty);
+                configPropertiesById.put(id, updatedProperty);
+                return updatedProperty;
             }
         }
 
@@ -303,8 +593,10 @@ public class MemoryStorage implements Storage {
 
     @Override
     public void deleteConfigProperty(String id) {
-        configProperties.values().forEach(properties -> {
-            properties.removeIf(property -> property.getId().equals(id));
-        });
+        ConfigProperty property = configPropertiesById.remove(id);
+        if (property != null) {
+            configProperties.getOrDefault(property.getServiceId(), new ArrayList<>())
+                            .removeIf(candidate -> candidate == property);
+        }
     }
 }
@@ -0,0 +1,58 @@
+package org.newtco.obserra.backend.storage;
+
+import org.newtco.obserra.backend.config.properties.StorageProperties;
+import org.newtco.obserra.backend.storage.metrics.ChunkStore;
+import org.newtco.obserra.backend.storage.metrics.MetricSeries;
+import org.newtco.obserra.backend.storage.segment.SegmentStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Storage that keeps the sealed metric chunks in memory-mapped segment files instead of on the heap. Everything else
+ * is kept in memory, as in {@link MemoryStorage}.
+ * <p>
+ * Metrics history survives restarts and is retained for {@code obserra.storage.segments.retention}, independent of
+ * the heap size. The uncompressed head chunk and the rollup tiers of each series are still kept on the heap and start
+ * empty after a restart.
+ */
+@Component
+@ConditionalOnProperty(prefix = "obserra.storage", name = "type", havingValue = "segment")
+public class SegmentStorage extends MemoryStorage implements AutoCloseable {
+    private final SegmentStore segments;
+
+    public SegmentStorage(StorageProperties properties) {
+        super(properties);
+
+        var segmentProperties = properties.segments();
+        this.segments = new SegmentStore(segmentProperties.directory(),
+                                         segmentProperties.segmentSize().toBytes(),
+                                         segmentProperties.retention());
+    }
+
+    @Override
+    protected ChunkStore newChunkStore(String serviceId, MetricSeries series) {
+        return segments.store(serviceId, series);
+    }
+
+    @Override
+    public void deleteService(String id) {
+        super.deleteService(id);
+        segments.drop(id);
+    }
+
+    /**
+     * Applies the retention to the segments and compacts them in the background.
+     */
+    @Scheduled(fixedDelayString = "${obserra.storage.segments.maintenance-interval-ms:60000}")
+    public void maintainSegments() {
+        for (String serviceId : segments.maintain(System.currentTimeMillis())) {
+            metricsChanged(serviceId);
+        }
+    }
+
+    @Override
+    public void close() {
+        segments.close();
+    }
+}
@@ -0,0 +1,27 @@
+package org.newtco.obserra.backend.storage;
+
+import org.newtco.obserra.backend.model.Service;
+
+/**
+ * Listener of the service registry, see {@link Storage#addServiceListener(ServiceListener)}.
+ * <p>
+ * Listeners are called on the thread that changed the registry, after the change, and must not block.
+ */
+public interface ServiceListener {
+
+    /**
+     * Called after a service was created, updated or re-registered.
+     *
+     * @param service the service as stored
+     */
+    default void onServiceChanged(Service service) {
+    }
+
+    /**
+     * Called after a service was deleted.
+     *
+     * @param serviceId the id of the deleted service
+     */
+    default void onServiceDeleted(String serviceId) {
+    }
+}
@@ -1,10 +1,14 @@
 package org.newtco.obserra.backend.storage;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.newtco.obserra.backend.model.ConfigProperty;
 import org.newtco.obserra.backend.model.Log;
+import org.newtco.obserra.backend.model.LogPattern;
 import org.newtco.obserra.backend.model.Metric;
 import org.newtco.obserra.backend.model.Service;
 import org.newtco.obserra.backend.model.ServiceStatus;
@@ -27,8 +31,18 @@ public interface Storage {
     // Service methods
     List<Service> getAllServices();
     Optional<Service> getService(String id);
+
+    /**
+     * Get the services with the given IDs in one lookup.
+     *
+     * @param ids the service IDs
+     * @return the services found, in the order of their IDs; unknown IDs are skipped
+     */
+    List<Service> getServices(Collection<String> ids);
+
     Optional<Service> getServiceByPodName(String podName);
     Optional<Service> getServiceByAppId(String appId);
+    List<Service> getServicesByNamespace(String namespace);
     Service createService(Service service);
     Service updateService(String id, Service service);
     Service updateServiceByAppId(String appId, Service service);
@@ -36,6 +50,14 @@ public interface Storage {
     Service updateServiceLastSeen(String id);
     void deleteService(String id);
 
+    /**
+     * Register a listener notified after services are created, updated or deleted, so consumers of the registry can
+     * follow it without reading all services.
+     *
+     * @param listener the listener
+     */
+    void addServiceListener(ServiceListener listener);
+
     // Service data persistence methods
     Service persistServiceData(Service service);
 
@@ -48,12 +70,68 @@ public interface Storage {
     // Metrics methods - deprecated, use Service.getServiceData() instead
     @Deprecated
     List<Metric> getMetricsForService(String serviceId, int limit);
+    /**
+     * Get the metrics of a service recorded within a time range, most recent first.
+     *
+     * @param serviceId the service id
+     * @param from      oldest timestamp to include
+     * @param to        newest timestamp to include
+     * @param limit     maximum number of metrics to return
+     */
+    List<Metric> getMetricsForService(String serviceId, LocalDateTime from, LocalDateTime to, int limit);
+    /**
+     * Get the metrics of a service within a time range, aggregated into {@code step} wide buckets, most recent first.
+     * Gauges are averaged over each bucket, error counts are summed.
+     *
+     * @param serviceId the service id
+     * @param from      oldest timestamp to include
+     * @param to        newest timestamp to include
+     * @param step      width of each bucket
+     * @param limit     maximum number of buckets to return
+     */
+    List<Metric> getMetricsForService(String serviceId, LocalDateTime from, LocalDateTime to, Duration step, int limit);
+    /**
+     * Get the version of the metrics of a service. It changes whenever metrics are recorded for the service, so
+     * responses built from them can be cached until it does.
+     *
+     * @param serviceId the service id
+     * @return the version, or 0 if no metrics were recorded
+     */
+    long getMetricsVersion(String serviceId);
     @Deprecated
     Metric createMetric(Metric metric);
 
     // Logs methods - deprecated, use Service.getServiceData() instead
     @Deprecated
     List<Log> getLogsForService(String serviceId, int limit);
+    /**
+     * Get the logs of a service recorded after a cursor, oldest first. A log's id is its sequence number within the
+     * service, so pollers pass the id of the last log they have seen.
+     *
+     * @param serviceId     the service id
+     * @param afterSequence sequence of the last log already seen, 0 to start from the oldest retained log
+     * @param limit         maximum number of logs to return
+     */
+    List<Log> getLogsForService(String serviceId, long afterSequence, int limit);
+    /**
+     * Search the retained logs, most recent first.
+     *
+     * @param serviceId the service to search, or null for all services
+     * @param query     terms that must all occur in the message, or null for any message
+     * @param level     level the logs must have, or null for any
+     * @param from      oldest timestamp to include, or null
+     * @param to        newest timestamp to include, or null
+     * @param limit     maximum number of logs to return
+     */
+    List<Log> searchLogs(String serviceId, String query, String level, LocalDateTime from, LocalDateTime to, int limit);
+    /**
+     * Get the most frequent log templates, the messages with their variable parts masked.
+     *
+     * @param serviceId the service, or null for all services
+     * @param level     level of the templates, or null for any
+     * @param limit     maximum number of templates to return
+     */
+    List<LogPattern> getLogPatterns(String serviceId, String level, int limit);
     @Deprecated
     Log createLog(Log log);
 
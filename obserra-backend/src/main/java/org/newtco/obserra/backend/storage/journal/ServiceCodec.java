@@ -0,0 +1,139 @@
+package org.newtco.obserra.backend.storage.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+
+import org.newtco.obserra.backend.model.ActuatorEndpoint;
+import org.newtco.obserra.backend.model.RegistrationSource;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+
+/// Compact binary encoding of the registry fields of a [Service], shared by the journal and its snapshots.
+///
+/// Only what is needed to talk to the service again is encoded. Collector data is left out, it is rebuilt by the next
+/// collection. Enums are written as their ordinal, so constants may only ever be appended.
+///
+/// New fields are appended to the encoding with a new [#VERSION], and [#read] still decodes every earlier version, so
+/// a journal written before an upgrade is recovered after it.
+final class ServiceCodec {
+
+    /// Version of the encoding written by [#write]. Version 2 added the cluster.
+    static final int VERSION = 2;
+
+    /// Cluster of the Kubernetes services of version 1, which were all discovered by the default client.
+    static final String DEFAULT_CLUSTER = "default";
+
+    private ServiceCodec() {
+    }
+
+    static void write(DataOutput out, Service service) throws IOException {
+        writeString(out, service.getId());
+        writeString(out, service.getName());
+        writeString(out, service.getNamespace());
+        writeString(out, service.getVersion());
+        writeString(out, service.getPodName());
+        writeEnum(out, service.getStatus());
+        writeDateTime(out, service.getLastUpdated());
+        writeDateTime(out, service.getLastSeen());
+        writeString(out, service.getClusterDns());
+        writeString(out, service.getActuatorUrl());
+        writeEnum(out, service.getRegistrationSource());
+        writeString(out, service.getAppId());
+        out.writeBoolean(Boolean.TRUE.equals(service.getAutoRegister()));
+        out.writeLong(service.getCheckInterval() == null ? -1 : service.getCheckInterval().toMillis());
+
+        var endpoints = service.getActuatorEndpoints();
+        out.writeInt(endpoints == null ? 0 : endpoints.size());
+        if (endpoints != null) {
+            for (var endpoint : endpoints) {
+                writeString(out, endpoint.getType());
+                writeString(out, endpoint.getHref());
+                out.writeByte((endpoint.isEnabled() ? 1 : 0)
+                              | (endpoint.isSensitive() ? 2 : 0)
+                              | (endpoint.isTemplated() ? 4 : 0));
+            }
+        }
+
+        writeString(out, service.getCluster());
+    }
+
+    /// Decodes a service written by [#write] in the given encoding version.
+    static Service read(DataInput in, int version) throws IOException {
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported service encoding version " + version);
+        }
+
+        var service = new Service()
+            .setId(readString(in))
+            .setName(readString(in))
+            .setNamespace(readString(in))
+            .setVersion(readString(in))
+            .setPodName(readString(in))
+            .setStatus(readEnum(in, ServiceStatus.values()))
+            .setLastUpdated(readDateTime(in))
+            .setLastSeen(readDateTime(in))
+            .setClusterDns(readString(in))
+            .setActuatorUrl(readString(in))
+            .setRegistrationSource(readEnum(in, RegistrationSource.values()))
+            .setAppId(readString(in))
+            .setAutoRegister(in.readBoolean());
+
+        var checkInterval = in.readLong();
+        service.setCheckInterval(checkInterval < 0 ? null : Duration.ofMillis(checkInterval));
+
+        var count     = in.readInt();
+        var endpoints = new ArrayList<ActuatorEndpoint>(count);
+        for (int i = 0; i < count; i++) {
+            var type  = readString(in);
+            var href  = readString(in);
+            var flags = in.readByte();
+            endpoints.add(new ActuatorEndpoint(type, href, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0));
+        }
+        service.setActuatorEndpoints(endpoints);
+
+        if (version >= 2) {
+            service.setCluster(readString(in));
+        } else if (service.getRegistrationSource() == RegistrationSource.KUBERNETES) {
+            service.setCluster(DEFAULT_CLUSTER);
+        }
+        return service;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        var ordinal = in.readByte();
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            // Seconds rather than millis, so LocalDateTime.MIN, used as a "never seen" marker, still fits
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,351 @@
+package org.newtco.obserra.backend.storage.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import org.newtco.obserra.backend.model.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/// Write-ahead log of service registry mutations, with periodic binary snapshots.
+///
+/// Each record holds the full registry state of one service, or the id of a deleted one, so replaying a record twice
+/// is harmless and a snapshot may overlap the head of the log. Records are framed as
+/// `[int length][int crc32c][byte op][payload]`; a torn or corrupt record ends the replay and is truncated away. The
+/// payload of a put starts with the encoding version of its service, so records written before an upgrade are replayed
+/// after it.
+///
+/// Writes use group commit: [#put] and [#delete] only enqueue a record, and [#sync] makes it durable. The first
+/// caller of [#sync] writes and forces every queued record in one go while later callers wait for it, so a
+/// registration storm costs one `fsync` per batch rather than per registration.
+///
+/// A [snapshot][#snapshot] is written to a temporary file and atomically moved into place before the log is
+/// truncated, so a crash at any point leaves either the old snapshot and full log, or the new snapshot.
+///
+/// All methods are thread-safe.
+public final class ServiceJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ServiceJournal.class);
+
+    static final String LOG_FILE      = "services.wal";
+    static final String SNAPSHOT_FILE = "services.snapshot";
+
+    private static final int  SNAPSHOT_MAGIC   = 0x4F425352; // "OBSR"
+    private static final int  SNAPSHOT_VERSION = ServiceCodec.VERSION;
+    private static final int  RECORD_HEADER    = 2 * Integer.BYTES;
+    private static final byte PUT_V1           = 1; // service in encoding version 1, only read
+    private static final byte DELETE           = 2;
+    private static final byte PUT              = 3; // encoding version, then the service
+
+    private final Path          logFile;
+    private final Path          snapshotFile;
+    private final List<Service> recovered;
+    private final FileChannel   log;
+
+    private final ReentrantLock lock    = new ReentrantLock();
+    private final Condition     flushed = lock.newCondition();
+    private       List<byte[]>  pending = new ArrayList<>();
+    private       long          appended;     // sequence of the newest queued record
+    private       long          durable;      // sequence of the newest record written and forced
+    private       long          snapshotted;  // sequence of the newest record covered by the snapshot
+    private       boolean       flushing;
+
+    /// Opens the journal in the directory, creating it if needed, and recovers the services it holds.
+    public ServiceJournal(Path directory) {
+        this.logFile      = directory.resolve(LOG_FILE);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        try {
+            Files.createDirectories(directory);
+            var services = new LinkedHashMap<String, Service>();
+            readSnapshot(services);
+            var validLength = readLog(services);
+
+            this.recovered = List.copyOf(services.values());
+            this.log       = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (log.size() > validLength) {
+                logger.warn("Truncating {} bytes of torn records from {}", log.size() - validLength, logFile);
+                log.truncate(validLength);
+            }
+            log.position(validLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open service journal in " + directory, e);
+        }
+    }
+
+    /// @return the services recovered from the snapshot and log when the journal was opened
+    public List<Service> recovered() {
+        return recovered;
+    }
+
+    /// Queues the current state of a service.
+    ///
+    /// @return the sequence to pass to [#sync]
+    public long put(Service service) {
+        var bytes = new ByteArrayOutputStream(256);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            out.writeByte(ServiceCodec.VERSION);
+            ServiceCodec.write(out, service);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return enqueue(bytes.toByteArray());
+    }
+
+    /// Queues the deletion of a service.
+    ///
+    /// @return the sequence to pass to [#sync]
+    public long delete(String serviceId) {
+        var bytes = new ByteArrayOutputStream(64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(DELETE);
+            ServiceCodec.writeString(out, serviceId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return enqueue(bytes.toByteArray());
+    }
+
+    private long enqueue(byte[] record) {
+        lock.lock();
+        try {
+            pending.add(record);
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Waits until the record with the given sequence, and every record queued before it, is on disk.
+    ///
+    /// A failed write is logged rather than thrown: the registry itself lives in memory, and the journal only saves a
+    /// rediscovery after a restart.
+    public void sync(long sequence) {
+        lock.lock();
+        try {
+            while (durable < sequence) {
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+
+                flushing = true;
+                var batch    = pending;
+                var batchEnd = appended;
+                pending = new ArrayList<>();
+                lock.unlock();
+                try {
+                    write(batch);
+                } catch (IOException e) {
+                    logger.error("Failed to write {} records to {}", batch.size(), logFile, e);
+                } finally {
+                    lock.lock();
+                    flushing = false;
+                    durable  = batchEnd;
+                    flushed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<byte[]> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        var size = 0;
+        for (var record : batch) {
+            size += RECORD_HEADER + record.length;
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        var crc    = new CRC32C();
+        for (var record : batch) {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        log.force(false);
+    }
+
+    /// @return true if records were queued since the last snapshot
+    public boolean hasChanges() {
+        lock.lock();
+        try {
+            return appended > snapshotted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Replaces the snapshot with the given services and truncates the log.
+    ///
+    /// The services must reflect every record queued so far; the caller keeps mutations out while this runs.
+    public void snapshot(Collection<Service> services) {
+        long covered;
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            // Holding the flush slot keeps other writers off the log; records queued meanwhile go to the new log
+            flushing = true;
+            covered  = appended;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            var temp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            try (var file = new FileOutputStream(temp.toFile());
+                 var out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(services.size());
+                for (var service : services) {
+                    ServiceCodec.write(out, service);
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            log.truncate(0);
+            log.position(0);
+            log.force(true);
+        } catch (IOException e) {
+            logger.error("Failed to snapshot {} services to {}", services.size(), snapshotFile, e);
+            covered = snapshotted;
+        } finally {
+            lock.lock();
+            try {
+                flushing    = false;
+                snapshotted = covered;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void readSnapshot(Map<String, Service> services) throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 64 * 1024))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Unsupported snapshot format in " + snapshotFile);
+            }
+            // The snapshot version is the encoding version of its services
+            var version = in.readInt();
+            var count   = in.readInt();
+            for (int i = 0; i < count; i++) {
+                var service = ServiceCodec.read(in, version);
+                services.put(service.getId(), service);
+            }
+        }
+    }
+
+    /// Applies the log to the services.
+    ///
+    /// @return the length of the log up to the last valid record
+    private long readLog(Map<String, Service> services) throws IOException {
+        if (!Files.exists(logFile)) {
+            return 0;
+        }
+
+        var  size  = Files.size(logFile);
+        long valid = 0;
+        var  crc   = new CRC32C();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 64 * 1024))) {
+            while (true) {
+                byte[] record;
+                try {
+                    var length = in.readInt();
+                    var check  = in.readInt();
+                    if (length <= 0 || length > size - valid - RECORD_HEADER) {
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+
+                    crc.reset();
+                    crc.update(record);
+                    if ((int) crc.getValue() != check) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                apply(record, services);
+                valid += RECORD_HEADER + record.length;
+            }
+        }
+        return valid;
+    }
+
+    private static void apply(byte[] record, Map<String, Service> services) throws IOException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+            switch (in.readByte()) {
+                case PUT -> {
+                    var service = ServiceCodec.read(in, in.readUnsignedByte());
+                    services.put(service.getId(), service);
+                }
+                case PUT_V1 -> {
+                    var service = ServiceCodec.read(in, 1);
+                    services.put(service.getId(), service);
+                }
+                case DELETE -> services.remove(ServiceCodec.readString(in));
+                default -> throw new IOException("Unknown journal record type");
+            }
+        }
+    }
+
+    /// Writes the queued records and closes the log.
+    @Override
+    public void close() {
+        long last;
+        lock.lock();
+        try {
+            last = appended;
+        } finally {
+            lock.unlock();
+        }
+        sync(last);
+
+        try {
+            log.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close " + logFile, e);
+        }
+    }
+}
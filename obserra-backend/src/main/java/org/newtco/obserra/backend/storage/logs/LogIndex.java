@@ -0,0 +1,107 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/// Inverted index over the messages in a [LogRing]: a [PostingList] of log sequence numbers per term.
+///
+/// The index follows the ring through its cursor, so it sees every record once and in sequence order, whichever
+/// producer appended it. Besides the message terms, each record is indexed under a pseudo-term for its level, so level
+/// filters are answered from the index too. Postings of records that rolled off the ring are pruned as the ring
+/// advances, keeping the index bounded by the ring capacity.
+///
+/// Not thread-safe, callers synchronize.
+final class LogIndex {
+
+    private static final String LEVEL_PREFIX = "\0level:";
+
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private       long                     indexed;      // sequence of the newest indexed record
+    private       long                     prunedBefore; // sequence below which postings were last pruned
+
+    /// Indexes the records appended to the ring since the last call, and prunes the postings of records that rolled
+    /// off once a quarter of the ring has turned over.
+    void catchUp(LogRing<StoredLog> ring) {
+        indexed = ring.forEachAfter(indexed, Integer.MAX_VALUE, (log, sequence) -> {
+            for (var term : LogTokenizer.indexTerms(log.message())) {
+                posting(term).add(sequence);
+            }
+            if (log.level() != null) {
+                posting(levelTerm(log.level())).add(sequence);
+            }
+        });
+
+        var first = ring.firstSequence();
+        if (first - prunedBefore >= Math.max(1, ring.capacity() / 4)) {
+            terms.values().removeIf(postings -> {
+                postings.prune(first);
+                return postings.isEmpty();
+            });
+            prunedBefore = first;
+        }
+    }
+
+    private PostingList posting(String term) {
+        return terms.computeIfAbsent(term, t -> new PostingList());
+    }
+
+    /// @param queryTerms terms that must all occur in the message
+    /// @param level      level the record must have, or null for any
+    /// @param min        lowest sequence to return
+    ///
+    /// @return the matching sequences, ascending, or null if neither terms nor a level were given
+    long[] search(Set<String> queryTerms, String level, long min) {
+        var lists = new ArrayList<PostingList>(queryTerms.size() + 1);
+        for (var term : queryTerms) {
+            lists.add(terms.get(term));
+        }
+        if (level != null) {
+            lists.add(terms.get(levelTerm(level)));
+        }
+        if (lists.isEmpty()) {
+            return null;
+        }
+        if (lists.contains(null)) {
+            return new long[0];
+        }
+
+        // Start from the rarest term, so every intersection step is bounded by the shortest list
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        var result = lists.getFirst().toArray(min);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i).toArray(min));
+        }
+        return result;
+    }
+
+    /// @return the number of distinct terms in the index
+    int termCount() {
+        return terms.size();
+    }
+
+    private static String levelTerm(String level) {
+        return LEVEL_PREFIX + level.toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        var result = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+}
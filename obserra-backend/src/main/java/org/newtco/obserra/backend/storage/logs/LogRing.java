@@ -0,0 +1,133 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+import java.util.function.ObjLongConsumer;
+
+/// Bounded, lock-free, multi-producer ring of the log records of one service.
+///
+/// Every record gets a sequence number, starting at 1 and increasing by one per record. Producers claim a sequence
+/// with a single atomic increment and publish the record into its slot, so concurrent collectors never block each
+/// other. Once the ring is full, each record overwrites the one `capacity` sequences older, keeping memory fixed.
+///
+/// Readers never block producers. [#after] returns records in sequence order starting after a cursor, so pollers only
+/// see new records. It stops at the first claimed but not yet published slot rather than skipping it, so a cursor
+/// never moves past a record that is still being written.
+///
+/// @param <E> the record type
+public final class LogRing<E> {
+
+    private final AtomicReferenceArray<Slot<E>> slots;
+    private final int                           mask;
+    private final AtomicLong                    next = new AtomicLong(1);
+
+    /// @param capacity maximum number of records retained, rounded up to a power of two
+    public LogRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, was " + capacity);
+        }
+        var size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask  = size - 1;
+    }
+
+    /// Appends a record.
+    ///
+    /// @param record creates the record from its sequence number
+    ///
+    /// @return the sequence number of the record
+    public long append(LongFunction<? extends E> record) {
+        var sequence = next.getAndIncrement();
+        var slot     = new Slot<E>(sequence, record.apply(sequence));
+        var index    = index(sequence);
+
+        // A producer a full lap ahead may already have published into this slot; never overwrite a newer record
+        var current = slots.getAcquire(index);
+        while (current == null || current.sequence() < sequence) {
+            var witness = slots.compareAndExchangeRelease(index, current, slot);
+            if (witness == current) {
+                break;
+            }
+            current = witness;
+        }
+        return sequence;
+    }
+
+    /// @return up to `limit` records with a sequence greater than `sequence`, oldest first
+    public List<E> after(long sequence, int limit) {
+        var records = new ArrayList<E>(Math.clamp(limit, 0, capacity()));
+        forEachAfter(sequence, limit, (record, s) -> records.add(record));
+        return records;
+    }
+
+    /// Visits up to `limit` records with a sequence greater than `sequence`, oldest first, together with their
+    /// sequence.
+    ///
+    /// @return the sequence of the last record visited, or `sequence` if none was
+    public long forEachAfter(long sequence, int limit, ObjLongConsumer<? super E> action) {
+        var last    = sequence;
+        var visited = 0;
+        var end     = next.get();
+        var from    = Math.max(Math.max(sequence + 1, end - capacity()), 1);
+        for (var s = from; s < end && visited < limit; s++) {
+            var slot = slots.getAcquire(index(s));
+            if (slot == null || slot.sequence() < s) {
+                break;
+            }
+            if (slot.sequence() == s) {
+                action.accept(slot.record(), s);
+                visited++;
+            }
+            last = s;
+        }
+        return last;
+    }
+
+    /// @return the record with the given sequence, or null if it was overwritten or is not yet published
+    public E get(long sequence) {
+        var slot = slots.getAcquire(index(sequence));
+        return slot != null && slot.sequence() == sequence ? slot.record() : null;
+    }
+
+    /// @return up to `limit` of the newest records, newest first
+    public List<E> newest(int limit) {
+        var records = new ArrayList<E>(Math.clamp(limit, 0, capacity()));
+        var end     = next.get();
+        var from    = Math.max(end - capacity(), 1);
+        for (var s = end - 1; s >= from && records.size() < limit; s--) {
+            var slot = slots.getAcquire(index(s));
+            if (slot != null && slot.sequence() == s) {
+                records.add(slot.record());
+            }
+        }
+        return records;
+    }
+
+    /// @return the sequence of the newest claimed record, or 0 if there is none
+    public long lastSequence() {
+        return next.get() - 1;
+    }
+
+    /// @return the sequence of the oldest record that may still be retained
+    public long firstSequence() {
+        return Math.max(next.get() - capacity(), 1);
+    }
+
+    /// @return the maximum number of records retained
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    private record Slot<E>(long sequence, E record) {
+    }
+}
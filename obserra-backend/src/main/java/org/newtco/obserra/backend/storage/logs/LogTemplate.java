@@ -0,0 +1,54 @@
+package org.newtco.obserra.backend.storage.logs;
+
+/// One version of a log template mined by [LogTemplateMiner]: the tokens of a message, with [#WILDCARD] at the
+/// positions that vary between the messages of the template.
+///
+/// Versions are immutable. When a template generalizes, the miner publishes a new version with the same id, and
+/// records stored against the older version still render exactly.
+///
+/// @param id     id of the template, stable across versions and unique within a service
+/// @param level  level of the logs matching the template
+/// @param tokens the tokens, split on single spaces
+record LogTemplate(int id, String level, String[] tokens) {
+
+    /// Marks a variable position. Compared by identity, so a message that literally contains `<*>` is not mistaken
+    /// for a parameter.
+    static final String WILDCARD = new String("<*>");
+
+    /// @return the parameters of a message matching this template, the tokens at its wildcard positions
+    String[] parameters(String[] messageTokens) {
+        var count = 0;
+        for (var token : tokens) {
+            if (token == WILDCARD) {
+                count++;
+            }
+        }
+
+        var parameters = new String[count];
+        var next       = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i] == WILDCARD) {
+                parameters[next++] = messageTokens[i];
+            }
+        }
+        return parameters;
+    }
+
+    /// @return the message with the given parameters
+    String render(String[] parameters) {
+        var message = new StringBuilder();
+        var next    = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                message.append(' ');
+            }
+            message.append(tokens[i] == WILDCARD ? parameters[next++] : tokens[i]);
+        }
+        return message.toString();
+    }
+
+    /// @return the template as text, with `<*>` for the parameters
+    String pattern() {
+        return String.join(" ", tokens);
+    }
+}
@@ -0,0 +1,217 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// Online log template miner after the Drain algorithm.
+///
+/// Messages are split into tokens on single spaces and routed through a fixed-depth parse tree: first by level and
+/// token count, then by their leading tokens, where tokens containing digits route to a shared wildcard branch. The
+/// leaf holds a handful of templates, and the message joins the most similar one if at least the configured share of
+/// its tokens equals the template's. Positions where the two differ become wildcards. Otherwise the message starts a
+/// new template. The tree keeps the work per message to a few map lookups and a comparison with the leaf's templates,
+/// however many templates there are.
+///
+/// Each template counts its messages, overall and per minute for the recent rate.
+///
+/// Not thread-safe, callers synchronize.
+public final class LogTemplateMiner {
+
+    private static final String WILDCARD_KEY = "<*>";
+    private static final int    RATE_MINUTES = 5;
+
+    private final int    depth;
+    private final double similarity;
+    private final int    maxChildren;
+    private final int    maxTemplates;
+
+    private final Map<String, Node> roots    = new HashMap<>();
+    private final List<Cluster>     clusters = new ArrayList<>();
+
+    /// @param depth        depth of the parse tree, the number of leading tokens routed on is two less
+    /// @param similarity   share of tokens a message must have in common with a template to join it
+    /// @param maxChildren  maximum number of children of a tree node, further tokens route to the wildcard branch
+    /// @param maxTemplates maximum number of templates, further messages that match none are not templated
+    public LogTemplateMiner(int depth, double similarity, int maxChildren, int maxTemplates) {
+        if (depth < 3) {
+            throw new IllegalArgumentException("Depth must be at least 3, was " + depth);
+        }
+        this.depth        = depth;
+        this.similarity   = similarity;
+        this.maxChildren  = maxChildren;
+        this.maxTemplates = maxTemplates;
+    }
+
+    /// Splits a message into the tokens templates are made of. Joining them with single spaces gives the message back.
+    static String[] tokenize(String message) {
+        return message.split(" ", -1);
+    }
+
+    /// Adds a message to its template, creating or generalizing the template as needed.
+    ///
+    /// @return the current version of the template, or null if the message matched none and no more may be created
+    LogTemplate add(String level, String[] tokens, LocalDateTime timestamp) {
+        var node = roots.computeIfAbsent(level + ':' + tokens.length, k -> new Node());
+        for (int i = 0; i < Math.min(depth - 2, tokens.length); i++) {
+            node = node.child(hasDigit(tokens[i]) ? WILDCARD_KEY : tokens[i], maxChildren);
+        }
+
+        var cluster = node.bestMatch(tokens, similarity);
+        if (cluster == null) {
+            if (clusters.size() >= maxTemplates) {
+                return null;
+            }
+            cluster = new Cluster(new LogTemplate(clusters.size() + 1, level, tokens), timestamp);
+            clusters.add(cluster);
+            node.clusters.add(cluster);
+        } else {
+            cluster.generalize(tokens);
+        }
+
+        cluster.count(timestamp);
+        return cluster.template;
+    }
+
+    /// @return the templates with their counts, in order of creation
+    List<TemplateStats> templates(LocalDateTime now) {
+        var stats = new ArrayList<TemplateStats>(clusters.size());
+        for (var cluster : clusters) {
+            stats.add(cluster.stats(now));
+        }
+        return stats;
+    }
+
+    private static boolean hasDigit(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isDigit(token.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long epochMinute(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /// Counts of a template at one point in time.
+    ///
+    /// @param template      current version of the template
+    /// @param count         number of messages matching the template
+    /// @param firstSeen     timestamp of the first matching message
+    /// @param lastSeen      timestamp of the newest matching message
+    /// @param ratePerMinute matching messages per minute over the last five minutes
+    record TemplateStats(LogTemplate template, long count, LocalDateTime firstSeen, LocalDateTime lastSeen,
+                         double ratePerMinute) {
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Cluster>     clusters = new ArrayList<>();
+
+        Node child(String key, int maxChildren) {
+            var child = children.get(key);
+            if (child != null) {
+                return child;
+            }
+            // Keep one slot for the wildcard branch, so a flood of distinct tokens cannot grow the tree unbounded
+            if (!key.equals(WILDCARD_KEY) && children.size() + 1 >= maxChildren) {
+                key = WILDCARD_KEY;
+            }
+            return children.computeIfAbsent(key, k -> new Node());
+        }
+
+        Cluster bestMatch(String[] tokens, double similarity) {
+            Cluster best           = null;
+            double  bestSimilarity = -1;
+            int     bestWildcards  = -1;
+            for (var cluster : clusters) {
+                var templateTokens = cluster.template.tokens();
+                var equal          = 0;
+                var wildcards      = 0;
+                for (int i = 0; i < tokens.length; i++) {
+                    if (templateTokens[i] == LogTemplate.WILDCARD) {
+                        wildcards++;
+                    } else if (templateTokens[i].equals(tokens[i])) {
+                        equal++;
+                    }
+                }
+
+                var score = (double) equal / tokens.length;
+                if (score > bestSimilarity || (score == bestSimilarity && wildcards > bestWildcards)) {
+                    best           = cluster;
+                    bestSimilarity = score;
+                    bestWildcards  = wildcards;
+                }
+            }
+            return bestSimilarity >= similarity ? best : null;
+        }
+    }
+
+    private static final class Cluster {
+        private final long[]        minutes      = new long[8];
+        private final long[]        minuteCounts = new long[8];
+        private final LocalDateTime firstSeen;
+        private       LogTemplate   template;
+        private       LocalDateTime lastSeen;
+        private       long          count;
+
+        Cluster(LogTemplate template, LocalDateTime firstSeen) {
+            this.template  = template;
+            this.firstSeen = firstSeen;
+            this.lastSeen  = firstSeen;
+            Arrays.fill(minutes, Long.MIN_VALUE);
+        }
+
+        void generalize(String[] tokens) {
+            String[] generalized = null;
+            var      current     = template.tokens();
+            for (int i = 0; i < tokens.length; i++) {
+                if (current[i] != LogTemplate.WILDCARD && !current[i].equals(tokens[i])) {
+                    if (generalized == null) {
+                        generalized = current.clone();
+                    }
+                    generalized[i] = LogTemplate.WILDCARD;
+                }
+            }
+            // A new version rather than an update, records stored against the current one must keep rendering
+            if (generalized != null) {
+                template = new LogTemplate(template.id(), template.level(), generalized);
+            }
+        }
+
+        void count(LocalDateTime timestamp) {
+            count++;
+            if (timestamp.isAfter(lastSeen)) {
+                lastSeen = timestamp;
+            }
+
+            var minute = epochMinute(timestamp);
+            var slot   = (int) (minute & (minutes.length - 1));
+            if (minutes[slot] != minute) {
+                if (minute < minutes[slot]) {
+                    return; // Older than the window the slot now covers
+                }
+                minutes[slot]      = minute;
+                minuteCounts[slot] = 0;
+            }
+            minuteCounts[slot]++;
+        }
+
+        TemplateStats stats(LocalDateTime now) {
+            var nowMinute = epochMinute(now);
+            var recent    = 0L;
+            for (int i = 0; i < minutes.length; i++) {
+                if (minutes[i] > nowMinute - RATE_MINUTES && minutes[i] <= nowMinute) {
+                    recent += minuteCounts[i];
+                }
+            }
+            return new TemplateStats(template, count, firstSeen, lastSeen, (double) recent / RATE_MINUTES);
+        }
+    }
+}
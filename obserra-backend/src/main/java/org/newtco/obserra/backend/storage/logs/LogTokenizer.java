@@ -0,0 +1,89 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/// Splits log messages into lower-case search terms.
+///
+/// Terms are runs of letters, digits and `.`, `_`, `-`, `$`, so class names like `java.lang.IllegalStateException`
+/// and request ids like `9f3c-41aa` stay whole. Indexed terms containing `.`, `-` or `$` are also indexed by their
+/// parts, so searching for `IllegalStateException` finds the fully qualified name. Query terms are not split, so
+/// searching for the full name only matches it.
+final class LogTokenizer {
+
+    /// Terms longer than this are skipped, they are mostly payloads and hashes that would bloat the index
+    static final int MAX_TERM_LENGTH = 64;
+
+    private LogTokenizer() {
+    }
+
+    /// @return the distinct terms to index for a message, including the parts of compound terms
+    static Set<String> indexTerms(String text) {
+        var terms = new LinkedHashSet<String>();
+        tokenize(text, terms, true);
+        return terms;
+    }
+
+    /// @return the distinct terms of a query
+    static Set<String> queryTerms(String query) {
+        var terms = new LinkedHashSet<String>();
+        tokenize(query, terms, false);
+        return terms;
+    }
+
+    private static void tokenize(String text, Set<String> terms, boolean withParts) {
+        if (text == null) {
+            return;
+        }
+
+        var length = text.length();
+        var start  = -1;
+        for (int i = 0; i <= length; i++) {
+            var inTerm = i < length && isTermChar(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                addTerm(text, start, i, terms, withParts);
+                start = -1;
+            }
+        }
+    }
+
+    private static void addTerm(String text, int start, int end, Set<String> terms, boolean withParts) {
+        // Punctuation at the edges, like the full stop ending a sentence, is not part of the term
+        while (start < end && isSeparator(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && isSeparator(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end || end - start > MAX_TERM_LENGTH) {
+            return;
+        }
+
+        var term = text.substring(start, end).toLowerCase(Locale.ROOT);
+        terms.add(term);
+        if (!withParts) {
+            return;
+        }
+
+        var partStart = 0;
+        for (int i = 0; i <= term.length(); i++) {
+            if (i == term.length() || isSeparator(term.charAt(i))) {
+                if (i > partStart && (partStart > 0 || i < term.length())) {
+                    terms.add(term.substring(partStart, i));
+                }
+                partStart = i + 1;
+            }
+        }
+    }
+
+    private static boolean isTermChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || isSeparator(c);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '-' || c == '$';
+    }
+}
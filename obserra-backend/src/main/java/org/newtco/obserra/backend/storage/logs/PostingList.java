@@ -0,0 +1,121 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/// Ascending list of log sequence numbers containing a term, compressed as varint-encoded deltas.
+///
+/// Postings are kept in blocks of up to [#BLOCK_SIZE]. Each block stores its first sequence in full and the rest as
+/// deltas to the previous one, which for a term seen every few records takes a byte or two per posting. Blocks let
+/// [#prune] drop postings of logs that rolled off the ring a block at a time, without re-encoding.
+///
+/// Not thread-safe, callers synchronize.
+final class PostingList {
+
+    static final int BLOCK_SIZE = 128;
+
+    private final Deque<Block> sealed = new ArrayDeque<>();
+
+    private byte[] head = new byte[16];
+    private int    headBytes;
+    private int    headCount;
+    private long   headFirst;
+    private long   last;
+    private int    size;
+
+    /// Adds a sequence, which must be greater than every sequence added before.
+    void add(long sequence) {
+        if (size > 0 && sequence <= last) {
+            throw new IllegalArgumentException("Postings must be added in ascending order");
+        }
+
+        if (headCount == 0) {
+            headFirst = sequence;
+        } else {
+            writeVarint(sequence - last);
+        }
+        last = sequence;
+        headCount++;
+        size++;
+
+        if (headCount == BLOCK_SIZE) {
+            sealed.addLast(new Block(headFirst, last, headCount, Arrays.copyOf(head, headBytes)));
+            headBytes = 0;
+            headCount = 0;
+        }
+    }
+
+    /// Drops the blocks whose postings are all below `sequence`. Postings below it in the remaining blocks are left
+    /// for [#toArray] to skip.
+    void prune(long sequence) {
+        while (!sealed.isEmpty() && sealed.peekFirst().last() < sequence) {
+            size -= sealed.removeFirst().count();
+        }
+        if (sealed.isEmpty() && headCount > 0 && last < sequence) {
+            size     -= headCount;
+            headBytes = 0;
+            headCount = 0;
+        }
+    }
+
+    /// @return the postings not below `min`, ascending
+    long[] toArray(long min) {
+        var postings = new long[size];
+        var count    = 0;
+        for (var block : sealed) {
+            if (block.last() >= min) {
+                count = decode(block.data(), block.count(), block.first(), min, postings, count);
+            }
+        }
+        if (headCount > 0 && last >= min) {
+            count = decode(head, headCount, headFirst, min, postings, count);
+        }
+        return count == postings.length ? postings : Arrays.copyOf(postings, count);
+    }
+
+    /// @return the number of postings, including ones below the last prune point in partially pruned blocks
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static int decode(byte[] data, int count, long first, long min, long[] out, int offset) {
+        var value    = first;
+        var position = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                long delta = 0;
+                int  shift = 0;
+                byte b;
+                do {
+                    b      = data[position++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+            }
+            if (value >= min) {
+                out[offset++] = value;
+            }
+        }
+        return offset;
+    }
+
+    private void writeVarint(long value) {
+        if (headBytes + 10 > head.length) {
+            head = Arrays.copyOf(head, head.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            head[headBytes++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        head[headBytes++] = (byte) value;
+    }
+
+    private record Block(long first, long last, int count, byte[] data) {
+    }
+}
@@ -0,0 +1,181 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.newtco.obserra.backend.model.Log;
+import org.newtco.obserra.backend.model.LogPattern;
+
+/// The logs of one service: a [LogRing] of the newest records plus a [LogIndex] over their messages.
+///
+/// With a [LogTemplateMiner], messages are grouped into templates as they are appended, and the ring keeps only the
+/// template and the parameters of each message rather than the full text. Messages are rebuilt when read. Since most
+/// logs are a few templates with varying parameters, this keeps a fraction of the memory, and the per-template counts
+/// answer which patterns are most frequent without scanning the logs.
+///
+/// Appends stay lock-free, apart from the short template match. After appending, a producer brings the index up to
+/// date if no one else is doing so; a producer that finds the index busy leaves its record to the next catch-up, and
+/// every search catches up first, so searches always see all published records.
+///
+/// All methods are thread-safe.
+public final class ServiceLogs {
+
+    private final String             serviceId;
+    private final LogRing<StoredLog> ring;
+    private final LogIndex           index     = new LogIndex();
+    private final ReentrantLock      indexLock = new ReentrantLock();
+    private final LogTemplateMiner   miner;
+    private final ReentrantLock      minerLock = new ReentrantLock();
+
+    /// @param serviceId id of the service
+    /// @param capacity  maximum number of records retained, rounded up to a power of two
+    /// @param miner     miner grouping the messages into templates, or null to keep messages as they are
+    public ServiceLogs(String serviceId, int capacity, LogTemplateMiner miner) {
+        this.serviceId = serviceId;
+        this.ring      = new LogRing<>(capacity);
+        this.miner     = miner;
+    }
+
+    /// Appends a log, setting its id to its sequence within the service.
+    public Log append(Log log) {
+        var message   = log.getMessage();
+        var timestamp = log.getTimestamp();
+        var level     = log.getLevel();
+
+        LogTemplate template = null;
+        String[]    tokens   = null;
+        if (miner != null && message != null) {
+            tokens = LogTemplateMiner.tokenize(message);
+            minerLock.lock();
+            try {
+                template = miner.add(level, tokens, timestamp);
+            } finally {
+                minerLock.unlock();
+            }
+        }
+
+        var parameters = template != null ? template.parameters(tokens) : null;
+        var matched    = template;
+        var sequence   = ring.append(s -> matched != null
+            ? StoredLog.templated(s, timestamp, level, matched, parameters)
+            : StoredLog.raw(s, timestamp, level, message));
+        log.setId(String.valueOf(sequence));
+
+        if (indexLock.tryLock()) {
+            try {
+                index.catchUp(ring);
+            } finally {
+                indexLock.unlock();
+            }
+        }
+        return log;
+    }
+
+    /// @return up to `limit` of the newest logs, newest first
+    public List<Log> newest(int limit) {
+        return toLogs(ring.newest(limit));
+    }
+
+    /// @return up to `limit` logs with a sequence greater than `sequence`, oldest first
+    public List<Log> after(long sequence, int limit) {
+        return toLogs(ring.after(sequence, limit));
+    }
+
+    /// Searches the retained logs.
+    ///
+    /// @param query terms that must all occur in the message, see [LogTokenizer]; null or blank for any message
+    /// @param level level the log must have, case-insensitive, or null for any
+    /// @param from  oldest timestamp to include, or null
+    /// @param to    newest timestamp to include, or null
+    /// @param limit maximum number of logs to return
+    ///
+    /// @return the matching logs, newest first
+    public List<Log> search(String query, String level, LocalDateTime from, LocalDateTime to, int limit) {
+        long[] sequences;
+        indexLock.lock();
+        try {
+            index.catchUp(ring);
+            sequences = index.search(LogTokenizer.queryTerms(query), level, ring.firstSequence());
+        } finally {
+            indexLock.unlock();
+        }
+
+        var logs = new ArrayList<Log>();
+        if (sequences == null) {
+            for (var log : ring.newest(ring.capacity())) {
+                if (logs.size() >= limit) {
+                    break;
+                }
+                if (inRange(log, from, to)) {
+                    logs.add(log.toLog(serviceId));
+                }
+            }
+            return logs;
+        }
+
+        for (int i = sequences.length - 1; i >= 0 && logs.size() < limit; i--) {
+            var log = ring.get(sequences[i]);
+            if (log != null && inRange(log, from, to)) {
+                logs.add(log.toLog(serviceId));
+            }
+        }
+        return logs;
+    }
+
+    /// The most frequent message templates, see [LogTemplateMiner].
+    ///
+    /// @param level level of the templates, case-insensitive, or null for any
+    /// @param now   end of the window the rate is computed over
+    /// @param limit maximum number of templates to return
+    ///
+    /// @return the templates, most frequent first, or none if templates are not mined
+    public List<LogPattern> patterns(String level, LocalDateTime now, int limit) {
+        if (miner == null) {
+            return new ArrayList<>();
+        }
+
+        List<LogTemplateMiner.TemplateStats> templates;
+        minerLock.lock();
+        try {
+            templates = miner.templates(now);
+        } finally {
+            minerLock.unlock();
+        }
+
+        return templates.stream()
+                        .filter(stats -> level == null || level.equalsIgnoreCase(stats.template().level()))
+                        .sorted(Comparator.comparingLong(LogTemplateMiner.TemplateStats::count).reversed())
+                        .limit(limit)
+                        .map(this::toPattern)
+                        .toList();
+    }
+
+    private LogPattern toPattern(LogTemplateMiner.TemplateStats stats) {
+        var pattern = new LogPattern();
+        pattern.setId(String.valueOf(stats.template().id()));
+        pattern.setServiceId(serviceId);
+        pattern.setLevel(stats.template().level());
+        pattern.setTemplate(stats.template().pattern());
+        pattern.setCount(stats.count());
+        pattern.setRatePerMinute(stats.ratePerMinute());
+        pattern.setFirstSeen(stats.firstSeen());
+        pattern.setLastSeen(stats.lastSeen());
+        return pattern;
+    }
+
+    private List<Log> toLogs(List<StoredLog> records) {
+        var logs = new ArrayList<Log>(records.size());
+        for (var record : records) {
+            logs.add(record.toLog(serviceId));
+        }
+        return logs;
+    }
+
+    private static boolean inRange(StoredLog log, LocalDateTime from, LocalDateTime to) {
+        var timestamp = log.timestamp();
+        return (from == null || !timestamp.isBefore(from)) && (to == null || !timestamp.isAfter(to));
+    }
+}
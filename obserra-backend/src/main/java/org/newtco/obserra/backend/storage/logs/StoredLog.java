@@ -0,0 +1,47 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.time.LocalDateTime;
+
+import org.newtco.obserra.backend.model.Log;
+
+/// A log record as kept in the ring: its template and parameters, or the raw message if it matched no template.
+///
+/// @param sequence   sequence of the record within its service
+/// @param timestamp  when the log was recorded
+/// @param level      level of the log
+/// @param template   template version the message matched, or null
+/// @param parameters parameters of the template, or null
+/// @param raw        the message if it matched no template, otherwise null
+record StoredLog(
+    long sequence,
+    LocalDateTime timestamp,
+    String level,
+    LogTemplate template,
+    String[] parameters,
+    String raw
+) {
+
+    static StoredLog templated(long sequence, LocalDateTime timestamp, String level, LogTemplate template,
+                               String[] parameters) {
+        return new StoredLog(sequence, timestamp, level, template, parameters, null);
+    }
+
+    static StoredLog raw(long sequence, LocalDateTime timestamp, String level, String message) {
+        return new StoredLog(sequence, timestamp, level, null, null, message);
+    }
+
+    String message() {
+        return template != null ? template.render(parameters) : raw;
+    }
+
+    /// @return a new model object for the record
+    Log toLog(String serviceId) {
+        var log = new Log();
+        log.setId(String.valueOf(sequence));
+        log.setServiceId(serviceId);
+        log.setTimestamp(timestamp);
+        log.setLevel(level);
+        log.setMessage(message());
+        return log;
+    }
+}
@@ -0,0 +1,43 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.nio.LongBuffer;
+
+/// Reads bit strings written by [BitWriter]. The words may live on the heap or in mapped memory.
+final class BitReader {
+
+    private final LongBuffer words;
+    private       long       position;
+
+    BitReader(LongBuffer words) {
+        this.words = words;
+    }
+
+    /// Reads `count` bits.
+    ///
+    /// @param count number of bits, 0 to 64
+    ///
+    /// @return the bits, right-aligned
+    long read(int count) {
+        if (count == 0) {
+            return 0;
+        }
+
+        int word   = (int) (position >>> 6);
+        int offset = (int) (position & 63);
+        int avail  = 64 - offset;
+
+        long value;
+        if (count <= avail) {
+            value = words.get(word) << offset >>> (64 - count);
+        } else {
+            int rest = count - avail;
+            value = (words.get(word) << offset >>> offset) << rest | words.get(word + 1) >>> (64 - rest);
+        }
+        position += count;
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) != 0;
+    }
+}
@@ -0,0 +1,60 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.Arrays;
+
+/// Appends bit strings to a growable `long[]`, most significant bit first.
+final class BitWriter {
+
+    private long[] words;
+    private long   bits;
+
+    BitWriter(int initialWords) {
+        this.words = new long[Math.max(1, initialWords)];
+    }
+
+    /// Writes the low `count` bits of `value`.
+    ///
+    /// @param value bits to write, right-aligned
+    /// @param count number of bits, 0 to 64
+    void write(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count < 64) {
+            value &= (1L << count) - 1;
+        }
+
+        int word   = (int) (bits >>> 6);
+        int offset = (int) (bits & 63);
+        ensureCapacity(word + 2);
+
+        int free = 64 - offset;
+        if (count <= free) {
+            words[word] |= value << (free - count);
+        } else {
+            words[word]     |= value >>> (count - free);
+            words[word + 1] |= value << (64 - (count - free));
+        }
+        bits += count;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    /// @return the number of bits written
+    long length() {
+        return bits;
+    }
+
+    /// @return a copy of the written words, trimmed to length
+    long[] toArray() {
+        return Arrays.copyOf(words, (int) ((bits + 63) >>> 6));
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > words.length) {
+            words = Arrays.copyOf(words, Math.max(required, words.length * 2));
+        }
+    }
+}
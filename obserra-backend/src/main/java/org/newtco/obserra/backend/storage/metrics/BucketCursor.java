@@ -0,0 +1,64 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+/// Forward-only cursor over the aggregated buckets of a series. A raw sample is a bucket with a count of one.
+interface BucketCursor {
+
+    /// Advances to the next bucket.
+    ///
+    /// @return false if there are no more buckets
+    boolean next();
+
+    /// @return the start of the current bucket, in epoch millis
+    long start();
+
+    double min();
+
+    double max();
+
+    double sum();
+
+    long count();
+
+    /// @return the newest value folded into the current bucket
+    double last();
+
+    /// Views a sample cursor as buckets of one sample each.
+    static BucketCursor of(SampleCursor samples) {
+        return new BucketCursor() {
+            @Override
+            public boolean next() {
+                return samples.next();
+            }
+
+            @Override
+            public long start() {
+                return samples.timestamp();
+            }
+
+            @Override
+            public double min() {
+                return samples.value();
+            }
+
+            @Override
+            public double max() {
+                return samples.value();
+            }
+
+            @Override
+            public double sum() {
+                return samples.value();
+            }
+
+            @Override
+            public long count() {
+                return 1;
+            }
+
+            @Override
+            public double last() {
+                return samples.value();
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.Iterator;
+
+/// Where the sealed chunks of a [ChunkedSeries] are kept. Chunks are appended in time order and are read back newest
+/// first.
+///
+/// Implementations decide retention and where chunk data lives, e.g. [HeapChunkStore] on the heap or a store backed
+/// by memory-mapped segment files.
+public interface ChunkStore {
+
+    /// Stores a sealed chunk. It is newer than every chunk stored before.
+    void append(GorillaChunk chunk);
+
+    /// @return the stored chunks, newest first. The iterator must not be affected by concurrent appends or eviction.
+    Iterator<GorillaChunk> newestFirst();
+
+    /// @return the timestamp of the oldest stored sample, or [Long#MAX_VALUE] if there is none
+    long oldestTimestamp();
+
+    /// @return the number of stored samples
+    int sampleCount();
+
+    /// @return the number of bytes used by the stored chunks
+    long sizeInBytes();
+}
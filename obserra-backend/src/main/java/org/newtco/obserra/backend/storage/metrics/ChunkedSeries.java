@@ -0,0 +1,156 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.Iterator;
+
+/// Time series of `(timestamp, value)` samples kept as a chain of compressed [GorillaChunk]s plus an uncompressed head
+/// chunk.
+///
+/// Samples are appended to the head, backed by primitive arrays. When the head is full it is encoded into an immutable
+/// chunk, handed to the [ChunkStore] and a new head is started, so appends are O(1) and only allocate when a chunk is
+/// sealed. Retention of sealed chunks is up to the store.
+///
+/// Samples are expected to be appended in timestamp order.
+///
+/// Not thread-safe, callers synchronize. Sealed chunks are immutable and may be read without synchronization.
+final class ChunkedSeries {
+
+    private final long[]     headTimestamps;
+    private final double[]   headValues;
+    private final ChunkStore chunks;
+    private       int        headSize;
+
+    /// @param chunkSize number of samples per chunk
+    /// @param chunks    store for sealed chunks
+    ChunkedSeries(int chunkSize, ChunkStore chunks) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, was " + chunkSize);
+        }
+        this.chunks         = chunks;
+        this.headTimestamps = new long[chunkSize];
+        this.headValues     = new double[chunkSize];
+    }
+
+    /// Appends a sample, sealing the head chunk if it is full.
+    ///
+    /// @param timestamp epoch millis of the sample
+    /// @param value     sample value
+    void append(long timestamp, double value) {
+        headTimestamps[headSize] = timestamp;
+        headValues[headSize]     = value;
+        headSize++;
+
+        if (headSize == headTimestamps.length) {
+            seal();
+        }
+    }
+
+    /// @return the number of retained samples
+    int size() {
+        return chunks.sampleCount() + headSize;
+    }
+
+    /// @return the timestamp of the oldest retained sample, or [Long#MAX_VALUE] if there is none
+    long oldestTimestamp() {
+        var oldest = chunks.oldestTimestamp();
+        if (oldest != Long.MAX_VALUE) {
+            return oldest;
+        }
+        return headSize > 0 ? headTimestamps[0] : Long.MAX_VALUE;
+    }
+
+    /// @return the number of bytes used by the sealed chunks
+    long compressedBytes() {
+        return chunks.sizeInBytes();
+    }
+
+    /// @return a cursor over the samples with a timestamp in `[from, to]`, newest first
+    SampleCursor newestFirst(long from, long to) {
+        return new NewestFirstCursor(from, to);
+    }
+
+    private void seal() {
+        chunks.append(GorillaChunk.encode(headTimestamps, headValues, headSize));
+        headSize = 0;
+    }
+
+    /// Walks the head backwards, then each sealed chunk from newest to oldest. Chunks are decoded one at a time with a
+    /// streaming decoder into a small scratch buffer, and chunks outside the requested range are skipped without
+    /// decoding.
+    private final class NewestFirstCursor implements SampleCursor {
+        private final long                   from;
+        private final long                   to;
+        private final Iterator<GorillaChunk> older = chunks.newestFirst();
+
+        private long[]   timestamps = headTimestamps;
+        private double[] values     = headValues;
+        private int      index      = headSize;
+        private long     timestamp;
+        private double   value;
+
+        NewestFirstCursor(long from, long to) {
+            this.from = from;
+            this.to   = to;
+        }
+
+        @Override
+        public boolean next() {
+            while (true) {
+                while (index > 0) {
+                    index--;
+                    var ts = timestamps[index];
+                    if (ts < from) {
+                        return false;
+                    }
+                    if (ts <= to) {
+                        timestamp = ts;
+                        value     = values[index];
+                        return true;
+                    }
+                }
+
+                if (!loadNextChunk()) {
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public long timestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public double value() {
+            return value;
+        }
+
+        private boolean loadNextChunk() {
+            while (older.hasNext()) {
+                var chunk = older.next();
+                if (chunk.maxTimestamp() < from) {
+                    return false;
+                }
+                if (chunk.minTimestamp() > to) {
+                    continue;
+                }
+
+                if (timestamps == headTimestamps || timestamps.length < chunk.count()) {
+                    // Never decode into the live head. Chunks persisted with a larger chunk size may not fit either
+                    timestamps = new long[Math.max(chunk.count(), headTimestamps.length)];
+                    values     = new double[timestamps.length];
+                }
+
+                var decoder = chunk.decoder();
+                int n       = 0;
+                while (decoder.next()) {
+                    timestamps[n] = decoder.timestamp();
+                    values[n]     = decoder.value();
+                    n++;
+                }
+                index = n;
+                return true;
+            }
+            return false;
+        }
+    }
+}
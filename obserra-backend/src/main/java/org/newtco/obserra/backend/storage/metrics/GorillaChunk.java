@@ -0,0 +1,241 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.nio.LongBuffer;
+
+/// Immutable, compressed block of `(timestamp, value)` samples in time order, encoded as described in the Gorilla
+/// paper (Pelkonen et al., _Gorilla: A Fast, Scalable, In-Memory Time Series Database_, VLDB 2015).
+///
+/// Timestamps are epoch millis, stored as delta-of-deltas:
+///
+/// | delta-of-delta      | encoding             |
+/// |---------------------|----------------------|
+/// | 0                   | `0`                  |
+/// | [-64, 63]           | `10` + 7 bits        |
+/// | [-256, 255]         | `110` + 9 bits       |
+/// | [-2048, 2047]       | `1110` + 12 bits     |
+/// | otherwise           | `1111` + 64 bits     |
+///
+/// Values are XORed with the previous value. An identical value is a single `0` bit; otherwise the meaningful bits
+/// of the XOR are written, reusing the previous leading/trailing zero window when they fit into it (`10`) or with a
+/// new window (`11` + 5 bits leading zeros + 6 bits length).
+///
+/// With regular collection intervals and slowly changing values, most samples take one or two bits for the
+/// timestamp and well under two bytes for the value.
+///
+/// The encoded words are held in a [LongBuffer], so a chunk can live on the heap or be a view of a memory-mapped
+/// file, see [#wrap].
+public final class GorillaChunk {
+
+    private final LongBuffer data;
+    private final int        count;
+    private final long       minTimestamp;
+    private final long       maxTimestamp;
+
+    private GorillaChunk(LongBuffer data, int count, long minTimestamp, long maxTimestamp) {
+        this.data         = data;
+        this.count        = count;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    /// Encodes the first `count` samples of the given arrays.
+    ///
+    /// @param timestamps epoch millis, in ascending order
+    /// @param values     sample values
+    /// @param count      number of samples, at least 1
+    ///
+    /// @return the encoded chunk
+    public static GorillaChunk encode(long[] timestamps, double[] values, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("A chunk needs at least one sample");
+        }
+
+        var out = new BitWriter(count / 4 + 4);
+        out.write(timestamps[0], 64);
+        out.write(Double.doubleToRawLongBits(values[0]), 64);
+
+        long prevTimestamp = timestamps[0];
+        long prevDelta     = 0;
+        long prevBits      = Double.doubleToRawLongBits(values[0]);
+        int  prevLeading   = Integer.MAX_VALUE;
+        int  prevTrailing  = 0;
+
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - prevTimestamp;
+            writeDeltaOfDelta(out, delta - prevDelta);
+            prevTimestamp = timestamps[i];
+            prevDelta     = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor  = bits ^ prevBits;
+            prevBits = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                continue;
+            }
+
+            out.writeBit(true);
+            int leading  = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= prevLeading && trailing >= prevTrailing) {
+                // Fits into the previous window
+                out.writeBit(false);
+                out.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int length = 64 - leading - trailing;
+                out.writeBit(true);
+                out.write(leading, 5);
+                out.write(length == 64 ? 0 : length, 6);
+                out.write(xor >>> trailing, length);
+                prevLeading  = leading;
+                prevTrailing = trailing;
+            }
+        }
+
+        return new GorillaChunk(LongBuffer.wrap(out.toArray()), count, timestamps[0], timestamps[count - 1]);
+    }
+
+    /// Creates a chunk over words previously obtained from [#copyWordsTo(LongBuffer)], without copying them.
+    ///
+    /// @param words        the encoded words; the buffer must not be modified afterwards
+    /// @param count        number of samples
+    /// @param minTimestamp timestamp of the oldest sample
+    /// @param maxTimestamp timestamp of the newest sample
+    ///
+    /// @return the chunk
+    public static GorillaChunk wrap(LongBuffer words, int count, long minTimestamp, long maxTimestamp) {
+        return new GorillaChunk(words.slice(), count, minTimestamp, maxTimestamp);
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long dod) {
+        if (dod == 0) {
+            out.writeBit(false);
+        } else if (dod >= -64 && dod <= 63) {
+            out.write(0b10, 2);
+            out.write(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            out.write(0b110, 3);
+            out.write(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            out.write(0b1110, 4);
+            out.write(dod, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(dod, 64);
+        }
+    }
+
+    /// @return the number of samples in the chunk
+    public int count() {
+        return count;
+    }
+
+    /// @return the timestamp of the oldest sample
+    public long minTimestamp() {
+        return minTimestamp;
+    }
+
+    /// @return the timestamp of the newest sample
+    public long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /// @return the encoded size in bytes
+    public int sizeInBytes() {
+        return wordCount() * Long.BYTES;
+    }
+
+    /// @return the number of encoded words
+    public int wordCount() {
+        return data.limit();
+    }
+
+    /// Copies the encoded words to the buffer's current position.
+    ///
+    /// @param target buffer with at least [#wordCount()] words remaining
+    public void copyWordsTo(LongBuffer target) {
+        target.put(data.duplicate().clear());
+    }
+
+    /// @return a decoder positioned before the oldest sample
+    public Decoder decoder() {
+        return new Decoder();
+    }
+
+    /// Streaming decoder over the samples of a chunk, oldest first.
+    public final class Decoder {
+        private final BitReader in = new BitReader(data.duplicate());
+
+        private int  index = -1;
+        private long timestamp;
+        private long delta;
+        private long bits;
+        private int  leading;
+        private int  trailing;
+
+        private Decoder() {
+        }
+
+        /// Advances to the next sample.
+        ///
+        /// @return false if there are no more samples
+        public boolean next() {
+            if (index + 1 >= count) {
+                return false;
+            }
+            index++;
+
+            if (index == 0) {
+                timestamp = in.read(64);
+                bits      = in.read(64);
+                return true;
+            }
+
+            delta     += readDeltaOfDelta();
+            timestamp += delta;
+
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading  = (int) in.read(5);
+                    int length = (int) in.read(6);
+                    if (length == 0) {
+                        length = 64;
+                    }
+                    trailing = 64 - leading - length;
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+            return true;
+        }
+
+        /// @return the timestamp of the current sample
+        public long timestamp() {
+            return timestamp;
+        }
+
+        /// @return the value of the current sample
+        public double value() {
+            return Double.longBitsToDouble(bits);
+        }
+
+        private long readDeltaOfDelta() {
+            if (!in.readBit()) {
+                return 0;
+            }
+            if (!in.readBit()) {
+                return signExtend(in.read(7), 7);
+            }
+            if (!in.readBit()) {
+                return signExtend(in.read(9), 9);
+            }
+            if (!in.readBit()) {
+                return signExtend(in.read(12), 12);
+            }
+            return in.read(64);
+        }
+    }
+
+    private static long signExtend(long value, int bits) {
+        return value << (64 - bits) >> (64 - bits);
+    }
+}
@@ -0,0 +1,55 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/// [ChunkStore] keeping chunks on the heap with count-based retention: the oldest chunk is dropped once the remaining
+/// chunks still hold at least the retained number of samples.
+///
+/// Not thread-safe, callers synchronize.
+public final class HeapChunkStore implements ChunkStore {
+
+    private final int                 retention;
+    private final Deque<GorillaChunk> chunks = new ArrayDeque<>();
+    private       int                 samples;
+
+    /// @param retention minimum number of samples retained
+    public HeapChunkStore(int retention) {
+        this.retention = retention;
+    }
+
+    @Override
+    public void append(GorillaChunk chunk) {
+        chunks.addLast(chunk);
+        samples += chunk.count();
+
+        while (!chunks.isEmpty() && samples - chunks.peekFirst().count() >= retention) {
+            samples -= chunks.removeFirst().count();
+        }
+    }
+
+    @Override
+    public Iterator<GorillaChunk> newestFirst() {
+        return chunks.descendingIterator();
+    }
+
+    @Override
+    public long oldestTimestamp() {
+        return chunks.isEmpty() ? Long.MAX_VALUE : chunks.peekFirst().minTimestamp();
+    }
+
+    @Override
+    public int sampleCount() {
+        return samples;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (var chunk : chunks) {
+            bytes += chunk.sizeInBytes();
+        }
+        return bytes;
+    }
+}
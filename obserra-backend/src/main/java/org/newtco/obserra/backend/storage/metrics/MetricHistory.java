@@ -0,0 +1,297 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.newtco.obserra.backend.model.Metric;
+
+/// Bounded metrics history of a single service.
+///
+/// A [Metric] row is split into one [ChunkedSeries] per [MetricSeries], so the history holds only compressed samples
+/// rather than boxed rows. Rows are rebuilt on read by merging the series on their timestamps, newest first, which
+/// needs no sorting since each series is already in time order.
+///
+/// Fields that were null when appended are left null in the rebuilt row. The row id is the sample's epoch millis, and
+/// [Metric#getMetricData()] is not retained.
+///
+/// Each series is also rolled up into the enabled [RollupTier]s as samples are appended. Downsampled queries read from
+/// the coarsest tier whose resolution fits the requested step and whose retention still covers the requested range, so
+/// long-range queries touch a bounded number of buckets instead of every raw sample.
+///
+/// Every append gives the history a new [#version], drawn from a counter shared by all histories, so callers can tell
+/// if the history changed without reading it. Chunks dropped by the [ChunkStore] on its own, outside of an append,
+/// must be reported with [#touch()].
+///
+/// All methods are thread-safe.
+public final class MetricHistory {
+
+    private static final MetricSeries[] SERIES   = MetricSeries.values();
+    private static final RollupTier[]   TIERS    = RollupTier.values();
+    private static final AtomicLong     VERSIONS = new AtomicLong();
+
+    private final String           serviceId;
+    private final ChunkedSeries[]  series  = new ChunkedSeries[SERIES.length];
+    private final RollupSeries[][] rollups = new RollupSeries[TIERS.length][]; // null when the tier is disabled
+    private volatile long          version = VERSIONS.incrementAndGet();
+
+    /// Creates a history without rollups.
+    ///
+    /// @param serviceId id of the service the history belongs to
+    /// @param chunkSize number of samples per compressed chunk
+    /// @param retention minimum number of samples retained per series
+    public MetricHistory(String serviceId, int chunkSize, int retention) {
+        this(serviceId, chunkSize, retention, Map.of());
+    }
+
+    /// @param serviceId       id of the service the history belongs to
+    /// @param chunkSize       number of samples per compressed chunk
+    /// @param retention       minimum number of samples retained per series
+    /// @param rollupRetention retention of each rollup tier; tiers that are absent are disabled
+    public MetricHistory(String serviceId, int chunkSize, int retention, Map<RollupTier, Duration> rollupRetention) {
+        this(serviceId, chunkSize, _ -> new HeapChunkStore(retention), rollupRetention);
+    }
+
+    /// @param serviceId       id of the service the history belongs to
+    /// @param chunkSize       number of samples per compressed chunk
+    /// @param chunkStores     creates the store for the sealed chunks of each series
+    /// @param rollupRetention retention of each rollup tier; tiers that are absent are disabled
+    public MetricHistory(String serviceId,
+                         int chunkSize,
+                         Function<MetricSeries, ChunkStore> chunkStores,
+                         Map<RollupTier, Duration> rollupRetention) {
+        this.serviceId = serviceId;
+        for (int i = 0; i < series.length; i++) {
+            series[i] = new ChunkedSeries(chunkSize, chunkStores.apply(SERIES[i]));
+        }
+
+        for (var tier : TIERS) {
+            var tierRetention = rollupRetention.get(tier);
+            if (tierRetention == null) {
+                continue;
+            }
+
+            var capacity = (int) Math.max(1, tierRetention.toMillis() / tier.resolutionMillis());
+            var tierSeries = new RollupSeries[SERIES.length];
+            for (int i = 0; i < tierSeries.length; i++) {
+                tierSeries[i] = new RollupSeries(tier.resolutionMillis(), capacity);
+            }
+            rollups[tier.ordinal()] = tierSeries;
+        }
+    }
+
+    /// Appends the non-null fields of a row.
+    ///
+    /// @param metric the row; its timestamp must be set
+    public synchronized void append(Metric metric) {
+        var timestamp = toEpochMillis(metric.getTimestamp());
+        for (int i = 0; i < SERIES.length; i++) {
+            var value = SERIES[i].read(metric);
+            if (value != null) {
+                series[i].append(timestamp, value.doubleValue());
+                for (var tier : rollups) {
+                    if (tier != null) {
+                        tier[i].add(timestamp, value.doubleValue());
+                    }
+                }
+            }
+        }
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /// Gives the history a new version, e.g. after its chunk store dropped expired chunks.
+    public void touch() {
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /// @return the version of the history, which changes with every append and is never reused by another history
+    public long version() {
+        return version;
+    }
+
+    /// @param limit maximum number of rows to return
+    ///
+    /// @return up to `limit` rows, newest first
+    public synchronized List<Metric> newest(int limit) {
+        return merge(Long.MIN_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    /// @param from  oldest timestamp to include
+    /// @param to    newest timestamp to include
+    /// @param limit maximum number of rows to return
+    ///
+    /// @return up to `limit` rows with a timestamp in `[from, to]`, newest first
+    public synchronized List<Metric> range(LocalDateTime from, LocalDateTime to, int limit) {
+        return merge(toEpochMillis(from), toEpochMillis(to), limit);
+    }
+
+    /// Aggregates the history into `step` wide buckets. Gauges are averaged over each bucket and counts are summed, see
+    /// [MetricSeries].
+    ///
+    /// @param from  oldest timestamp to include
+    /// @param to    newest timestamp to include
+    /// @param step  width of the returned buckets
+    /// @param limit maximum number of rows to return
+    ///
+    /// @return up to `limit` rows, one per bucket with data, newest first. The timestamp of a row is the start of its
+    /// bucket.
+    public synchronized List<Metric> downsample(LocalDateTime from, LocalDateTime to, Duration step, int limit) {
+        var fromMillis = toEpochMillis(from);
+        var toMillis   = toEpochMillis(to);
+        var stepMillis = Math.max(1, step.toMillis());
+
+        var cursors = source(fromMillis, toMillis, stepMillis);
+        var valid   = new boolean[cursors.length];
+        for (int i = 0; i < cursors.length; i++) {
+            valid[i] = cursors[i].next();
+        }
+
+        var result = new ArrayList<Metric>();
+        while (result.size() < limit) {
+            // Newest step bucket among the series heads
+            var newest = Long.MIN_VALUE;
+            var any    = false;
+            for (int i = 0; i < cursors.length; i++) {
+                if (valid[i]) {
+                    var bucket = Math.floorDiv(cursors[i].start(), stepMillis);
+                    if (!any || bucket > newest) {
+                        newest = bucket;
+                        any    = true;
+                    }
+                }
+            }
+            if (!any) {
+                break;
+            }
+
+            // Fold every source bucket of every series that falls into that step bucket
+            var row = newRow(newest * stepMillis);
+            for (int i = 0; i < cursors.length; i++) {
+                double sum   = 0;
+                long   count = 0;
+                while (valid[i] && Math.floorDiv(cursors[i].start(), stepMillis) == newest) {
+                    sum   += cursors[i].sum();
+                    count += cursors[i].count();
+                    valid[i] = cursors[i].next();
+                }
+                if (count > 0) {
+                    SERIES[i].write(row, SERIES[i].aggregate(sum, count));
+                }
+            }
+            result.add(row);
+        }
+
+        return result;
+    }
+
+    /// Picks the coarsest source whose resolution fits in `step` and whose retention reaches back to `from`. The raw
+    /// samples are the finest source. If no source reaches back far enough, the one with the oldest data is used.
+    private BucketCursor[] source(long from, long to, long step) {
+        var candidates = new ArrayList<BucketCursorFactory>();
+        for (int t = TIERS.length - 1; t >= 0; t--) {
+            var tier = rollups[t];
+            if (tier != null && TIERS[t].resolutionMillis() <= step) {
+                candidates.add(new BucketCursorFactory(oldest(tier), i -> tier[i].newestFirst(from, to)));
+            }
+        }
+        var rawOldest = Long.MAX_VALUE;
+        for (var s : series) {
+            rawOldest = Math.min(rawOldest, s.oldestTimestamp());
+        }
+        candidates.add(new BucketCursorFactory(rawOldest, i -> BucketCursor.of(series[i].newestFirst(from, to))));
+
+        var chosen = candidates.getFirst();
+        for (var candidate : candidates) {
+            if (candidate.oldest() <= from) {
+                chosen = candidate;
+                break;
+            }
+            if (candidate.oldest() < chosen.oldest()) {
+                chosen = candidate;
+            }
+        }
+
+        var cursors = new BucketCursor[SERIES.length];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = chosen.cursor().apply(i);
+        }
+        return cursors;
+    }
+
+    private static long oldest(RollupSeries[] tier) {
+        var oldest = Long.MAX_VALUE;
+        for (var s : tier) {
+            oldest = Math.min(oldest, s.oldestStart());
+        }
+        return oldest;
+    }
+
+    private record BucketCursorFactory(long oldest, IntFunction<BucketCursor> cursor) {
+    }
+
+    /// @return the number of bytes used by the compressed chunks of all series
+    public synchronized long compressedBytes() {
+        long bytes = 0;
+        for (var s : series) {
+            bytes += s.compressedBytes();
+        }
+        return bytes;
+    }
+
+    private List<Metric> merge(long from, long to, int limit) {
+        var result  = new ArrayList<Metric>();
+        var cursors = new SampleCursor[series.length];
+        var valid   = new boolean[series.length];
+        for (int i = 0; i < series.length; i++) {
+            cursors[i] = series[i].newestFirst(from, to);
+            valid[i]   = cursors[i].next();
+        }
+
+        while (result.size() < limit) {
+            // Newest timestamp among the series heads
+            var newest = Long.MIN_VALUE;
+            var any    = false;
+            for (int i = 0; i < cursors.length; i++) {
+                if (valid[i] && (!any || cursors[i].timestamp() > newest)) {
+                    newest = cursors[i].timestamp();
+                    any    = true;
+                }
+            }
+            if (!any) {
+                break;
+            }
+
+            // Every series with a sample at that timestamp contributes to the row
+            var row = newRow(newest);
+            for (int i = 0; i < cursors.length; i++) {
+                if (valid[i] && cursors[i].timestamp() == newest) {
+                    SERIES[i].write(row, cursors[i].value());
+                    valid[i] = cursors[i].next();
+                }
+            }
+            result.add(row);
+        }
+
+        return result;
+    }
+
+    private Metric newRow(long timestamp) {
+        var row = new Metric();
+        row.setId(String.valueOf(timestamp));
+        row.setServiceId(serviceId);
+        row.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+        return row;
+    }
+
+    /// @return the epoch millis of a timestamp in the system time zone, as used for row ids
+    public static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
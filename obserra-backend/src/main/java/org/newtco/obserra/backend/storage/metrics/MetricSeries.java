@@ -0,0 +1,48 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+
+import org.newtco.obserra.backend.model.Metric;
+
+/// The individual series a [Metric] row is split into for storage. Each series maps one nullable [Metric] field to and
+/// from a `double`, and defines how the samples of a time bucket are combined into a single value: gauges are
+/// averaged, counts are summed.
+public enum MetricSeries {
+    MEMORY_USED("memory.used", false, Metric::getMemoryUsed, (m, v) -> m.setMemoryUsed((float) v)),
+    MEMORY_MAX("memory.max", false, Metric::getMemoryMax, (m, v) -> m.setMemoryMax((float) v)),
+    CPU_USAGE("cpu.usage", false, Metric::getCpuUsage, (m, v) -> m.setCpuUsage((float) v)),
+    ERRORS("errors", true, Metric::getErrorCount, (m, v) -> m.setErrorCount((int) v));
+
+    private final String                    key;
+    private final boolean                   summed;
+    private final Function<Metric, Number>  getter;
+    private final ObjDoubleConsumer<Metric> setter;
+
+    MetricSeries(String key, boolean summed, Function<Metric, Number> getter, ObjDoubleConsumer<Metric> setter) {
+        this.key    = key;
+        this.summed = summed;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /// @return the series name
+    public String key() {
+        return key;
+    }
+
+    /// @return the value of this series in the row, or null if the row doesn't have one
+    Number read(Metric metric) {
+        return getter.apply(metric);
+    }
+
+    /// @return the value representing a bucket of samples with the given sum and count
+    double aggregate(double sum, long count) {
+        return summed ? sum : sum / count;
+    }
+
+    /// Sets the value of this series in the row
+    void write(Metric metric, double value) {
+        setter.accept(metric, value);
+    }
+}
@@ -0,0 +1,156 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.Arrays;
+
+/// Fixed-resolution rollup of a series: a ring of buckets, each holding the min, max, sum, count and last value of the
+/// samples that fell into it.
+///
+/// Samples are folded in as they are appended, so the newest bucket is always up to date and no background pass is
+/// needed. Buckets are stored column-wise in primitive arrays that grow on demand up to the retention, after which the
+/// oldest bucket is overwritten. Samples older than the newest bucket are ignored.
+///
+/// Not thread-safe, callers synchronize.
+final class RollupSeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long resolution;
+    private final int  capacity;
+
+    private long[]   starts = new long[0];
+    private double[] min    = new double[0];
+    private double[] max    = new double[0];
+    private double[] sum    = new double[0];
+    private double[] last   = new double[0];
+    private long[]   count  = new long[0];
+    private int      head   = -1; // index of the newest bucket
+    private int      size;
+
+    /// @param resolution bucket width in millis
+    /// @param capacity   maximum number of buckets retained
+    RollupSeries(long resolution, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, was " + capacity);
+        }
+        this.resolution = resolution;
+        this.capacity   = capacity;
+    }
+
+    /// Folds a sample into its bucket.
+    ///
+    /// @param timestamp epoch millis of the sample
+    /// @param value     sample value
+    void add(long timestamp, double value) {
+        var start = Math.floorDiv(timestamp, resolution) * resolution;
+        if (size > 0 && start < starts[head]) {
+            return;
+        }
+
+        if (size == 0 || start > starts[head]) {
+            advance(start);
+            min[head]   = value;
+            max[head]   = value;
+            sum[head]   = value;
+            count[head] = 1;
+        } else {
+            min[head]    = Math.min(min[head], value);
+            max[head]    = Math.max(max[head], value);
+            sum[head]   += value;
+            count[head] += 1;
+        }
+        last[head] = value;
+    }
+
+    /// @return the start of the oldest retained bucket, or [Long#MAX_VALUE] if there is none
+    long oldestStart() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        var oldest = head - size + 1;
+        return starts[oldest < 0 ? oldest + starts.length : oldest];
+    }
+
+    /// @return a cursor over the buckets starting in `[from, to]`, newest first
+    BucketCursor newestFirst(long from, long to) {
+        return new NewestFirstCursor(from, to);
+    }
+
+    private void advance(long start) {
+        if (size < capacity) {
+            if (size == starts.length) {
+                grow();
+            }
+            size++;
+        }
+        head         = (head + 1) % starts.length;
+        starts[head] = start;
+    }
+
+    private void grow() {
+        // The ring only wraps once it is at capacity, so until then the buckets are in order from index 0
+        var length = Math.min(capacity, Math.max(INITIAL_CAPACITY, starts.length * 2));
+        starts = Arrays.copyOf(starts, length);
+        min    = Arrays.copyOf(min, length);
+        max    = Arrays.copyOf(max, length);
+        sum    = Arrays.copyOf(sum, length);
+        last   = Arrays.copyOf(last, length);
+        count  = Arrays.copyOf(count, length);
+    }
+
+    private final class NewestFirstCursor implements BucketCursor {
+        private final long from;
+        private final long to;
+        private       int  age = -1;
+        private       int  index;
+
+        NewestFirstCursor(long from, long to) {
+            this.from = from;
+            this.to   = to;
+        }
+
+        @Override
+        public boolean next() {
+            while (++age < size) {
+                var i = head - age;
+                index = i < 0 ? i + starts.length : i;
+                if (starts[index] < from) {
+                    return false;
+                }
+                if (starts[index] <= to) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long start() {
+            return starts[index];
+        }
+
+        @Override
+        public double min() {
+            return min[index];
+        }
+
+        @Override
+        public double max() {
+            return max[index];
+        }
+
+        @Override
+        public double sum() {
+            return sum[index];
+        }
+
+        @Override
+        public long count() {
+            return count[index];
+        }
+
+        @Override
+        public double last() {
+            return last[index];
+        }
+    }
+}
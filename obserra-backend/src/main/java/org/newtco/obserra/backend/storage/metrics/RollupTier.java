@@ -0,0 +1,25 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.time.Duration;
+
+/// Resolutions at which metric series are rolled up, finest first.
+public enum RollupTier {
+    ONE_MINUTE(Duration.ofMinutes(1)),
+    FIVE_MINUTES(Duration.ofMinutes(5)),
+    ONE_HOUR(Duration.ofHours(1));
+
+    private final Duration resolution;
+
+    RollupTier(Duration resolution) {
+        this.resolution = resolution;
+    }
+
+    /// @return the width of a bucket in this tier
+    public Duration resolution() {
+        return resolution;
+    }
+
+    long resolutionMillis() {
+        return resolution.toMillis();
+    }
+}
@@ -0,0 +1,16 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+/// Forward-only cursor over the samples of a series.
+interface SampleCursor {
+
+    /// Advances to the next sample.
+    ///
+    /// @return false if there are no more samples
+    boolean next();
+
+    /// @return the timestamp of the current sample, in epoch millis
+    long timestamp();
+
+    /// @return the value of the current sample
+    double value();
+}
@@ -0,0 +1,28 @@
+package org.newtco.obserra.backend.storage.segment;
+
+import org.newtco.obserra.backend.storage.metrics.GorillaChunk;
+
+/// Location of a chunk record in a [SegmentFile], together with the chunk metadata needed to plan reads and
+/// retention without touching the file.
+///
+/// @param segment      the segment holding the record
+/// @param offset       offset of the record in the segment
+/// @param length       length of the record in bytes
+/// @param count        number of samples in the chunk
+/// @param minTimestamp timestamp of the oldest sample
+/// @param maxTimestamp timestamp of the newest sample
+/// @param wordCount    number of encoded words
+record ChunkRef(
+    SegmentFile segment,
+    long offset,
+    int length,
+    int count,
+    long minTimestamp,
+    long maxTimestamp,
+    int wordCount
+) {
+    /// @return the chunk, as a view of the segment mapping
+    GorillaChunk load() {
+        return segment.read(this);
+    }
+}
@@ -0,0 +1,153 @@
+package org.newtco.obserra.backend.storage.segment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import org.newtco.obserra.backend.storage.metrics.ChunkStore;
+import org.newtco.obserra.backend.storage.metrics.GorillaChunk;
+import org.newtco.obserra.backend.storage.metrics.MetricSeries;
+
+/// [ChunkStore] of a single service and series, whose chunks live in the segments of a [SegmentStore].
+///
+/// The store only holds [ChunkRef]s, in time order. The list is copied on every change, so iteration works on a
+/// snapshot and never blocks appends or the background maintenance of the segment store.
+final class SegmentChunkStore implements ChunkStore {
+
+    private final SegmentStore segments;
+    private final String       serviceId;
+    private final MetricSeries series;
+
+    private volatile List<ChunkRef> refs = List.of();
+
+    SegmentChunkStore(SegmentStore segments, String serviceId, MetricSeries series) {
+        this.segments  = segments;
+        this.serviceId = serviceId;
+        this.series    = series;
+    }
+
+    @Override
+    public void append(GorillaChunk chunk) {
+        add(segments.write(serviceId, series, chunk));
+    }
+
+    @Override
+    public Iterator<GorillaChunk> newestFirst() {
+        var snapshot = refs;
+        return new Iterator<>() {
+            private int index = snapshot.size();
+
+            @Override
+            public boolean hasNext() {
+                return index > 0;
+            }
+
+            @Override
+            public GorillaChunk next() {
+                if (index == 0) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot.get(--index).load();
+            }
+        };
+    }
+
+    @Override
+    public long oldestTimestamp() {
+        var snapshot = refs;
+        return snapshot.isEmpty() ? Long.MAX_VALUE : snapshot.getFirst().minTimestamp();
+    }
+
+    @Override
+    public int sampleCount() {
+        int count = 0;
+        for (var ref : refs) {
+            count += ref.count();
+        }
+        return count;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (var ref : refs) {
+            bytes += ref.length();
+        }
+        return bytes;
+    }
+
+    /// Adds a chunk found while loading the segments. Chunks may be found out of time order, since compaction moves
+    /// older chunks into newer segments. If a crash kept the source segment of a compaction, a chunk is found twice,
+    /// and the copy found later, in the newer segment, replaces the earlier one.
+    ///
+    /// @return the chunk replaced by the given one, or null
+    synchronized ChunkRef load(ChunkRef ref) {
+        var updated = new ArrayList<>(refs);
+        var index   = updated.size();
+        while (index > 0 && updated.get(index - 1).minTimestamp() > ref.minTimestamp()) {
+            index--;
+        }
+
+        ChunkRef replaced = null;
+        if (index > 0 && isCopy(updated.get(index - 1), ref)) {
+            replaced = updated.set(index - 1, ref);
+        } else {
+            updated.add(index, ref);
+        }
+        refs = List.copyOf(updated);
+        return replaced;
+    }
+
+    private static boolean isCopy(ChunkRef a, ChunkRef b) {
+        return a.minTimestamp() == b.minTimestamp() && a.maxTimestamp() == b.maxTimestamp() && a.count() == b.count();
+    }
+
+    private synchronized void add(ChunkRef ref) {
+        var updated = new ArrayList<>(refs);
+        updated.add(ref);
+        refs = List.copyOf(updated);
+    }
+
+    /// Drops the chunks matching the predicate.
+    ///
+    /// @param expired tested with each chunk
+    ///
+    /// @return the dropped chunks
+    synchronized List<ChunkRef> removeIf(Predicate<ChunkRef> expired) {
+        var kept    = new ArrayList<ChunkRef>(refs.size());
+        var dropped = new ArrayList<ChunkRef>();
+        for (var ref : refs) {
+            (expired.test(ref) ? dropped : kept).add(ref);
+        }
+        if (!dropped.isEmpty()) {
+            refs = List.copyOf(kept);
+        }
+        return dropped;
+    }
+
+    /// Drops all chunks.
+    ///
+    /// @return the dropped chunks
+    synchronized List<ChunkRef> clear() {
+        var dropped = refs;
+        refs = List.of();
+        return dropped;
+    }
+
+    /// Replaces chunks that were moved to another segment.
+    synchronized void relocate(Map<ChunkRef, ChunkRef> moved) {
+        var updated = new ArrayList<ChunkRef>(refs.size());
+        for (var ref : refs) {
+            updated.add(moved.getOrDefault(ref, ref));
+        }
+        refs = List.copyOf(updated);
+    }
+
+    /// @return the current chunks, oldest first
+    List<ChunkRef> refs() {
+        return refs;
+    }
+}
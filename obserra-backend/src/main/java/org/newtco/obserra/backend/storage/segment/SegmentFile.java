@@ -0,0 +1,359 @@
+package org.newtco.obserra.backend.storage.segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import org.newtco.obserra.backend.storage.metrics.GorillaChunk;
+import org.newtco.obserra.backend.storage.metrics.MetricSeries;
+
+/// Append-only file of compressed metric chunks, mapped into memory with the FFM API.
+///
+/// A segment starts with a 16 byte header (magic, version, sequence number) followed by chunk records:
+///
+/// | offset | size  | field                                 |
+/// |--------|-------|---------------------------------------|
+/// | 0      | 4     | record magic, written last            |
+/// | 4      | 4     | record length, padded to 8 bytes      |
+/// | 8      | 8     | min timestamp                         |
+/// | 16     | 8     | max timestamp                         |
+/// | 24     | 4     | sample count                          |
+/// | 28     | 4     | word count                            |
+/// | 32     | 2     | [MetricSeries] ordinal, or -1         |
+/// | 34     | 2     | service id length                     |
+/// | 36     | 4     | CRC32C of the rest of the record      |
+/// | 40     | n     | service id, UTF-8, padded to 8 bytes  |
+/// | 40 + n | 8 * w | chunk words, big-endian               |
+///
+/// The record magic is written after the rest of the record, and the checksum covers every other field and the chunk
+/// words. The kernel may flush the pages of a mapping in any order, so a record torn by a crash can have its magic on
+/// disk but not all of its data; its checksum then fails and ends the scan on reopen, instead of the record being read
+/// back. The file is preallocated to its full size and left sparse, and a zero magic marks the
+/// end of the records.
+///
+/// A [Tombstone] record, with a series ordinal of -1, marks a service as dropped. It has no chunk words, and its
+/// timestamp fields hold the position (segment sequence and offset) before which the chunks of the service are
+/// dropped, so a tombstone copied into a newer segment keeps its meaning.
+///
+/// Chunks read from a segment are views of the mapping and stay valid until the segment is [closed][#close].
+final class SegmentFile {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int HEADER_SIZE   = 16;
+    private static final int FILE_MAGIC    = 0x4F425347; // "OBSG"
+    private static final int   VERSION       = 2;
+    private static final int   RECORD_MAGIC  = 0x43484E4B; // "CHNK"
+    private static final int   RECORD_HEADER = 40;
+    private static final short TOMBSTONE     = -1;
+
+    private static final ValueLayout.OfInt   INT   = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong  LONG  = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final Path          path;
+    private final long          sequence;
+    private final Arena         arena;
+    private final MemorySegment mapping;
+    private final boolean       writable;
+
+    private final List<Tombstone> tombstones = new ArrayList<>();
+
+    private long position;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private long liveBytes;
+
+    private SegmentFile(Path path, long sequence, Arena arena, MemorySegment mapping, boolean writable) {
+        this.path     = path;
+        this.sequence = sequence;
+        this.arena    = arena;
+        this.mapping  = mapping;
+        this.writable = writable;
+        this.position = HEADER_SIZE;
+    }
+
+    /// Creates and maps a new, empty segment.
+    ///
+    /// @param directory directory holding the segments
+    /// @param sequence  sequence number of the segment, used as its file name
+    /// @param size      size of the file in bytes
+    static SegmentFile create(Path directory, long sequence, long size) {
+        var path = directory.resolve(fileName(sequence));
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            // Writing the last byte extends the file without allocating the blocks in between
+            channel.write(ByteBuffer.allocate(1), size - 1);
+
+            var arena   = Arena.ofShared();
+            var mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+            mapping.set(INT, 0, FILE_MAGIC);
+            mapping.set(INT, 4, VERSION);
+            mapping.set(LONG, 8, sequence);
+            return new SegmentFile(path, sequence, arena, mapping, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + path, e);
+        }
+    }
+
+    /// Maps an existing segment read-only and scans its records.
+    ///
+    /// @param path      the segment file
+    /// @param record    called for each complete chunk record, in file order
+    /// @param tombstone called for each tombstone, in file order with the chunk records
+    ///
+    /// @return the segment, or null if the file is not a segment
+    static SegmentFile open(Path path, Consumer<ChunkRecord> record, Consumer<Tombstone> tombstone) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+
+            var arena   = Arena.ofShared();
+            var mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            // Version 1 segments only lack tombstones
+            var version = mapping.get(INT, 4);
+            if (mapping.get(INT, 0) != FILE_MAGIC || version < 1 || version > VERSION) {
+                arena.close();
+                return null;
+            }
+
+            var segment = new SegmentFile(path, mapping.get(LONG, 8), arena, mapping, false);
+            segment.scan(record, tombstone);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segment " + path, e);
+        }
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%016d%s", sequence, SUFFIX);
+    }
+
+    private void scan(Consumer<ChunkRecord> record, Consumer<Tombstone> tombstone) {
+        while (position + RECORD_HEADER <= mapping.byteSize() && mapping.get(INT, position) == RECORD_MAGIC) {
+            var length   = mapping.get(INT, position + 4);
+            var min      = mapping.get(LONG, position + 8);
+            var max      = mapping.get(LONG, position + 16);
+            var count    = mapping.get(INT, position + 24);
+            var words    = mapping.get(INT, position + 28);
+            var series   = mapping.get(SHORT, position + 32);
+            var idLength = mapping.get(SHORT, position + 34);
+            if (length < RECORD_HEADER || position + length > mapping.byteSize()
+                || mapping.get(INT, position + 36) != checksum(position, length)
+                || series != TOMBSTONE && (series < 0 || series >= MetricSeries.values().length)) {
+                break;
+            }
+
+            var id = new String(mapping.asSlice(position + RECORD_HEADER, idLength).toArray(ValueLayout.JAVA_BYTE),
+                                StandardCharsets.UTF_8);
+            if (series == TOMBSTONE) {
+                var dropped = new Tombstone(id, min, max);
+                tombstones.add(dropped);
+                tombstone.accept(dropped);
+                position += length;
+                continue;
+            }
+
+            var ref = new ChunkRef(this, position, length, count, min, max, words);
+            record.accept(new ChunkRecord(id, MetricSeries.values()[series], ref));
+
+            track(min, max);
+            position += length;
+        }
+    }
+
+    /// Appends a chunk.
+    ///
+    /// @return a reference to the stored chunk, or null if the segment has no room left for it
+    ChunkRef append(String serviceId, MetricSeries series, GorillaChunk chunk) {
+        var id         = recordId(serviceId);
+        var wordOffset = RECORD_HEADER + align(id.length);
+        var length     = wordOffset + (long) chunk.wordCount() * Long.BYTES;
+        if (position + length > mapping.byteSize()) {
+            return null;
+        }
+
+        var record = position;
+        writeHeader(record, length, chunk.minTimestamp(), chunk.maxTimestamp(), chunk.count(), chunk.wordCount(),
+                    (short) series.ordinal(), id);
+        chunk.copyWordsTo(mapping.asSlice(record + wordOffset, length - wordOffset).asByteBuffer().asLongBuffer());
+        seal(record, length);
+
+        track(chunk.minTimestamp(), chunk.maxTimestamp());
+        position += length;
+        return new ChunkRef(this, record, (int) length, chunk.count(), chunk.minTimestamp(), chunk.maxTimestamp(),
+                            chunk.wordCount());
+    }
+
+    /// Appends a tombstone.
+    ///
+    /// @return whether the segment had room for it
+    boolean append(Tombstone tombstone) {
+        var id     = recordId(tombstone.serviceId());
+        var length = RECORD_HEADER + align(id.length);
+        if (position + length > mapping.byteSize()) {
+            return false;
+        }
+
+        writeHeader(position, length, tombstone.sequence(), tombstone.offset(), 0, 0, TOMBSTONE, id);
+        seal(position, length);
+
+        tombstones.add(tombstone);
+        position += length;
+        return true;
+    }
+
+    /// @return a tombstone dropping the chunks of a service stored in this segment or before it
+    Tombstone tombstone(String serviceId) {
+        return new Tombstone(serviceId, sequence, position);
+    }
+
+    private byte[] recordId(String serviceId) {
+        if (!writable) {
+            throw new IllegalStateException("Segment " + path + " is read-only");
+        }
+
+        var id = serviceId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Service id is too long: " + serviceId);
+        }
+        return id;
+    }
+
+    private void writeHeader(long record, long length, long min, long max, int count, int words, short series,
+                             byte[] id) {
+        mapping.set(INT, record + 4, (int) length);
+        mapping.set(LONG, record + 8, min);
+        mapping.set(LONG, record + 16, max);
+        mapping.set(INT, record + 24, count);
+        mapping.set(INT, record + 28, words);
+        mapping.set(SHORT, record + 32, series);
+        mapping.set(SHORT, record + 34, (short) id.length);
+        MemorySegment.copy(id, 0, mapping, ValueLayout.JAVA_BYTE, record + RECORD_HEADER, id.length);
+    }
+
+    /// Completes a record by writing its checksum, then its magic.
+    private void seal(long record, long length) {
+        mapping.set(INT, record + 36, checksum(record, length));
+        mapping.set(INT, record, RECORD_MAGIC);
+    }
+
+    /// @return the chunk stored at the given record, as a view of the mapping
+    GorillaChunk read(ChunkRef ref) {
+        var wordOffset = ref.length() - (long) ref.wordCount() * Long.BYTES;
+        var words = mapping.asSlice(ref.offset() + wordOffset, (long) ref.wordCount() * Long.BYTES)
+                           .asByteBuffer()
+                           .asLongBuffer();
+        return GorillaChunk.wrap(words, ref.count(), ref.minTimestamp(), ref.maxTimestamp());
+    }
+
+    /// @return the CRC32C of a record, over everything but its magic and the checksum itself
+    private int checksum(long record, long length) {
+        var crc = new CRC32C();
+        crc.update(mapping.asSlice(record + 4, 32).asByteBuffer());
+        crc.update(mapping.asSlice(record + RECORD_HEADER, length - RECORD_HEADER).asByteBuffer());
+        return (int) crc.getValue();
+    }
+
+    private void track(long min, long max) {
+        minTimestamp = Math.min(minTimestamp, min);
+        maxTimestamp = Math.max(maxTimestamp, max);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /// @return the oldest sample timestamp in the segment, or [Long#MAX_VALUE] if it is empty
+    long minTimestamp() {
+        return minTimestamp;
+    }
+
+    /// @return the newest sample timestamp in the segment, or [Long#MIN_VALUE] if it is empty
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /// @return the number of bytes used by records
+    long usedBytes() {
+        return position - HEADER_SIZE;
+    }
+
+    /// @return the tombstones in the segment, in file order
+    List<Tombstone> tombstones() {
+        return tombstones;
+    }
+
+    /// @return the number of bytes used by records still referenced by a store
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    void addLive(long bytes) {
+        liveBytes += bytes;
+    }
+
+    /// Flushes written records to the file.
+    void force() {
+        if (writable) {
+            mapping.force();
+        }
+    }
+
+    /// Unmaps the segment. Chunks read from it must no longer be used.
+    void close() {
+        force();
+        arena.close();
+    }
+
+    /// Unmaps and deletes the segment.
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete segment " + path, e);
+        }
+    }
+
+    /// A record found while scanning a segment.
+    record ChunkRecord(String serviceId, MetricSeries series, ChunkRef ref) {
+    }
+
+    /// Marks the chunks of a service stored before a position as dropped.
+    ///
+    /// @param serviceId the dropped service
+    /// @param sequence  sequence number of the segment the service was dropped in
+    /// @param offset    offset in that segment at which the service was dropped
+    record Tombstone(String serviceId, long sequence, long offset) {
+
+        /// @return whether the chunk was stored before the service was dropped
+        boolean covers(ChunkRef ref) {
+            var segment = ref.segment().sequence();
+            return segment < sequence || segment == sequence && ref.offset() < offset;
+        }
+    }
+}
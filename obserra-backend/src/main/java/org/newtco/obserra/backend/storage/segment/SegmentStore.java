@@ -0,0 +1,294 @@
+package org.newtco.obserra.backend.storage.segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.newtco.obserra.backend.storage.metrics.ChunkStore;
+import org.newtco.obserra.backend.storage.metrics.GorillaChunk;
+import org.newtco.obserra.backend.storage.metrics.MetricSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/// Directory of memory-mapped [SegmentFile]s holding the sealed metric chunks of all services.
+///
+/// Chunks are appended to a single active segment, and a new one is started when it is full. The chunk data is never
+/// copied onto the heap: the store keeps an index of [ChunkRef]s per service and series, plus the time range of each
+/// segment, and chunks are decoded straight from the mappings. On startup the index is rebuilt by scanning the
+/// existing segments, and a new active segment is started.
+///
+/// Dropping a service appends a tombstone to the active segment, so its chunks stay dropped when the store is
+/// reopened. A tombstone is copied forward when its segment is retired, as long as an older segment that may hold
+/// chunks of the service is still on disk. Since compaction copies chunks before the source segment is deleted, a crash
+/// in between leaves a chunk in two segments; on load the copy in the newer segment wins.
+///
+/// [#maintain] is meant to run periodically in the background:
+///
+/// - chunks whose newest sample is older than the retention are dropped from the index,
+/// - segments without live chunks are deleted,
+/// - segments whose live chunks take less than half of their records are compacted by copying the live chunks into
+///   the active segment.
+///
+/// Readers iterate over snapshots of the index, so a retired segment is only unmapped and deleted on the sweep after
+/// the one that retired it, giving in-flight reads a full maintenance interval to finish.
+///
+/// All methods are thread-safe.
+public final class SegmentStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStore.class);
+
+    private static final double         COMPACTION_THRESHOLD = 0.5;
+    private static final MetricSeries[] SERIES               = MetricSeries.values();
+
+    private final Path     directory;
+    private final long     segmentSize;
+    private final Duration retention;
+
+    private final Map<String, SegmentChunkStore[]> stores  = new ConcurrentHashMap<>();
+    private final List<SegmentFile>                sealed  = new ArrayList<>();
+    private final List<SegmentFile>                retired = new ArrayList<>();
+    private       SegmentFile                      active;
+    private       long                             nextSequence;
+
+    /// Opens the segments in the directory, creating it if needed.
+    ///
+    /// @param directory   directory holding the segment files
+    /// @param segmentSize size of each segment file in bytes
+    /// @param retention   how long chunks are kept, measured from their newest sample
+    public SegmentStore(Path directory, long segmentSize, Duration retention) {
+        this.directory   = directory;
+        this.segmentSize = segmentSize;
+        this.retention   = retention;
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment directory " + directory, e);
+        }
+        load();
+        active = SegmentFile.create(directory, nextSequence++, segmentSize);
+    }
+
+    private void load() {
+        List<Path> files;
+        try (var list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SegmentFile.SUFFIX))
+                        .sorted()
+                        .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list segment directory " + directory, e);
+        }
+
+        long chunks = 0;
+        for (var file : files) {
+            var segment = SegmentFile.open(file, record -> {
+                record.ref().segment().addLive(record.ref().length());
+                var replaced = stores(record.serviceId())[record.series().ordinal()].load(record.ref());
+                if (replaced != null) {
+                    release(List.of(replaced));
+                }
+            }, this::apply);
+            if (segment == null) {
+                logger.warn("Skipping {}, it is not a metrics segment", file);
+                continue;
+            }
+
+            nextSequence = Math.max(nextSequence, segment.sequence() + 1);
+            if (segment.usedBytes() == 0) {
+                segment.delete();
+            } else {
+                sealed.add(segment);
+                chunks += segment.usedBytes();
+            }
+        }
+
+        if (!sealed.isEmpty()) {
+            logger.info("Loaded {} metrics segments ({} bytes of chunks) for {} services from {}",
+                        sealed.size(), chunks, stores.size(), directory);
+        }
+    }
+
+    /// Drops the chunks of a service loaded before a tombstone, and the service itself once it has none left.
+    private void apply(SegmentFile.Tombstone tombstone) {
+        var seriesStores = stores.get(tombstone.serviceId());
+        if (seriesStores == null) {
+            return;
+        }
+
+        var empty = true;
+        for (var store : seriesStores) {
+            release(store.removeIf(tombstone::covers));
+            empty &= store.refs().isEmpty();
+        }
+        if (empty) {
+            stores.remove(tombstone.serviceId());
+        }
+    }
+
+    /// @return the chunk store of a service and series
+    public ChunkStore store(String serviceId, MetricSeries series) {
+        return stores(serviceId)[series.ordinal()];
+    }
+
+    /// @return the ids of the services with stored chunks
+    public Set<String> serviceIds() {
+        return Set.copyOf(stores.keySet());
+    }
+
+    private SegmentChunkStore[] stores(String serviceId) {
+        return stores.computeIfAbsent(serviceId, id -> {
+            var seriesStores = new SegmentChunkStore[SERIES.length];
+            for (int i = 0; i < seriesStores.length; i++) {
+                seriesStores[i] = new SegmentChunkStore(this, id, SERIES[i]);
+            }
+            return seriesStores;
+        });
+    }
+
+    /// Writes a chunk to the active segment, starting a new one if it is full.
+    synchronized ChunkRef write(String serviceId, MetricSeries series, GorillaChunk chunk) {
+        var ref = active.append(serviceId, series, chunk);
+        if (ref == null) {
+            roll();
+            ref = active.append(serviceId, series, chunk);
+            if (ref == null) {
+                throw new IllegalStateException(
+                    "Chunk of " + chunk.sizeInBytes() + " bytes does not fit into a segment of " + segmentSize + " bytes");
+            }
+        }
+        ref.segment().addLive(ref.length());
+        return ref;
+    }
+
+    private void write(SegmentFile.Tombstone tombstone) {
+        if (!active.append(tombstone)) {
+            roll();
+            if (!active.append(tombstone)) {
+                throw new IllegalStateException("Tombstone of " + tombstone.serviceId() + " does not fit into a segment of "
+                                                + segmentSize + " bytes");
+            }
+        }
+    }
+
+    private void roll() {
+        active.force();
+        sealed.add(active);
+        active = SegmentFile.create(directory, nextSequence++, segmentSize);
+    }
+
+    /// Drops all chunks of a service, and records a tombstone so they stay dropped when the store is reopened. The
+    /// space is reclaimed once their segments are compacted or expire.
+    public synchronized void drop(String serviceId) {
+        var seriesStores = stores.remove(serviceId);
+        if (seriesStores != null) {
+            for (var store : seriesStores) {
+                release(store.clear());
+            }
+            write(active.tombstone(serviceId));
+        }
+    }
+
+    /// Applies the retention, compacts sparse segments and deletes the segments retired by the previous run.
+    ///
+    /// @param now current time in epoch millis
+    ///
+    /// @return the ids of the services that lost chunks to the retention
+    public synchronized Set<String> maintain(long now) {
+        for (var segment : retired) {
+            segment.delete();
+        }
+        retired.clear();
+
+        var cutoff  = now - retention.toMillis();
+        var expired = new HashSet<String>();
+        for (var entry : stores.entrySet()) {
+            for (var store : entry.getValue()) {
+                var dropped = store.removeIf(ref -> ref.maxTimestamp() < cutoff);
+                if (!dropped.isEmpty()) {
+                    release(dropped);
+                    expired.add(entry.getKey());
+                }
+            }
+        }
+
+        var compact = new HashSet<SegmentFile>();
+        for (var segment : sealed) {
+            if (segment.maxTimestamp() < cutoff || segment.liveBytes() == 0) {
+                retired.add(segment);
+            } else if (segment.liveBytes() < segment.usedBytes() * COMPACTION_THRESHOLD) {
+                compact.add(segment);
+            }
+        }
+        if (!compact.isEmpty()) {
+            compact(compact);
+            retired.addAll(compact);
+        }
+        carryTombstones();
+        sealed.removeAll(retired);
+
+        if (!retired.isEmpty()) {
+            logger.debug("Retired {} metrics segments, {} compacted", retired.size(), compact.size());
+        }
+        active.force();
+        return expired;
+    }
+
+    private void compact(Set<SegmentFile> segments) {
+        for (var entry : stores.entrySet()) {
+            var seriesStores = entry.getValue();
+            for (int i = 0; i < seriesStores.length; i++) {
+                var moved = new HashMap<ChunkRef, ChunkRef>();
+                for (var ref : seriesStores[i].refs()) {
+                    if (segments.contains(ref.segment())) {
+                        moved.put(ref, write(entry.getKey(), SERIES[i], ref.load()));
+                    }
+                }
+                if (!moved.isEmpty()) {
+                    seriesStores[i].relocate(moved);
+                }
+            }
+        }
+    }
+
+    /// Copies the tombstones of the retired segments into the active segment while an older segment, that may hold
+    /// chunks of their service, is still on disk. Retired segments stay on disk until the next sweep.
+    private void carryTombstones() {
+        for (var segment : retired) {
+            for (var tombstone : segment.tombstones()) {
+                var needed = sealed.stream()
+                                   .anyMatch(other -> other != segment && other.sequence() <= tombstone.sequence());
+                if (needed) {
+                    write(tombstone);
+                }
+            }
+        }
+    }
+
+    private static void release(List<ChunkRef> refs) {
+        for (var ref : refs) {
+            ref.segment().addLive(-ref.length());
+        }
+    }
+
+    /// Flushes and unmaps all segments.
+    @Override
+    public synchronized void close() {
+        for (var segment : retired) {
+            segment.delete();
+        }
+        retired.clear();
+        for (var segment : sealed) {
+            segment.close();
+        }
+        sealed.clear();
+        active.close();
+    }
+}
@@ -0,0 +1,45 @@
+package org.newtco.obserra.backend.util;
+
+/**
+ * Builds strong entity tags from data versions.
+ * <p>
+ * Data versions are only unique within one run of the backend, so every tag also carries the start time of this
+ * instance. A client holding a tag from before a restart never matches a tag issued after it.
+ */
+public final class ETags {
+
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), 36);
+
+    private ETags() {
+    }
+
+    /**
+     * @param versions the versions of the data the response is built from
+     * @return the quoted entity tag
+     */
+    public static String of(long... versions) {
+        var tag = new StringBuilder(32).append('"').append(INSTANCE);
+        for (long version : versions) {
+            tag.append('-').append(Long.toString(version, 36));
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Fold the version of one more item into a combined version, for responses built from many items. The result
+     * depends on the order of the items.
+     *
+     * @param combined the combined version of the items before, 0 for the first
+     * @param version  the version of the item
+     * @return the combined version including the item
+     */
+    public static long combine(long combined, long version) {
+        // Mix the version, so the sequential versions of neighbouring items do not cancel out
+        version ^= version >>> 33;
+        version *= 0xff51afd7ed558ccdL;
+        version ^= version >>> 33;
+        version *= 0xc4ceb9fe1a85ec53L;
+        version ^= version >>> 33;
+        return 31 * combined + version;
+    }
+}
@@ -0,0 +1,100 @@
+package org.newtco.obserra.backend.collector;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.model.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for CollectionSchedule. Each test includes a rationale for why that behavior should be verified.
+ */
+class CollectionScheduleTest {
+
+    private final Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void testPollDue_returnsOnlyDueServicesInDueOrder() {
+        // Rationale: a tick must only touch services that are due, earliest first.
+        var schedule = new CollectionSchedule();
+        var a        = service("a");
+        var b        = service("b");
+        var c        = service("c");
+        schedule.track(c, now.plusSeconds(10));
+        schedule.track(b, now.minusSeconds(1));
+        schedule.track(a, now.minusSeconds(5));
+
+        assertEquals(List.of(a, b), schedule.pollDue(now));
+        assertEquals(now.plusSeconds(10), schedule.nextDue());
+    }
+
+    @Test
+    void testPollDue_doesNotRedispatchInFlightServices() {
+        // Rationale: reconciliation runs while collections are in flight and must not cause a second dispatch.
+        var schedule = new CollectionSchedule();
+        var a        = service("a");
+        schedule.track(a, now);
+
+        assertEquals(List.of(a), schedule.pollDue(now));
+        assertFalse(schedule.track(a, now));
+        assertTrue(schedule.pollDue(now.plusSeconds(60)).isEmpty());
+
+        schedule.schedule(a, now.plusSeconds(5));
+        assertTrue(schedule.pollDue(now).isEmpty());
+        assertEquals(List.of(a), schedule.pollDue(now.plusSeconds(5)));
+    }
+
+    @Test
+    void testSchedule_replacesPendingEntry() {
+        // Rationale: rescheduling must supersede the old due time rather than add a second entry.
+        var schedule = new CollectionSchedule();
+        var a        = service("a");
+        schedule.track(a, now);
+        schedule.schedule(a, now.plusSeconds(30));
+
+        assertTrue(schedule.pollDue(now.plusSeconds(1)).isEmpty());
+        assertEquals(1, schedule.size());
+        assertEquals(List.of(a), schedule.pollDue(now.plusSeconds(30)));
+    }
+
+    @Test
+    void testRetainAll_dropsRemovedServices() {
+        // Rationale: deregistered services must stop being collected.
+        var schedule = new CollectionSchedule();
+        schedule.track(service("a"), now);
+        schedule.track(service("b"), now);
+
+        schedule.retainAll(Set.of("b"));
+
+        assertEquals(1, schedule.size());
+        assertEquals("b", schedule.pollDue(now).getFirst().getId());
+    }
+
+    @Test
+    void testSchedule_doesNotRestoreServiceRemovedInFlight() {
+        // Rationale: a service deregistered while its collection runs must not be put back on the schedule by the
+        // reschedule at the end of that collection.
+        var schedule = new CollectionSchedule();
+        var a        = service("a");
+        var b        = service("b");
+        schedule.track(a, now);
+        schedule.track(b, now);
+        assertEquals(List.of(a, b), schedule.pollDue(now));
+
+        schedule.remove("a");
+        schedule.retainAll(Set.of("a"));
+
+        assertFalse(schedule.schedule(a, now.plusSeconds(5)));
+        assertFalse(schedule.schedule(b, now.plusSeconds(5)));
+        assertEquals(0, schedule.size());
+        assertTrue(schedule.pollDue(now.plusSeconds(5)).isEmpty());
+        assertNull(schedule.nextDue());
+    }
+
+    private static Service service(String id) {
+        return new Service().setId(id).setName(id);
+    }
+}
@@ -5,11 +5,12 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -18,9 +19,11 @@ import org.newtco.obserra.backend.collector.config.properties.KubernetesProperti
 import org.newtco.obserra.backend.collector.config.properties.SpringBootProperties;
 import org.newtco.obserra.backend.collector.config.properties.SpringBootProperties.HealthProperties.MetricsProperties;
 import org.newtco.obserra.backend.config.properties.CircuitBreakerProperties;
+import org.newtco.obserra.backend.core.concurrent.AdaptiveConcurrencyLimiter;
 import org.newtco.obserra.backend.core.concurrent.RunnableTaskScope;
 import org.newtco.obserra.backend.core.concurrent.TaskScopeFactory;
 import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.storage.ServiceListener;
 import org.newtco.obserra.backend.storage.Storage;
 
 import static org.mockito.Mockito.*;
@@ -45,7 +48,7 @@ class CollectorServiceTest {
     @Mock
     private TaskScopeFactory<RunnableTaskScope> taskScopeFactory;
     private Clock                               fixedClock;
-    private Semaphore                           throttle;
+    private AdaptiveConcurrencyLimiter          limiter;
     private RunnableTaskScope                   mockScope;
 
     @BeforeEach
@@ -108,8 +111,9 @@ class CollectorServiceTest {
         // Create StateManager with the real CircuitBreakerProperties
         stateManager = spy(new CollectorServiceImpl.StateManager(fixedClock, collectionProperties.springBoot().circuitBreaker()));
 
-        // Create throttle with the configured max concurrent requests
-        throttle = spy(new Semaphore(collectionProperties.maxConcurrentRequests()));
+        // Create limiter bounded by the configured max concurrent requests
+        limiter = spy(new AdaptiveConcurrencyLimiter(20, 1, collectionProperties.maxConcurrentRequests(), 0.9,
+                                                     Duration.ofSeconds(2)));
 
         // Mock task scope factory and scope
         mockScope = mock(RunnableTaskScope.class);
@@ -122,9 +126,12 @@ class CollectorServiceTest {
             List.of(collector1, collector2),
             collectionProperties,
             stateManager,
-            throttle,
+            limiter,
             taskScopeFactory,
-            fixedClock
+            fixedClock,
+            Runnable::run,
+            event -> {
+            }
         ));
     }
 
@@ -132,7 +139,7 @@ class CollectorServiceTest {
     void testCollectAllDataPeriodicallyInBackground_schedulesAndInvokesRunServices() {
         // Rationale: ensure scheduled method actually calls runServices with the latest service list.
         // 1. Mock storage.getAllServices() to return service1 and service2
-        // 2. Call collectAllDataPeriodicallyInBackground()
+        // 2. Reconcile, then call collectAllDataPeriodicallyInBackground()
         // 3. Verify runServices() was called with the list of services
         // 4. Verify stateManager.pruneInactiveServices() was called with the list of services
 
@@ -141,6 +148,7 @@ class CollectorServiceTest {
         List<Service> services = List.of(service1, service2);
         when(storage.getAllServices()).thenReturn(services);
 
+        collectorService.reconcileInBackground();
         collectorService.collectAllDataPeriodicallyInBackground();
 
         // Verify that both required methods are called with the correct services list
@@ -148,6 +156,39 @@ class CollectorServiceTest {
         verify(stateManager).pruneInactiveServices(services);
     }
 
+    @Test
+    void testCollectAllDataPeriodicallyInBackground_letsCollectorsDropRemovedServices() {
+        // Rationale: collectors keep state per service, e.g. the metrics a service doesn't provide; with per-pod
+        // targets churning, that state must be dropped when the service is removed, not kept forever.
+        when(storage.getAllServices()).thenReturn(List.of(service1));
+
+        collectorService.reconcileInBackground();
+
+        verify(collector1).retainServices(Set.of("service1-id"));
+        verify(collector2).retainServices(Set.of("service1-id"));
+    }
+
+    @Test
+    void testCollectAllDataPeriodicallyInBackground_followsRegistryChangesWithoutScanningIt() {
+        // Rationale: the tick runs every few hundred milliseconds; walking the whole registry on each tick costs
+        // O(fleet), so registrations and deletions must reach the schedule through the storage listener instead.
+        var captor = ArgumentCaptor.forClass(ServiceListener.class);
+        verify(storage).addServiceListener(captor.capture());
+        var listener = captor.getValue();
+
+        listener.onServiceChanged(service1);
+        listener.onServiceChanged(service2);
+        collectorService.collectAllDataPeriodicallyInBackground();
+        verify(collectorService).runServices(List.of(service1, service2));
+
+        listener.onServiceDeleted("service1-id");
+        verify(collector1).removeService("service1-id");
+        verify(collector2).removeService("service1-id");
+        verify(stateManager).remove("service1-id");
+
+        verify(storage, never()).getAllServices();
+    }
+
     @Test
     void testCollectServiceDataNow_triggersImmediateCollectionForOneService() throws InterruptedException {
         // Rationale: UI-triggered immediate collect should delegate to runService with correct timeout.
@@ -216,11 +257,11 @@ class CollectorServiceTest {
     void testRunCollector_appliesThrottlingAcrossCollectors() throws InterruptedException {
         // Rationale: global maxConcurrentRequests must be enforced to protect target systems.
         // TODO:
-        // 1. Set up a new Semaphore with 1 permit
-        // 2. Spy on the semaphore's tryAcquire() method
-        // 3. Create a new CollectorServiceImpl with this semaphore
+        // 1. Set up a new AdaptiveConcurrencyLimiter with a max limit of 1
+        // 2. Spy on the limiter's tryAcquire() method
+        // 3. Create a new CollectorServiceImpl with this limiter
         // 4. Call runCollector() twice in sequence
-        // 5. Verify tryAcquire() was called twice and release() was called twice
+        // 5. Verify tryAcquire() was called twice and limiter.inFlight() is 0 afterwards
     }
 
     @Test
@@ -230,7 +271,7 @@ class CollectorServiceTest {
         // 1. Configure mockScope.joinUntil() to throw TimeoutException
         // 2. Call runCollector(service1, collector1)
         // 3. Verify stateManager.onTimeout(service1, collector1) was called
-        // 4. Verify throttle was released
+        // 4. Verify the limiter permit was returned and the limit decreased
     }
 
     @Test
@@ -0,0 +1,110 @@
+package org.newtco.obserra.backend.collector.actuator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.collector.CollectionException;
+import org.newtco.obserra.backend.collector.config.CollectorConfig;
+import org.newtco.obserra.backend.collector.config.properties.SpringBootProperties.HealthProperties.MetricsProperties;
+import org.newtco.obserra.backend.config.properties.CircuitBreakerProperties;
+import org.newtco.obserra.backend.model.ActuatorEndpoint;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.shared.model.ServiceMetrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for MetricsCollector. Each test includes a rationale for why that behavior should be verified.
+ */
+@SuppressWarnings("preview")
+class MetricsCollectorTest {
+
+    private final ActuatorEndpoint         endpoint =
+        new ActuatorEndpoint("metrics", "http://orders:8080/actuator/metrics/", true, false, false);
+    private final AtomicReference<Instant> now      = new AtomicReference<>(Instant.parse("2025-01-01T00:00:00Z"));
+
+    private MetricsCollector collector;
+    private Service          service;
+
+    @BeforeEach
+    void setUp() {
+        var config = mock(CollectorConfig.class, RETURNS_DEEP_STUBS);
+        when(config.properties().collectors().springBoot().metrics())
+            .thenReturn(new MetricsProperties(true, Duration.ofMillis(200), Duration.ofMinutes(1),
+                                              new CircuitBreakerProperties()));
+        var clock = mock(Clock.class);
+        when(clock.instant()).thenAnswer(invocation -> now.get());
+
+        collector = spy(new MetricsCollector(config, (name, factory) -> new StructuredTaskScope<>(name, factory), clock));
+        service   = new Service().setId("orders-1").setName("orders");
+    }
+
+    @Test
+    void testCollect_dropsOnlyMetricsThatOutliveTheTimeout() {
+        // Rationale: one slow metric must not fail the whole collection; the metrics that completed in time are kept.
+        doAnswer(invocation -> {
+            if ("jvm.threads.live".equals(invocation.getArgument(2))) {
+                Thread.sleep(30_000);
+            }
+            return 2.0;
+        }).when(collector).queryMetric(any(), any(), anyString());
+
+        var start = System.nanoTime();
+        collector.collect(service, endpoint);
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos(), "the slow metric is abandoned");
+        ServiceMetrics metrics = service.collectorData("metrics");
+        assertNull(metrics.threads().liveThreads());
+        assertEquals(2.0, metrics.threads().peakThreads());
+        assertEquals(2.0, metrics.memory().used());
+    }
+
+    @Test
+    void testCollect_queriesUnavailableMetricsAgainLater() {
+        // Rationale: a 403 may come from a temporary auth misconfiguration; the metric must not be skipped forever.
+        var calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            if ("executor.active".equals(invocation.getArgument(2))) {
+                calls.incrementAndGet();
+                throw new CollectionException("HTTP 403", null, false);
+            }
+            return 1.0;
+        }).when(collector).queryMetric(any(), any(), anyString());
+
+        collector.collect(service, endpoint);
+        collector.collect(service, endpoint);
+        assertEquals(1, calls.get());
+
+        now.set(now.get().plus(Duration.ofMinutes(11)));
+        collector.collect(service, endpoint);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testRemoveService_forgetsUnavailableMetrics() {
+        // Rationale: pod churn registers and removes services constantly; their skip lists must not pile up.
+        doAnswer(invocation -> {
+            throw new CollectionException("HTTP 401", null, false);
+        }).when(collector).queryMetric(any(), any(), anyString());
+        collector.collect(service, endpoint);
+
+        collector.removeService("orders-1");
+
+        var calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            calls.incrementAndGet();
+            return 1.0;
+        }).when(collector).queryMetric(any(), any(), anyString());
+        collector.collect(service, endpoint);
+        assertTrue(calls.get() > 0);
+    }
+}
@@ -0,0 +1,150 @@
+package org.newtco.obserra.backend.collector.config;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for HostConnectionLimiter. Each test includes a rationale for why that behavior should be verified.
+ */
+class HostConnectionLimiterTest {
+
+    private static final ClientHttpRequestExecution OK =
+        (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+
+    @Test
+    void testIntercept_capsConcurrentRequestsPerHost() throws Exception {
+        // Rationale: a metrics fan-out to one service must reuse a bounded set of connections, without holding up
+        // requests to other services.
+        var limiter  = new HostConnectionLimiter(2, Duration.ofSeconds(10));
+        var inFlight = new AtomicInteger();
+        var maxSeen  = new AtomicInteger();
+        var blocked  = new CountDownLatch(1);
+        ClientHttpRequestExecution slow = (request, body) -> {
+            maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new Future<?>[5];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> {
+                    limiter.intercept(get("http://10.0.0.1:8080/actuator/health"), new byte[0], slow).close();
+                    return null;
+                });
+            }
+            awaitStats(limiter, 2, 3);
+
+            limiter.intercept(get("http://10.0.0.2:8080/actuator/health"), new byte[0], OK).close();
+
+            blocked.countDown();
+            for (var future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(2, maxSeen.get());
+        var stats = limiter.stats();
+        assertEquals(6, stats.requests());
+        assertEquals(3, stats.queued());
+        assertEquals(0, stats.rejected());
+    }
+
+    @Test
+    void testIntercept_holdsConnectionUntilResponseClosed() throws IOException {
+        // Rationale: the connection is busy until the body is read, so the permit must outlive the execution.
+        var limiter  = new HostConnectionLimiter(1, Duration.ZERO);
+        var response = limiter.intercept(get("http://orders:8080/actuator/metrics"), new byte[0], OK);
+
+        assertEquals(1, limiter.stats().inFlight());
+        assertThrows(ConnectException.class,
+            () -> limiter.intercept(get("http://orders:8080/actuator/health"), new byte[0], OK));
+
+        response.close();
+        response.close();
+        assertEquals(0, limiter.stats().inFlight());
+        limiter.intercept(get("http://orders:8080/actuator/health"), new byte[0], OK).close();
+    }
+
+    @Test
+    void testIntercept_rejectsAfterAcquireTimeout() throws IOException {
+        // Rationale: a saturated host must fail like a connection timeout, so the circuit breaker and retries treat
+        // it as such, instead of queueing collections without bound.
+        var limiter = new HostConnectionLimiter(1, Duration.ofMillis(50));
+        try (var ignored = limiter.intercept(get("http://orders:8080/a"), new byte[0], OK)) {
+            var e = assertThrows(ConnectException.class,
+                () -> limiter.intercept(get("http://orders:8080/b"), new byte[0], OK));
+            assertTrue(e.getMessage().contains("http://orders:8080"));
+        }
+
+        var stats = limiter.stats();
+        assertEquals(1, stats.queued());
+        assertEquals(1, stats.rejected());
+        assertEquals(0, stats.waiting());
+    }
+
+    @Test
+    void testIntercept_releasesWhenExecutionFails() throws IOException {
+        // Rationale: a failed connection must not leak its permit, or a flapping host would end up unreachable.
+        var limiter = new HostConnectionLimiter(1, Duration.ZERO);
+        ClientHttpRequestExecution failing = (request, body) -> {
+            throw new ConnectException("Connection refused");
+        };
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ConnectException.class,
+                () -> limiter.intercept(get("http://orders:8080/a"), new byte[0], failing));
+        }
+        assertEquals(0, limiter.stats().rejected());
+        limiter.intercept(get("http://orders:8080/a"), new byte[0], OK).close();
+    }
+
+    @Test
+    void testStats_forgetsIdleHosts() throws IOException {
+        // Rationale: pods come and go with new addresses; hosts without requests must not accumulate.
+        var limiter = new HostConnectionLimiter(4, Duration.ZERO);
+        for (int i = 0; i < 1_000; i++) {
+            limiter.intercept(get("http://10.0." + (i / 250) + "." + (i % 250) + ":8080/"), new byte[0], OK).close();
+        }
+
+        assertEquals(0, limiter.stats().hosts());
+        assertEquals(1_000, limiter.stats().requests());
+    }
+
+    private static MockClientHttpRequest get(String uri) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create(uri));
+    }
+
+    private static void awaitStats(HostConnectionLimiter limiter, int inFlight, int waiting)
+        throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (limiter.stats().inFlight() != inFlight || limiter.stats().waiting() != waiting) {
+            if (System.nanoTime() > deadline) {
+                fail("Expected " + inFlight + " in flight and " + waiting + " waiting, was " + limiter.stats());
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.newtco.obserra.backend.core.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for AdaptiveConcurrencyLimiter. Each test includes a rationale for why that behavior should be verified.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void testTryAcquire_rejectsWhenLimitReached() throws InterruptedException {
+        // Rationale: the limit must bound concurrent calls, and rejections must be visible as a metric.
+        var limiter = limiter(2, 1, 10);
+
+        var first  = limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        var second = limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        var third  = limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertTrue(third.isEmpty());
+        assertEquals(1, limiter.rejected());
+
+        first.get().release();
+        assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS).isPresent());
+    }
+
+    @Test
+    void testOnSuccess_growsLimitWhileSaturated() throws InterruptedException {
+        // Rationale: fast successes at a saturated limit mean the downstream can take more.
+        var limiter = limiter(2, 1, 10);
+
+        for (int i = 0; i < 20; i++) {
+            var a = limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow();
+            var b = limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow();
+            a.onSuccess();
+            b.onSuccess();
+        }
+
+        assertTrue(limiter.limit() > 2);
+        assertTrue(limiter.limit() <= 10);
+    }
+
+    @Test
+    void testOnSuccess_doesNotGrowLimitWhenUnderused() throws InterruptedException {
+        // Rationale: an idle limiter must not drift up to the max and lose its protection.
+        var limiter = limiter(8, 1, 10);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow().onSuccess();
+        }
+
+        assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    void testOnDropped_decreasesOncePerWindow() throws InterruptedException {
+        // Rationale: a burst of timeouts from one overloaded window must back off once, not collapse to the minimum.
+        var limiter = limiter(10, 1, 10);
+        var permits = new ArrayList<AdaptiveConcurrencyLimiter.Permit>();
+        for (int i = 0; i < 10; i++) {
+            permits.add(limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow());
+        }
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::onDropped);
+
+        assertEquals(9, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void testOnSuccess_slowCallDecreasesLimit() throws InterruptedException {
+        // Rationale: latency above the threshold is an early overload signal before calls start timing out.
+        var limiter = limiter(10, 1, 10);
+        nanos.addAndGet(1);
+        var permit = limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow();
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        permit.onSuccess();
+
+        assertEquals(9, limiter.limit());
+    }
+
+    @Test
+    void testLimit_neverDropsBelowMinimum() throws InterruptedException {
+        // Rationale: the collector must always be able to make progress.
+        var limiter = limiter(2, 2, 10);
+
+        for (int i = 0; i < 10; i++) {
+            nanos.addAndGet(1);
+            limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow().onDropped();
+        }
+
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    void testPermit_completingTwiceHasNoEffect() throws InterruptedException {
+        // Rationale: callers release in finally after recording an outcome; that must not free a second slot.
+        var limiter = limiter(1, 1, 1);
+        var permit  = limiter.tryAcquire(0, TimeUnit.MILLISECONDS).orElseThrow();
+        var other   = limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+
+        permit.onSuccess();
+        permit.release();
+
+        assertTrue(other.isEmpty());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initial, int min, int max) {
+        return new AdaptiveConcurrencyLimiter(initial, min, max, 0.9, Duration.ofSeconds(2), nanos::get);
+    }
+}
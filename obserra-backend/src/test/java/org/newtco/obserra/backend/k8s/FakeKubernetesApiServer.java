@@ -0,0 +1,181 @@
+package org.newtco.obserra.backend.k8s;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.util.ClientBuilder;
+
+/**
+ * A local stand-in for the Kubernetes API server, serving list and watch requests of cluster-wide resource
+ * collections from objects held in memory.
+ * <p>
+ * Objects are given as JSON with a {@code metadata} object; the server stamps them with a resource version. Changes
+ * are streamed to the watches of their collection open at the time, so tests wait for the watch before changing
+ * objects. Collections that were never written to are served empty.
+ */
+class FakeKubernetesApiServer implements AutoCloseable {
+
+    private static final String END = "";
+
+    private final HttpServer                               server;
+    private final ExecutorService                          executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Map<String, String>>         objects  = new ConcurrentHashMap<>();
+    private final Map<String, List<BlockingQueue<String>>> watches  = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger>               lists    = new ConcurrentHashMap<>();
+    private final AtomicInteger                            versions = new AtomicInteger(1);
+
+    FakeKubernetesApiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return a client of this server
+     */
+    ApiClient client() {
+        return new ClientBuilder()
+            .setBasePath("http://127.0.0.1:" + server.getAddress().getPort())
+            .build();
+    }
+
+    /**
+     * Add or replace an object, notifying the open watches of its collection.
+     *
+     * @param path the path of the collection, e.g. {@code /api/v1/pods}
+     * @param key  the namespace and name of the object
+     * @param json the object
+     */
+    synchronized void put(String path, String key, String json) {
+        var stamped  = stamp(json);
+        var previous = collection(path).put(key, stamped);
+        notifyWatches(path, previous == null ? "ADDED" : "MODIFIED", stamped);
+    }
+
+    /**
+     * Delete an object, notifying the open watches of its collection.
+     *
+     * @param path the path of the collection
+     * @param key  the namespace and name of the object
+     */
+    synchronized void delete(String path, String key) {
+        var removed = collection(path).remove(key);
+        if (removed != null) {
+            notifyWatches(path, "DELETED", stamp(removed.replaceFirst("\"resourceVersion\":\"\\d+\",", "")));
+        }
+    }
+
+    /**
+     * @param path the path of a collection
+     * @return the number of list requests of the collection
+     */
+    int lists(String path) {
+        return lists.computeIfAbsent(path, p -> new AtomicInteger()).get();
+    }
+
+    /**
+     * Wait until the collection is watched.
+     *
+     * @param path the path of the collection
+     */
+    void awaitWatch(String path) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (watchesOf(path).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("No watch of " + path);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (var queues : watches.values()) {
+            for (var queue : queues) {
+                queue.add(END);
+            }
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private Map<String, String> collection(String path) {
+        return objects.computeIfAbsent(path, p -> Collections.synchronizedMap(new LinkedHashMap<>()));
+    }
+
+    private List<BlockingQueue<String>> watchesOf(String path) {
+        return watches.computeIfAbsent(path, p -> new CopyOnWriteArrayList<>());
+    }
+
+    private String stamp(String json) {
+        return json.replaceFirst("\"metadata\":\\{",
+            "\"metadata\":{\"resourceVersion\":\"" + versions.incrementAndGet() + "\",");
+    }
+
+    private void notifyWatches(String path, String type, String json) {
+        for (var queue : watchesOf(path)) {
+            queue.add("{\"type\":\"" + type + "\",\"object\":" + json + "}\n");
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var path  = exchange.getRequestURI().getPath();
+        var query = exchange.getRequestURI().getQuery();
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (query != null && query.contains("watch=true")) {
+            watch(path, exchange);
+        } else {
+            list(path, exchange);
+        }
+    }
+
+    private void list(String path, HttpExchange exchange) throws IOException {
+        lists.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        String body;
+        synchronized (this) {
+            body = "{\"metadata\":{\"resourceVersion\":\"" + versions.get() + "\"},\"items\":["
+                   + String.join(",", collection(path).values()) + "]}";
+        }
+
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void watch(String path, HttpExchange exchange) throws IOException {
+        var queue = new LinkedBlockingQueue<String>();
+        watchesOf(path).add(queue);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.flush();
+            for (var event = queue.take(); !END.equals(event); event = queue.take()) {
+                out.write(event.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watchesOf(path).remove(queue);
+        }
+    }
+}
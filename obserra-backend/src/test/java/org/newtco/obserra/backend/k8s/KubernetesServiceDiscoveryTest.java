@@ -0,0 +1,288 @@
+package org.newtco.obserra.backend.k8s;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import io.kubernetes.client.openapi.ApiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.model.RegistrationSource;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.storage.MemoryStorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for KubernetesServiceDiscovery against a local fake API server. Each test includes a rationale for why that
+ * behavior should be verified.
+ */
+class KubernetesServiceDiscoveryTest {
+
+    private static final String PODS   = "/api/v1/pods";
+    private static final String SLICES = "/apis/discovery.k8s.io/v1/endpointslices";
+
+    private FakeKubernetesApiServer    api;
+    private MemoryStorage              storage;
+    private KubernetesServiceDiscovery discovery;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        api       = new FakeKubernetesApiServer();
+        storage   = new MemoryStorage();
+        discovery = new KubernetesServiceDiscovery(storage, Map.of("east", api::client), 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        discovery.close();
+        api.close();
+    }
+
+    @Test
+    void testDiscoverServices_registersEachReadyEndpoint() throws InterruptedException {
+        // Rationale: every replica must be collected on its own, directly at its pod address, and terminating pods
+        // must not be collected at all.
+        api.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+        api.put(PODS, "prod/orders-2", pod("prod", "orders-2", "orders"));
+        api.put(PODS, "prod/orders-3", pod("prod", "orders-3", "orders"));
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", true),
+            endpoint("10.0.0.2", "orders-2", true),
+            endpoint("10.0.0.3", "orders-3", false)));
+
+        discovery.discoverServices();
+        await(() -> storage.getServicesByNamespace("prod").size() == 2);
+        var registered = storage.getServiceByPodName("orders-1").orElseThrow();
+        assertEquals("orders", registered.getName());
+        assertEquals("http://10.0.0.1:8080", registered.getActuatorUrl());
+        assertEquals(RegistrationSource.KUBERNETES, registered.getRegistrationSource());
+        assertEquals("east", registered.getCluster());
+        assertEquals("http://10.0.0.2:8080", storage.getServiceByPodName("orders-2").orElseThrow().getActuatorUrl());
+        assertTrue(storage.getServiceByPodName("orders-3").isEmpty(), "unready endpoints are not collected");
+
+        assertEquals(1, api.lists(PODS));
+        assertEquals(1, api.lists(SLICES));
+    }
+
+    @Test
+    void testDiscoverServices_deregistersEndpointsThatBecomeUnready() throws InterruptedException {
+        // Rationale: a pod that starts terminating turns unready in its slice; collecting it any longer wastes
+        // collections on an instance about to disappear.
+        api.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+        api.put(PODS, "prod/orders-2", pod("prod", "orders-2", "orders"));
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", true),
+            endpoint("10.0.0.2", "orders-2", true)));
+        discovery.discoverServices();
+        await(() -> storage.getServicesByNamespace("prod").size() == 2);
+
+        api.awaitWatch(SLICES);
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", false),
+            endpoint("10.0.0.2", "orders-2", true)));
+        await(() -> storage.getServiceByPodName("orders-1").isEmpty());
+        assertTrue(storage.getServiceByPodName("orders-2").isPresent());
+
+        api.delete(SLICES, "prod/orders-abc");
+        await(() -> storage.getServiceByPodName("orders-2").isEmpty());
+    }
+
+    @Test
+    void testDiscoverServices_keepsEndpointsListedByAnotherSlice() throws InterruptedException {
+        // Rationale: a pod selected by two services on the same port is one collection target; removing one of the
+        // services must not deregister it while the other still lists it, nor register it twice.
+        api.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+        api.put(PODS, "prod/billing-1", pod("prod", "billing-1", "billing"));
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", true)));
+        api.put(SLICES, "prod/orders-canary-abc", slice("prod", "orders-canary-abc", "orders-canary", 8080,
+            endpoint("10.0.0.1", "orders-1", true)));
+        discovery.discoverServices();
+        await(() -> storage.getServiceByPodName("orders-1").isPresent());
+        var id = storage.getServiceByPodName("orders-1").orElseThrow().getId();
+
+        api.awaitWatch(SLICES);
+        api.delete(SLICES, "prod/orders-canary-abc");
+        // Slice events are handled in order, once the next one is the deletion was too
+        api.put(SLICES, "prod/billing-abc", slice("prod", "billing-abc", "billing", 9090,
+            endpoint("10.0.1.1", "billing-1", true)));
+        await(() -> storage.getServiceByPodName("billing-1").isPresent());
+        assertEquals(id, storage.getServiceByPodName("orders-1").map(Service::getId).orElse(null));
+        assertEquals(2, storage.getServicesByNamespace("prod").size());
+
+        api.delete(SLICES, "prod/orders-abc");
+        await(() -> storage.getServiceByPodName("orders-1").isEmpty());
+    }
+
+    @Test
+    void testDiscoverServices_registersEndpointsWhenTheirPodArrives() throws InterruptedException {
+        // Rationale: slices and pods are watched separately, so an endpoint may be seen before its pod; it must be
+        // registered once the pod is cached, without listing pods again.
+        api.put(SLICES, "prod/billing-abc", slice("prod", "billing-abc", "billing", 9090,
+            endpoint("10.0.1.1", "billing-1", true)));
+
+        discovery.discoverServices();
+        api.awaitWatch(PODS);
+        assertTrue(storage.getServiceByPodName("billing-1").isEmpty());
+
+        api.put(PODS, "prod/billing-1", pod("prod", "billing-1", "billing"));
+        await(() -> storage.getServiceByPodName("billing-1").isPresent());
+        assertEquals("http://10.0.1.1:9090", storage.getServiceByPodName("billing-1").orElseThrow().getActuatorUrl());
+        assertEquals(1, api.lists(PODS));
+    }
+
+    @Test
+    void testDiscoverServices_reregistersEndpointsWhenTheirAppNameChanges() throws InterruptedException {
+        // Rationale: the application name comes from the pod labels, which may be set or changed after the pod is
+        // listed; the endpoint must then be collected, under its current name.
+        api.put(PODS, "prod/billing-1", pod("prod", "billing-1", null));
+        api.put(SLICES, "prod/billing-abc", slice("prod", "billing-abc", "billing", 9090,
+            endpoint("10.0.1.1", "billing-1", true)));
+        discovery.discoverServices();
+        api.awaitWatch(PODS);
+        assertTrue(storage.getServiceByPodName("billing-1").isEmpty());
+
+        api.put(PODS, "prod/billing-1", pod("prod", "billing-1", "billing"));
+        await(() -> storage.getServiceByPodName("billing-1").isPresent());
+
+        api.put(PODS, "prod/billing-1", pod("prod", "billing-1", "invoices"));
+        await(() -> storage.getServiceByPodName("billing-1").map(Service::getName).orElse("").equals("invoices"));
+        assertEquals(1, storage.getServicesByNamespace("prod").size());
+    }
+
+    @Test
+    void testDiscoverServices_deregistersRestoredServicesWithoutEndpoints() throws InterruptedException {
+        // Rationale: with a persistent registry, a pod deleted while the backend was down never turns unready in a
+        // watched slice; its service must still be removed once the cluster is synced, or it is collected forever.
+        var kept = storage.createService(restored("orders-1", "http://10.0.0.1:8080", "east"));
+        var gone = storage.createService(restored("orders-0", "http://10.0.0.9:8080", "east"));
+        var west = storage.createService(restored("orders-0", "http://10.1.0.9:8080", "west"));
+        api.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", true)));
+
+        discovery.discoverServices();
+        await(() -> storage.getService(gone.getId()).isEmpty());
+        assertTrue(storage.getService(kept.getId()).isPresent(), "listed services are adopted");
+        assertTrue(storage.getService(west.getId()).isPresent(), "other clusters are left alone");
+        assertEquals(2, storage.getServicesByNamespace("prod").size());
+    }
+
+    @Test
+    void testDiscoverServices_adoptsServicesRestoredFromBeforeClusters() throws InterruptedException {
+        // Rationale: services journaled before clusters existed are restored in the default cluster, the one
+        // discovered when none is configured; they must be adopted rather than registered a second time.
+        discovery.close();
+        discovery = new KubernetesServiceDiscovery(storage, Map.of("default", api::client), 60_000);
+        var restored = storage.createService(restored("orders-1", "http://10.0.0.1:8080", "default"));
+        api.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+        api.put(PODS, "prod/billing-1", pod("prod", "billing-1", "billing"));
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", true)));
+        discovery.discoverServices();
+
+        // Slice events are handled in order, so once a later slice is handled the first one was too
+        api.awaitWatch(SLICES);
+        api.put(SLICES, "prod/billing-abc", slice("prod", "billing-abc", "billing", 9090,
+            endpoint("10.0.1.1", "billing-1", true)));
+        await(() -> storage.getServiceByPodName("billing-1").isPresent());
+
+        var orders = storage.getServicesByNamespace("prod").stream()
+            .filter(service -> "orders-1".equals(service.getPodName()))
+            .toList();
+        assertEquals(1, orders.size());
+        assertEquals(restored.getId(), orders.getFirst().getId());
+    }
+
+    @Test
+    void testDiscoverServices_discoversEveryClusterDespiteFailingOnes() throws Exception {
+        // Rationale: one backend watches the whole fleet, so same-named pods of different clusters must be told apart,
+        // and a cluster that cannot be connected to must not keep the others from being discovered.
+        discovery.close();
+        try (var west = new FakeKubernetesApiServer()) {
+            var clusters = new LinkedHashMap<String, Callable<ApiClient>>();
+            clusters.put("broken", () -> {
+                throw new IOException("No context broken in kubeconfig");
+            });
+            clusters.put("east", api::client);
+            clusters.put("west", west::client);
+            discovery = new KubernetesServiceDiscovery(storage, clusters, 60_000);
+
+            for (var cluster : List.of(api, west)) {
+                cluster.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+            }
+            api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+                endpoint("10.0.0.1", "orders-1", true)));
+            west.put(SLICES, "prod/orders-xyz", slice("prod", "orders-xyz", "orders", 8080,
+                endpoint("10.1.0.1", "orders-1", true)));
+
+            discovery.discoverServices();
+            await(() -> storage.getServicesByNamespace("prod").size() == 2);
+            var urls = storage.getServicesByNamespace("prod").stream()
+                .collect(Collectors.toMap(Service::getCluster, Service::getActuatorUrl));
+            assertEquals(Map.of("east", "http://10.0.0.1:8080", "west", "http://10.1.0.1:8080"), urls);
+        }
+    }
+
+    @Test
+    void testClose_deregistersNothing() throws InterruptedException {
+        // Rationale: stopping discovery on shutdown must not look like every endpoint becoming unready.
+        api.put(PODS, "prod/orders-1", pod("prod", "orders-1", "orders"));
+        api.put(SLICES, "prod/orders-abc", slice("prod", "orders-abc", "orders", 8080,
+            endpoint("10.0.0.1", "orders-1", true)));
+        discovery.discoverServices();
+        await(() -> storage.getServiceByPodName("orders-1").isPresent());
+
+        discovery.close();
+        assertTrue(storage.getServiceByPodName("orders-1").isPresent());
+    }
+
+    private static String pod(String namespace, String name, String app) {
+        var labels = app != null ? "{\"app\":\"%s\"}".formatted(app) : "{}";
+        return """
+            {"apiVersion":"v1","kind":"Pod","metadata":{"name":"%s","namespace":"%s","labels":%s}}"""
+            .formatted(name, namespace, labels);
+    }
+
+    private static Service restored(String pod, String actuatorUrl, String cluster) {
+        var service = new Service();
+        service.setName("orders");
+        service.setNamespace("prod");
+        service.setCluster(cluster);
+        service.setPodName(pod);
+        service.setActuatorUrl(actuatorUrl);
+        service.setRegistrationSource(RegistrationSource.KUBERNETES);
+        return service;
+    }
+
+    private static String slice(String namespace, String name, String service, int port, String... endpoints) {
+        return """
+            {"apiVersion":"discovery.k8s.io/v1","kind":"EndpointSlice","metadata":{"name":"%s","namespace":"%s",\
+            "labels":{"kubernetes.io/service-name":"%s"}},"addressType":"IPv4","ports":[{"port":%d}],\
+            "endpoints":[%s]}"""
+            .formatted(name, namespace, service, port, String.join(",", endpoints));
+    }
+
+    private static String endpoint(String address, String pod, boolean ready) {
+        return """
+            {"addresses":["%s"],"conditions":{"ready":%b},"targetRef":{"kind":"Pod","name":"%s"}}"""
+            .formatted(address, ready, pod);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 10 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
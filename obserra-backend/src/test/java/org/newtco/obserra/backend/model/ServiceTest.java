@@ -0,0 +1,67 @@
+package org.newtco.obserra.backend.model;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Service collector data. Each test includes a rationale for why that behavior should be verified.
+ */
+class ServiceTest {
+
+    @Test
+    void testCollectorData_publishesNewVersionedSnapshot() {
+        // Rationale: readers hold on to a snapshot while collectors write, so a snapshot must never change, and
+        // caches rely on every write producing a higher version.
+        var service = new Service().setId("svc");
+        var empty   = service.collectorData();
+        assertEquals(0, empty.version());
+
+        service.collectorData("health", "UP");
+        var first = service.collectorData();
+        service.collectorData("metrics", 42);
+        var second = service.collectorData();
+
+        assertTrue(first.version() > empty.version());
+        assertTrue(second.version() > first.version());
+        assertNull(first.get("metrics"));
+        assertEquals("UP", second.get("health"));
+        assertEquals(Integer.valueOf(42), service.collectorData("metrics"));
+        assertThrows(UnsupportedOperationException.class, () -> second.entries().put("x", 1));
+    }
+
+    @Test
+    void testCollectorData_concurrentCollectorsLoseNoWrites() throws Exception {
+        // Rationale: collectors of one service run concurrently; a lost update would hide a collector's data until
+        // its next run.
+        var service = new Service().setId("svc");
+        var threads = new ArrayList<Thread>();
+        var start   = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            var type = "collector-" + t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 1; i <= 1000; i++) {
+                    service.collectorData(type, i);
+                }
+            }));
+        }
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        var snapshot = service.collectorData();
+        assertEquals(8, snapshot.entries().size());
+        for (int t = 0; t < 8; t++) {
+            assertEquals(Integer.valueOf(1000), snapshot.get("collector-" + t));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.newtco.obserra.backend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.collector.ServiceCollectedEvent;
+import org.newtco.obserra.backend.config.properties.EventStreamProperties;
+import org.newtco.obserra.backend.insight.ServiceStatusProvider;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+import org.newtco.obserra.backend.storage.MemoryStorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ServiceEventLog. Each test includes a rationale for why that behavior should be verified.
+ */
+class ServiceEventLogTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    private ServiceEventLog log;
+    private MemoryStorage   storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new MemoryStorage();
+        log     = newLog(8, 4);
+    }
+
+    private ServiceEventLog newLog(int logCapacity, int clientBuffer) {
+        ServiceStatusProvider status = service ->
+            "DOWN".equals(service.collectorData("health")) ? ServiceStatus.DOWN : ServiceStatus.UP;
+        var mapper = JsonMapper.builder().findAndAddModules().build();
+        return new ServiceEventLog(
+            new EventStreamProperties(logCapacity, clientBuffer, null, null),
+            new UiServiceCache(List.of(), List.of(status), mapper),
+            mapper,
+            storage);
+    }
+
+    private static List<ServiceEvent> drain(ServiceEventLog.Subscription subscription) throws InterruptedException {
+        var result = new ArrayList<ServiceEvent>();
+        for (var event = subscription.poll(NO_WAIT); event != null; event = subscription.poll(NO_WAIT)) {
+            result.add(event);
+        }
+        return result;
+    }
+
+    @Test
+    void testOnServiceCollected_emitsTransitionsAndNewSamplesOnly() throws InterruptedException {
+        // Rationale: the stream carries changes, a collection that changed neither the status nor the metrics must
+        // not wake every watcher.
+        var subscription = log.subscribe(null);
+        var service      = new Service().setId("svc").setName("orders");
+        service.collectorData("health", "UP");
+        service.collectorData("metrics", List.of(1));
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+
+        service.collectorData("health", "UP");
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+
+        service.collectorData("health", "DOWN");
+        service.collectorData("metrics", List.of(2));
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+
+        var events = drain(subscription);
+        assertEquals(List.of("status", "metrics", "status", "metrics"),
+            events.stream().map(ServiceEvent::type).toList());
+        assertTrue(events.get(2).data().contains("\"previous\":\"UP\""), events.get(2).data());
+        assertTrue(events.get(2).data().contains("\"status\":\"DOWN\""), events.get(2).data());
+        assertTrue(events.get(3).data().contains("\"metrics\":[2]"), events.get(3).data());
+        assertEquals("svc", events.get(3).serviceId());
+    }
+
+    @Test
+    void testOnServiceCollected_skipsWorkWithoutSubscribers() throws InterruptedException {
+        // Rationale: building and serializing payloads for every collection of the fleet is wasted while nobody
+        // watches; a client resuming across that gap must reload instead of trusting a log that lacks the changes.
+        var service = new Service().setId("svc").setName("orders");
+        service.collectorData("health", "UP");
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+        var before = log.append("status", "a", 1);
+
+        service.collectorData("health", "DOWN");
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+
+        var subscription = log.subscribe(Long.toString(before.id()));
+        assertEquals("reset", subscription.poll(NO_WAIT).type());
+        assertNull(subscription.poll(NO_WAIT), "nothing was appended while unsubscribed");
+
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+        var events = drain(subscription);
+        assertEquals(List.of("status"), events.stream().map(ServiceEvent::type).toList());
+        assertTrue(events.get(0).data().contains("\"previous\":null"), events.get(0).data());
+    }
+
+    @Test
+    void testOnServiceDeleted_forgetsTheService() throws InterruptedException {
+        // Rationale: pods come and go; the last status and metrics of every removed service must not be kept.
+        var subscription = log.subscribe(null);
+        var service      = storage.createService(new Service().setId("svc").setName("orders"));
+        service.collectorData("health", "UP");
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+        drain(subscription);
+
+        storage.deleteService(service.getId());
+        log.onServiceCollected(new ServiceCollectedEvent(service));
+
+        var events = drain(subscription);
+        assertEquals(List.of("status"), events.stream().map(ServiceEvent::type).toList(), "starts over");
+    }
+
+    @Test
+    void testSubscribe_resumesAfterLastEventId() throws InterruptedException {
+        // Rationale: Last-Event-ID resume is what lets a reconnecting client continue without reloading.
+        var first = log.append("status", "a", 1);
+        log.append("status", "a", 2);
+        log.append("status", "a", 3);
+
+        var events = drain(log.subscribe(Long.toString(first.id())));
+        assertEquals(List.of("2", "3"), events.stream().map(ServiceEvent::data).toList());
+    }
+
+    @Test
+    void testSubscribe_resetsWhenLastEventIdIsUnknown() throws InterruptedException {
+        // Rationale: a client that missed events the log no longer has, or that holds an id of an earlier run, must
+        // be told to reload instead of silently missing transitions.
+        var first = log.append("status", "a", 0);
+        for (int i = 1; i <= 8; i++) {
+            log.append("status", "a", i);
+        }
+
+        for (var lastEventId : List.of(Long.toString(first.id() - 1), "1", "garbage")) {
+            var subscription = log.subscribe(lastEventId);
+            var reset        = subscription.poll(NO_WAIT);
+            assertEquals("reset", reset.type());
+            assertNull(subscription.poll(NO_WAIT), "resumes after the newest event");
+
+            log.append("status", "a", 99);
+            assertEquals("99", subscription.poll(NO_WAIT).data());
+        }
+    }
+
+    @Test
+    void testPoll_catchesUpFromLogWhenBufferOverflows() throws InterruptedException {
+        // Rationale: a slow client must not lose events that are still in the log just because its own buffer is
+        // small.
+        var subscription = log.subscribe(null);
+        for (int i = 0; i < 6; i++) {
+            log.append("status", "a", i);
+        }
+
+        var events = drain(subscription);
+        assertEquals(List.of("0", "1", "2", "3", "4", "5"), events.stream().map(ServiceEvent::data).toList());
+    }
+
+    @Test
+    void testPoll_resetsWhenClientFallsBehindTheLog() throws InterruptedException {
+        // Rationale: a client slower than the log can hold must be reset, and then continue with new events.
+        var subscription = log.subscribe(null);
+        for (int i = 0; i < 20; i++) {
+            log.append("status", "a", i);
+        }
+
+        assertEquals("reset", subscription.poll(NO_WAIT).type());
+        assertNull(subscription.poll(NO_WAIT));
+        log.append("status", "a", 99);
+        assertEquals(List.of("99"), drain(subscription).stream().map(ServiceEvent::data).toList());
+    }
+
+    @Test
+    void testClose_stopsDelivery() throws InterruptedException {
+        // Rationale: closed connections must not keep receiving, or every disconnected client would leak a buffer.
+        var subscription = log.subscribe(null);
+        subscription.close();
+        log.append("status", "a", "1");
+
+        assertTrue(subscription.isClosed());
+        assertNull(subscription.poll(NO_WAIT));
+    }
+}
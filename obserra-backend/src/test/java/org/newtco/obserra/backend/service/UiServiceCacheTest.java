@@ -0,0 +1,190 @@
+package org.newtco.obserra.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.insight.ServiceInsightProvider;
+import org.newtco.obserra.backend.insight.ServiceStatusProvider;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+import org.newtco.obserra.shared.model.ui.ServiceInsight;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for UiServiceCache. Each test includes a rationale for why that behavior should be verified.
+ */
+class UiServiceCacheTest {
+
+    private AtomicInteger  builds;
+    private UiServiceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        builds = new AtomicInteger();
+        ServiceInsightProvider<String> health = new ServiceInsightProvider<>() {
+            @Override
+            public String providerType() {
+                return "health";
+            }
+
+            @Override
+            public ServiceInsight<String> provide(Service service) {
+                builds.incrementAndGet();
+                return ServiceInsight.of("health", service.collectorData("health"));
+            }
+        };
+        ServiceStatusProvider status = service ->
+            "DOWN".equals(service.collectorData("health")) ? ServiceStatus.DOWN : ServiceStatus.UP;
+        cache = new UiServiceCache(List.of(health), List.of(status), JsonMapper.builder().findAndAddModules().build());
+    }
+
+    @Test
+    void testGet_reusesViewUntilCollectorWrite() {
+        // Rationale: the point of the cache is that repeated reads do not rerun the providers, while a collector
+        // write must show on the next read.
+        var service = new Service().setId("svc").setName("orders");
+        service.collectorData("health", "UP");
+
+        var first = cache.get(service);
+        assertSame(first, cache.get(service));
+        assertEquals(1, builds.get());
+
+        service.collectorData("health", "DOWN");
+        var second = cache.get(service);
+        assertEquals(2, builds.get());
+        assertEquals("DOWN", second.insights().get("health"));
+        assertEquals(ServiceStatus.DOWN, second.status());
+    }
+
+    @Test
+    void testGet_rebuildsWhenRegistryFieldsChange() {
+        // Rationale: registrations change the name and version without a collector write, and the view copies them.
+        var service = new Service().setId("svc").setName("orders").setVersion("1.0");
+        cache.get(service);
+
+        service.setVersion("1.1");
+        assertEquals("1.1", cache.get(service).version());
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void testGetWithInsightTypes_computesOnlySelectedInsights() {
+        // Rationale: GraphQL queries that select few fields must not pay for the insights they do not select, and
+        // insights computed for one query must be reused by the next.
+        var metricsBuilds = new AtomicInteger();
+        ServiceInsightProvider<String> health = new ServiceInsightProvider<>() {
+            @Override
+            public String providerType() {
+                return "health";
+            }
+
+            @Override
+            public ServiceInsight<String> provide(Service service) {
+                builds.incrementAndGet();
+                return ServiceInsight.of("health", service.collectorData("health"));
+            }
+        };
+        ServiceInsightProvider<String> metrics = new ServiceInsightProvider<>() {
+            @Override
+            public String providerType() {
+                return "metrics";
+            }
+
+            @Override
+            public ServiceInsight<String> provide(Service service) {
+                metricsBuilds.incrementAndGet();
+                return ServiceInsight.of("metrics", "sampled");
+            }
+        };
+        ServiceStatusProvider status = service ->
+            "DOWN".equals(service.collectorData("health")) ? ServiceStatus.DOWN : ServiceStatus.UP;
+        cache = new UiServiceCache(List.of(health, metrics), List.of(status), JsonMapper.builder().build());
+
+        var service = new Service().setId("svc").setName("orders");
+        service.collectorData("health", "DOWN");
+
+        var summary = cache.get(service, Set.of());
+        assertEquals(ServiceStatus.DOWN, summary.status());
+        assertNull(summary.insights());
+        assertEquals(0, builds.get() + metricsBuilds.get());
+
+        var partial = cache.get(service, Set.of("health", "unknown"));
+        assertEquals(Map.of("health", "DOWN"), partial.insights());
+        cache.get(service, Set.of("health"));
+        assertEquals(1, builds.get());
+        assertEquals(0, metricsBuilds.get());
+
+        var full = cache.get(service);
+        assertEquals(Map.of("health", "DOWN", "metrics", "sampled"), full.insights());
+        assertSame(full, cache.get(service, Set.of("metrics")));
+        assertEquals(1, builds.get());
+        assertEquals(1, metricsBuilds.get());
+    }
+
+    @Test
+    void testGetAll_dropsViewsOfRemovedServices() {
+        // Rationale: views of deregistered services must not be kept forever, and a returning id must get a fresh
+        // view.
+        var a = new Service().setId("a").setName("a");
+        var b = new Service().setId("b").setName("b");
+        assertEquals(2, cache.getAll(List.of(a, b)).size());
+
+        assertEquals("a", cache.getAll(List.of(a)).getFirst().id());
+        assertEquals(2, builds.get());
+
+        cache.get(b);
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    void testGetAllJson_reusesSerializedViewsUntilCollectorWrite() throws Exception {
+        // Rationale: polls of the services list must copy cached bytes, and a changed service must be reserialized.
+        var a = new Service().setId("a").setName("a");
+        var b = new Service().setId("b").setName("b");
+        a.collectorData("health", "UP");
+
+        var first = cache.getAllJson(List.of(a, b));
+        var again = cache.getAllJson(List.of(a, b));
+        assertSame(first.elements().get(0), again.elements().get(0));
+
+        a.collectorData("health", "DOWN");
+        var changed = cache.getAllJson(List.of(a, b));
+        assertNotSame(first.elements().get(0), changed.elements().get(0));
+        assertSame(first.elements().get(1), changed.elements().get(1));
+
+        var out = new ByteArrayOutputStream();
+        changed.writeTo(out);
+        var json = out.toString(StandardCharsets.UTF_8);
+        assertEquals(changed.contentLength(), out.size());
+        assertTrue(json.startsWith("[{") && json.endsWith("}]"));
+        assertTrue(json.contains("\"DOWN\""));
+    }
+
+    @Test
+    void testETags_changeOnlyWithTheViews() {
+        // Rationale: a 304 is only correct if the tag changes with every change of the response, and is only useful
+        // if it stays the same otherwise.
+        var a = new Service().setId("a").setName("a");
+        var b = new Service().setId("b").setName("b");
+        var tag     = cache.getETag(a);
+        var listTag = cache.getAllETag(List.of(a, b));
+        assertEquals(tag, cache.getETag(a));
+        assertEquals(listTag, cache.getAllETag(List.of(a, b)));
+        assertTrue(tag.startsWith("\"") && tag.endsWith("\""));
+
+        assertNotEquals(listTag, cache.getAllETag(List.of(b, a)));
+        assertNotEquals(listTag, cache.getAllETag(List.of(a)));
+
+        b.collectorData("health", "DOWN");
+        assertEquals(tag, cache.getETag(a));
+        assertNotEquals(listTag, cache.getAllETag(List.of(a, b)));
+    }
+}
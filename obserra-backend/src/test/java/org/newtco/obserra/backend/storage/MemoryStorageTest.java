@@ -0,0 +1,148 @@
+package org.newtco.obserra.backend.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.model.ConfigProperty;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MemoryStorage. Each test includes a rationale for why that behavior should be verified.
+ */
+class MemoryStorageTest {
+
+    private MemoryStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new MemoryStorage();
+    }
+
+    @Test
+    void testGetServiceByAppId_followsUpdatesAndDeletes() {
+        // Rationale: registrations look services up by app id; the index must track every mutation.
+        storage.createService(service("1", "app-1", "pod-1", "prod"));
+
+        assertEquals("1", storage.getServiceByAppId("app-1").orElseThrow().getId());
+        assertEquals("1", storage.getServiceByPodName("pod-1").orElseThrow().getId());
+
+        storage.updateServiceByAppId("app-1", service("1", "app-1", "pod-2", "prod"));
+        assertTrue(storage.getServiceByPodName("pod-1").isEmpty());
+        assertEquals("1", storage.getServiceByPodName("pod-2").orElseThrow().getId());
+
+        storage.deleteService("1");
+        assertTrue(storage.getServiceByAppId("app-1").isEmpty());
+        assertTrue(storage.getServiceByPodName("pod-2").isEmpty());
+    }
+
+    @Test
+    void testAddServiceListener_reportsRegistrationsAndDeletions() {
+        // Rationale: the collection schedule follows the registry through the listener instead of scanning it, so
+        // every registration path and every deletion must be reported, and deleting an unknown id must not be.
+        var events = new ArrayList<String>();
+        storage.addServiceListener(new ServiceListener() {
+            @Override
+            public void onServiceChanged(Service service) {
+                events.add("changed " + service.getId());
+            }
+
+            @Override
+            public void onServiceDeleted(String serviceId) {
+                events.add("deleted " + serviceId);
+            }
+        });
+
+        storage.createService(service("1", "app-1", "pod-1", "prod"));
+        storage.updateService("1", service("1", "app-1", "pod-2", "prod"));
+        storage.updateServiceByAppId("app-1", service("1", "app-1", "pod-3", "prod"));
+        storage.deleteService("1");
+        storage.deleteService("1");
+
+        assertEquals(List.of("changed 1", "changed 1", "changed 1", "deleted 1"), events);
+    }
+
+    @Test
+    void testGetServices_returnsKnownServicesInIdOrder() {
+        // Rationale: GraphQL batch loaders resolve many ids in one call and map the results back by id, so unknown
+        // ids must be skipped rather than fail the batch.
+        storage.createService(service("1", "app-1", "pod-1", "prod"));
+        storage.createService(service("2", "app-2", "pod-2", "prod"));
+
+        var services = storage.getServices(List.of("2", "missing", "1"));
+        assertEquals(List.of("2", "1"), services.stream().map(Service::getId).toList());
+    }
+
+    @Test
+    void testGetServiceByPodName_ignoresServicesChangedOutsideStorage() {
+        // Rationale: services are mutable; a stale index entry must never return a service that no longer matches.
+        var service = storage.createService(service("1", "app-1", "pod-1", "prod"));
+        service.setPodName("pod-9");
+
+        assertTrue(storage.getServiceByPodName("pod-1").isEmpty());
+    }
+
+    @Test
+    void testGetServicesByNamespace_tracksNamespaceChanges() {
+        // Rationale: a service moving namespaces must leave the old namespace's index entry.
+        storage.createService(service("1", "app-1", "pod-1", "prod"));
+        storage.createService(service("2", "app-2", "pod-2", "prod"));
+        storage.createService(service("3", "app-3", "pod-3", "dev"));
+
+        assertEquals(2, storage.getServicesByNamespace("prod").size());
+
+        storage.updateService("2", service("2", "app-2", "pod-2", "dev"));
+        assertEquals(1, storage.getServicesByNamespace("prod").size());
+        assertEquals(2, storage.getServicesByNamespace("dev").size());
+        assertTrue(storage.getServicesByNamespace("staging").isEmpty());
+    }
+
+    @Test
+    void testGetUserByUsername_findsCreatedUser() {
+        // Rationale: username lookups moved from a scan to an index and must still find created users.
+        var user = new User();
+        user.setUsername("alice");
+        storage.createUser(user);
+
+        assertEquals(user.getId(), storage.getUserByUsername("alice").orElseThrow().getId());
+        assertTrue(storage.getUserByUsername("bob").isEmpty());
+    }
+
+    @Test
+    void testConfigProperty_indexedByIdThroughUpdateAndDelete() {
+        // Rationale: property lookups by id must see replacements and deletions, and deleting a service drops them.
+        storage.createService(service("1", "app-1", "pod-1", "prod"));
+        var property = new ConfigProperty();
+        property.setServiceId("1");
+        property.setKey("server.port");
+        storage.createConfigProperty(property);
+
+        var replacement = new ConfigProperty();
+        replacement.setServiceId("1");
+        replacement.setKey("server.address");
+        storage.updateConfigProperty(property.getId(), replacement);
+        assertSame(replacement, storage.getConfigProperty(property.getId()).orElseThrow());
+        assertEquals(1, storage.getConfigPropertiesForService("1").size());
+
+        storage.deleteConfigProperty(property.getId());
+        assertTrue(storage.getConfigProperty(property.getId()).isEmpty());
+        assertTrue(storage.getConfigPropertiesForService("1").isEmpty());
+
+        var other = storage.createConfigProperty(replacement);
+        storage.deleteService("1");
+        assertTrue(storage.getConfigProperty(other.getId()).isEmpty());
+    }
+
+    private static Service service(String id, String appId, String podName, String namespace) {
+        return new Service()
+            .setId(id)
+            .setName(id)
+            .setAppId(appId)
+            .setPodName(podName)
+            .setNamespace(namespace);
+    }
+}
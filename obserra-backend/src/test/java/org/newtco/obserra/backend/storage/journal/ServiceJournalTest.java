@@ -0,0 +1,227 @@
+package org.newtco.obserra.backend.storage.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.newtco.obserra.backend.model.ActuatorEndpoint;
+import org.newtco.obserra.backend.model.RegistrationSource;
+import org.newtco.obserra.backend.model.Service;
+import org.newtco.obserra.backend.model.ServiceStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ServiceJournal. Each test includes a rationale for why that behavior should be verified.
+ */
+class ServiceJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecovered_replaysPutsAndDeletes() {
+        // Rationale: the log alone must restore the registry, including later updates and deletions.
+        try (var journal = new ServiceJournal(directory)) {
+            journal.sync(journal.put(service("a").setVersion("1.0")));
+            journal.sync(journal.put(service("b")));
+            journal.sync(journal.put(service("a").setVersion("2.0")));
+            journal.sync(journal.delete("b"));
+        }
+
+        try (var journal = new ServiceJournal(directory)) {
+            var recovered = journal.recovered();
+            assertEquals(1, recovered.size());
+            assertEquals("2.0", recovered.getFirst().getVersion());
+        }
+    }
+
+    @Test
+    void testRecovered_restoresAllRegistryFields() {
+        // Rationale: a restored service must be usable without rediscovery, so every registry field has to round-trip.
+        var endpoints = new ArrayList<ActuatorEndpoint>();
+        endpoints.add(new ActuatorEndpoint("health", "http://a:8080/actuator/health", true, false, false));
+        endpoints.add(new ActuatorEndpoint("loggers", "http://a:8080/actuator/loggers/{name}", true, true, true));
+        var seen = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_000_000);
+        var original = service("a")
+            .setNamespace("prod")
+            .setCluster("eu-west")
+            .setPodName("a-7d9f")
+            .setStatus(ServiceStatus.WARNING)
+            .setLastSeen(LocalDateTime.MIN)
+            .setLastUpdated(seen)
+            .setClusterDns("a.prod.svc")
+            .setRegistrationSource(RegistrationSource.DIRECT)
+            .setAppId("app-a")
+            .setAutoRegister(true)
+            .setCheckInterval(Duration.ofSeconds(30))
+            .setActuatorEndpoints(endpoints);
+
+        try (var journal = new ServiceJournal(directory)) {
+            journal.sync(journal.put(original));
+        }
+
+        try (var journal = new ServiceJournal(directory)) {
+            var restored = journal.recovered().getFirst();
+            assertEquals("prod", restored.getNamespace());
+            assertEquals("eu-west", restored.getCluster());
+            assertEquals("a-7d9f", restored.getPodName());
+            assertEquals(ServiceStatus.WARNING, restored.getStatus());
+            assertEquals(LocalDateTime.MIN, restored.getLastSeen());
+            assertEquals(seen, restored.getLastUpdated());
+            assertEquals("a.prod.svc", restored.getClusterDns());
+            assertEquals("http://a:8080/actuator", restored.getActuatorUrl());
+            assertEquals(RegistrationSource.DIRECT, restored.getRegistrationSource());
+            assertEquals("app-a", restored.getAppId());
+            assertTrue(restored.getAutoRegister());
+            assertEquals(Duration.ofSeconds(30), restored.getCheckInterval());
+            assertEquals(2, restored.getActuatorEndpoints().size());
+            var loggers = restored.getActuatorEndpoints().get(1);
+            assertEquals("http://a:8080/actuator/loggers/{name}", loggers.getHref());
+            assertTrue(loggers.isSensitive() && loggers.isTemplated());
+        }
+    }
+
+    @Test
+    void testRecovered_readsRecordsOfEarlierVersions() throws Exception {
+        // Rationale: a journal written before an upgrade must still restore the registry after it.
+        writeVersion1Record(service("a").setVersion("1.0").setRegistrationSource(RegistrationSource.DIRECT));
+
+        try (var journal = new ServiceJournal(directory)) {
+            var recovered = journal.recovered();
+            assertEquals(1, recovered.size());
+            assertEquals("1.0", recovered.getFirst().getVersion());
+            assertNull(recovered.getFirst().getCluster());
+        }
+    }
+
+    @Test
+    void testRecovered_assignsVersion1KubernetesServicesToTheDefaultCluster() throws Exception {
+        // Rationale: discovery only adopts services of its own cluster; Kubernetes services restored without one would
+        // be registered a second time after the upgrade, and the stale copies collected forever.
+        writeVersion1Record(service("a").setRegistrationSource(RegistrationSource.KUBERNETES));
+
+        try (var journal = new ServiceJournal(directory)) {
+            assertEquals("default", journal.recovered().getFirst().getCluster());
+        }
+    }
+
+    @Test
+    void testSnapshot_truncatesLogAndKeepsLaterRecords() {
+        // Rationale: records after a snapshot live only in the log; both must be combined on recovery.
+        try (var journal = new ServiceJournal(directory)) {
+            journal.sync(journal.put(service("a")));
+            journal.sync(journal.put(service("b")));
+            journal.snapshot(List.of(service("a"), service("b")));
+            assertFalse(journal.hasChanges());
+
+            journal.sync(journal.put(service("c")));
+            journal.sync(journal.delete("a"));
+        }
+
+        try (var journal = new ServiceJournal(directory)) {
+            var ids = journal.recovered().stream().map(Service::getId).toList();
+            assertEquals(List.of("b", "c"), ids);
+        }
+        assertTrue(directory.resolve(ServiceJournal.LOG_FILE).toFile().length() > 0);
+    }
+
+    @Test
+    void testRecovered_ignoresTornTail() throws Exception {
+        // Rationale: a crash mid-write leaves a partial record; recovery must keep everything before it and go on.
+        try (var journal = new ServiceJournal(directory)) {
+            journal.sync(journal.put(service("a")));
+        }
+        try (var log = FileChannel.open(directory.resolve(ServiceJournal.LOG_FILE), StandardOpenOption.APPEND)) {
+            log.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 100, 1, 2, 3}));
+        }
+
+        try (var journal = new ServiceJournal(directory)) {
+            assertEquals(1, journal.recovered().size());
+            journal.sync(journal.put(service("b")));
+        }
+        try (var journal = new ServiceJournal(directory)) {
+            assertEquals(2, journal.recovered().size());
+        }
+    }
+
+    @Test
+    void testSync_groupCommitsConcurrentWriters() throws Exception {
+        // Rationale: registration storms sync from many threads at once; no record may be lost or left waiting.
+        try (var journal = new ServiceJournal(directory);
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 500; i++) {
+                var id = "svc-" + i;
+                futures.add(executor.submit(() -> journal.sync(journal.put(service(id)))));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        }
+
+        try (var journal = new ServiceJournal(directory)) {
+            assertEquals(500, journal.recovered().size());
+        }
+    }
+
+    @Test
+    void testRecovered_restoresLargeRegistryFromSnapshot() {
+        // Rationale: the journal exists to make restarts fast; 50k services must restore from a snapshot.
+        var services = new ArrayList<Service>();
+        for (int i = 0; i < 50_000; i++) {
+            services.add(service("svc-" + i).setNamespace("ns-" + (i % 50)).setPodName("pod-" + i));
+        }
+        try (var journal = new ServiceJournal(directory)) {
+            journal.snapshot(services);
+        }
+
+        try (var journal = new ServiceJournal(directory)) {
+            assertEquals(50_000, journal.recovered().size());
+            assertEquals("pod-49999", journal.recovered().getLast().getPodName());
+        }
+    }
+
+    /** Appends a put record in encoding version 1, as written before clusters were added, to the log. */
+    private void writeVersion1Record(Service service) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(1);
+            ServiceCodec.write(out, service);
+        }
+        // Version 1 ends before the cluster, written last as a single byte while null
+        var record = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+        var crc    = new CRC32C();
+        crc.update(record);
+        var framed = ByteBuffer.allocate(2 * Integer.BYTES + record.length)
+            .putInt(record.length)
+            .putInt((int) crc.getValue())
+            .put(record)
+            .flip();
+        try (var log = FileChannel.open(directory.resolve(ServiceJournal.LOG_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            log.write(framed);
+        }
+    }
+
+    private static Service service(String id) {
+        return new Service()
+            .setId(id)
+            .setName(id)
+            .setActuatorUrl("http://" + id + ":8080/actuator");
+    }
+}
@@ -0,0 +1,108 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for LogRing. Each test includes a rationale for why that behavior should be verified.
+ */
+class LogRingTest {
+
+    @Test
+    void testAfter_returnsOnlyRecordsPastTheCursor() {
+        // Rationale: pollers pass the last sequence they saw and must get exactly the newer records, in order.
+        var ring = new LogRing<String>(8);
+        for (int i = 1; i <= 5; i++) {
+            var message = "m" + i;
+            assertEquals(i, ring.append(sequence -> message));
+        }
+
+        assertEquals(List.of("m1", "m2", "m3", "m4", "m5"), ring.after(0, 100));
+        assertEquals(List.of("m4", "m5"), ring.after(3, 100));
+        assertEquals(List.of("m4"), ring.after(3, 1));
+        assertTrue(ring.after(5, 100).isEmpty());
+    }
+
+    @Test
+    void testNewest_returnsNewestFirst() {
+        // Rationale: the default log view shows the latest records first without sorting.
+        var ring = new LogRing<Long>(8);
+        for (int i = 0; i < 5; i++) {
+            ring.append(sequence -> sequence);
+        }
+
+        assertEquals(List.of(5L, 4L, 3L), ring.newest(3));
+    }
+
+    @Test
+    void testAppend_overwritesOldestWhenFull() {
+        // Rationale: memory must stay fixed; once full, the oldest records roll off and a stale cursor skips them.
+        var ring = new LogRing<Long>(5);
+        assertEquals(8, ring.capacity());
+        for (int i = 0; i < 20; i++) {
+            ring.append(sequence -> sequence);
+        }
+
+        assertEquals(13, ring.firstSequence());
+        assertEquals(20, ring.lastSequence());
+        assertEquals(List.of(13L, 14L, 15L, 16L, 17L, 18L, 19L, 20L), ring.after(0, 100));
+        assertEquals(8, ring.newest(100).size());
+    }
+
+    @Test
+    void testAfter_stopsAtUnpublishedRecord() throws Exception {
+        // Rationale: a cursor must never move past a record a slow producer has claimed but not yet written.
+        var ring    = new LogRing<Long>(16);
+        var claimed = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        ring.append(sequence -> sequence);
+
+        var slow = Thread.ofVirtual().start(() -> ring.append(sequence -> {
+            claimed.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return sequence;
+        }));
+        claimed.await();
+        ring.append(sequence -> sequence);
+
+        assertEquals(List.of(1L), ring.after(0, 100));
+
+        release.countDown();
+        slow.join();
+        assertEquals(List.of(1L, 2L, 3L), ring.after(0, 100));
+    }
+
+    @Test
+    void testAppend_concurrentProducersGetUniqueSequences() throws Exception {
+        // Rationale: collectors append concurrently; every record needs its own sequence and none may be lost.
+        var ring    = new LogRing<Long>(1 << 16);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    ring.append(sequence -> sequence);
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        var records = ring.after(0, Integer.MAX_VALUE);
+        assertEquals(40_000, records.size());
+        assertEquals(40_000, new HashSet<>(records).size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 1L, records.get(i));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.model.Log;
+import org.newtco.obserra.backend.model.LogPattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for LogTemplateMiner and templated log storage. Each test includes a rationale for why that behavior should
+ * be verified.
+ */
+class LogTemplateMinerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static Log log(LocalDateTime timestamp, String level, String message) {
+        var log = new Log();
+        log.setServiceId("svc");
+        log.setTimestamp(timestamp);
+        log.setLevel(level);
+        log.setMessage(message);
+        return log;
+    }
+
+    @Test
+    void testAdd_groupsMessagesDifferingInParameters() {
+        // Rationale: the point of mining is that repetitive lines with varying values share one template.
+        var miner = new LogTemplateMiner(4, 0.4, 100, 1000);
+        var first = miner.add("INFO", LogTemplateMiner.tokenize("Request GET /orders took 12 ms"), START);
+        var second = miner.add("INFO", LogTemplateMiner.tokenize("Request GET /users took 340 ms"), START);
+        var other = miner.add("INFO", LogTemplateMiner.tokenize("Cache cleared"), START);
+
+        assertEquals(first.id(), second.id());
+        assertNotEquals(first.id(), other.id());
+        assertEquals("Request GET <*> took <*> ms", second.pattern());
+        assertEquals("Request GET /orders took 12 ms", first.render(new String[0]));
+    }
+
+    @Test
+    void testAdd_keepsLevelsApart() {
+        // Rationale: "top error patterns" only works if an ERROR line never folds into an INFO template.
+        var miner = new LogTemplateMiner(4, 0.4, 100, 1000);
+        var info  = miner.add("INFO", LogTemplateMiner.tokenize("Job 1 finished"), START);
+        var error = miner.add("ERROR", LogTemplateMiner.tokenize("Job 1 finished"), START);
+
+        assertNotEquals(info.id(), error.id());
+    }
+
+    @Test
+    void testServiceLogs_rebuildsMessagesExactly() {
+        // Rationale: storing template and parameters instead of text must be invisible to readers, including for
+        // messages stored before their template generalized and for unusual spacing.
+        var logs = new ServiceLogs("svc", 16, new LogTemplateMiner(4, 0.4, 100, 1000));
+        var messages = List.of(
+            "User alice logged in from 10.0.0.1",
+            "User bob logged in from 10.0.0.2",
+            "User  carol logged in from <*> ",
+            "User dave logged out",
+            "");
+        for (var message : messages) {
+            logs.append(log(START, "INFO", message));
+        }
+
+        assertEquals(messages, logs.after(0, 100).stream().map(Log::getMessage).toList());
+    }
+
+    @Test
+    void testServiceLogs_keepsMessagesRawBeyondMaxTemplates() {
+        // Rationale: the template table is bounded per service, messages beyond it must still be stored intact.
+        var logs = new ServiceLogs("svc", 16, new LogTemplateMiner(4, 0.4, 100, 2));
+        logs.append(log(START, "INFO", "alpha"));
+        logs.append(log(START, "INFO", "beta gamma"));
+        logs.append(log(START, "INFO", "delta epsilon zeta"));
+
+        assertEquals(2, logs.patterns(null, START, 10).size());
+        assertEquals(List.of("delta epsilon zeta", "beta gamma", "alpha"),
+                     logs.newest(10).stream().map(Log::getMessage).toList());
+    }
+
+    @Test
+    void testPatterns_rankByCountWithRecentRate() {
+        // Rationale: the patterns query must rank templates by frequency, filter by level and report recent rates.
+        var logs = new ServiceLogs("svc", 64, new LogTemplateMiner(4, 0.4, 100, 1000));
+        for (int i = 0; i < 10; i++) {
+            logs.append(log(START.plusMinutes(i), "ERROR", "Timeout calling payment-service after " + i + " ms"));
+        }
+        for (int i = 0; i < 3; i++) {
+            logs.append(log(START.plusMinutes(i), "ERROR", "Connection refused by db-" + i));
+        }
+        logs.append(log(START, "INFO", "Started in 3 seconds"));
+
+        List<LogPattern> errors = logs.patterns("error", START.plusMinutes(9), 10);
+        assertEquals(2, errors.size());
+        assertEquals("Timeout calling payment-service after <*> ms", errors.get(0).getTemplate());
+        assertEquals(10, errors.get(0).getCount());
+        assertEquals(1.0, errors.get(0).getRatePerMinute(), 1e-9);
+        assertEquals(START.plusMinutes(9), errors.get(0).getLastSeen());
+        assertEquals(3, errors.get(1).getCount());
+        assertEquals(0.0, errors.get(1).getRatePerMinute(), 1e-9);
+
+        assertEquals(1, logs.patterns(null, START, 1).size());
+        assertEquals(3, logs.patterns(null, START, 10).size());
+    }
+}
@@ -0,0 +1,120 @@
+package org.newtco.obserra.backend.storage.logs;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.model.Log;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ServiceLogs and its index. Each test includes a rationale for why that behavior should be verified.
+ */
+class ServiceLogsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static ServiceLogs newLogs(int capacity) {
+        return new ServiceLogs("svc", capacity, new LogTemplateMiner(4, 0.4, 100, 1000));
+    }
+
+    private static Log log(int minute, String level, String message) {
+        var log = new Log();
+        log.setServiceId("svc");
+        log.setTimestamp(START.plusMinutes(minute));
+        log.setLevel(level);
+        log.setMessage(message);
+        return log;
+    }
+
+    private static List<String> messages(List<Log> logs) {
+        return logs.stream().map(Log::getMessage).toList();
+    }
+
+    @Test
+    void testSearch_requiresAllTermsNewestFirst() {
+        // Rationale: a search narrows with every term added, and the newest match is the one users look at first.
+        var logs = newLogs(16);
+        logs.append(log(0, "INFO", "Connection opened to db"));
+        logs.append(log(1, "WARN", "Connection timeout to db"));
+        logs.append(log(2, "WARN", "Read timeout on cache"));
+        logs.append(log(3, "WARN", "connection TIMEOUT to queue."));
+
+        assertEquals(List.of("connection TIMEOUT to queue.", "Connection timeout to db"),
+                     messages(logs.search("timeout connection", null, null, null, 10)));
+        assertEquals(List.of("connection TIMEOUT to queue."),
+                     messages(logs.search("timeout connection", null, null, null, 1)));
+        assertTrue(logs.search("timeout missing", null, null, null, 10).isEmpty());
+    }
+
+    @Test
+    void testSearch_matchesPartsOfQualifiedNames() {
+        // Rationale: stack traces log fully qualified class names, but users search for the simple name.
+        var logs = newLogs(16);
+        logs.append(log(0, "ERROR", "Failed: java.lang.IllegalStateException: closed"));
+        logs.append(log(1, "ERROR", "Failed: com.acme.IllegalStateExceptionHandler gave up"));
+
+        assertEquals(List.of("Failed: java.lang.IllegalStateException: closed"),
+                     messages(logs.search("IllegalStateException", null, null, null, 10)));
+        assertEquals(1, logs.search("java.lang.IllegalStateException", null, null, null, 10).size());
+    }
+
+    @Test
+    void testSearch_filtersByLevelAndTime() {
+        // Rationale: level and time filters must combine with the terms, and work without any terms at all.
+        var logs = newLogs(16);
+        logs.append(log(0, "ERROR", "disk full"));
+        logs.append(log(1, "INFO", "disk usage 40%"));
+        logs.append(log(2, "ERROR", "disk full"));
+        logs.append(log(3, "ERROR", "network down"));
+
+        assertEquals(3, logs.search("disk", null, null, null, 10).size());
+        assertEquals(2, logs.search("disk", "error", null, null, 10).size());
+        assertEquals(List.of("network down", "disk full", "disk full"),
+                     messages(logs.search(null, "ERROR", null, null, 10)));
+        assertEquals(List.of("disk full"),
+                     messages(logs.search("disk", "ERROR", START.plusMinutes(1), START.plusMinutes(2), 10)));
+        assertEquals(4, logs.search(" ", null, null, null, 10).size());
+    }
+
+    @Test
+    void testSearch_forgetsLogsThatRolledOff() {
+        // Rationale: the index must stay bounded by the ring, and never return logs that are no longer retained.
+        var logs = newLogs(8);
+        logs.append(log(0, "INFO", "unique-early marker"));
+        for (int i = 1; i <= 100; i++) {
+            logs.append(log(i, "INFO", "request " + i + " served"));
+        }
+
+        assertTrue(logs.search("unique-early", null, null, null, 10).isEmpty());
+        assertEquals(8, logs.search("served", null, null, null, 100).size());
+        assertEquals(List.of("request 100 served"), messages(logs.search("100", null, null, null, 10)));
+    }
+
+    @Test
+    void testPostingList_roundTripsAndPrunesWholeBlocks() {
+        // Rationale: the delta encoding must decode exactly, including large gaps, and pruning must drop old blocks.
+        var postings = new PostingList();
+        var expected = new long[PostingList.BLOCK_SIZE * 3];
+        var sequence = 0L;
+        for (int i = 0; i < expected.length; i++) {
+            sequence += i % 7 == 0 ? 1_000_000_007L : 1 + i % 5;
+            expected[i] = sequence;
+            postings.add(sequence);
+        }
+
+        assertArrayEquals(expected, postings.toArray(0));
+        assertThrows(IllegalArgumentException.class, () -> postings.add(expected[expected.length - 1]));
+
+        var cut = expected[PostingList.BLOCK_SIZE + 10];
+        postings.prune(cut);
+        assertEquals(PostingList.BLOCK_SIZE * 2, postings.size());
+        var remaining = postings.toArray(cut);
+        assertEquals(expected.length - PostingList.BLOCK_SIZE - 10, remaining.length);
+        assertEquals(cut, remaining[0]);
+
+        postings.prune(sequence + 1);
+        assertTrue(postings.isEmpty());
+    }
+}
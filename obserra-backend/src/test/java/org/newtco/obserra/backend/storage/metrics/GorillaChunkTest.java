@@ -0,0 +1,67 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for GorillaChunk. Each test includes a rationale for why that behavior should be verified.
+ */
+class GorillaChunkTest {
+
+    @Test
+    void testDecoder_roundTripsIrregularSamples() {
+        // Rationale: the codec is lossless; every delta-of-delta bucket and value window must decode exactly.
+        var random     = new Random(42);
+        var count      = 500;
+        var timestamps = new long[count];
+        var values     = new double[count];
+        long ts        = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            ts += switch (i % 5) {
+                case 0 -> 5000;
+                case 1 -> 5000 + random.nextInt(100);
+                case 2 -> 5000 - random.nextInt(2000);
+                case 3 -> 1_000_000 + random.nextInt(1_000_000);
+                default -> 5000 + random.nextInt(500);
+            };
+            timestamps[i] = ts;
+            values[i]     = switch (i % 4) {
+                case 0 -> i > 0 ? values[i - 1] : 0.0;
+                case 1 -> random.nextDouble();
+                case 2 -> (float) (random.nextGaussian() * 1e9);
+                default -> Double.NaN;
+            };
+        }
+
+        var chunk   = GorillaChunk.encode(timestamps, values, count);
+        var decoder = chunk.decoder();
+        for (int i = 0; i < count; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.timestamp());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.value()));
+        }
+        assertFalse(decoder.next());
+        assertEquals(timestamps[0], chunk.minTimestamp());
+        assertEquals(timestamps[count - 1], chunk.maxTimestamp());
+    }
+
+    @Test
+    void testEncode_compressesRegularSamples() {
+        // Rationale: the point of the chunk format is a byte or two per sample for regular collection intervals.
+        var count      = 720;
+        var timestamps = new long[count];
+        var values     = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = 1_700_000_000_000L + i * 5000L;
+            // A gauge that holds its value for a few samples at a time, like heap max or thread counts
+            values[i]     = (float) (0.25 + (i / 4 % 7) * 0.01);
+        }
+
+        var chunk = GorillaChunk.encode(timestamps, values, count);
+
+        assertTrue(chunk.sizeInBytes() < count * 2, "Expected < 2 bytes per sample, was " + chunk.sizeInBytes());
+    }
+}
@@ -0,0 +1,167 @@
+package org.newtco.obserra.backend.storage.metrics;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.newtco.obserra.backend.model.Metric;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MetricHistory. Each test includes a rationale for why that behavior should be verified.
+ */
+class MetricHistoryTest {
+
+    private final LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void testNewest_returnsRowsNewestFirstUpToLimit() {
+        // Rationale: readers rely on newest-first order without sorting.
+        var history = new MetricHistory("svc", 4, 10);
+        for (int i = 0; i < 5; i++) {
+            history.append(metric(i, 0.1f * i, 100f + i));
+        }
+
+        var rows = history.newest(3);
+
+        assertEquals(3, rows.size());
+        assertEquals(start.plusSeconds(4), rows.get(0).getTimestamp());
+        assertEquals(start.plusSeconds(2), rows.get(2).getTimestamp());
+        assertEquals(104f, rows.get(0).getMemoryUsed());
+        assertEquals("svc", rows.get(0).getServiceId());
+    }
+
+    @Test
+    void testAppend_evictsOldestBeyondRetention() {
+        // Rationale: the history must stay bounded no matter how long a service is collected. Whole chunks are
+        // dropped, so at least the retention is kept.
+        var history = new MetricHistory("svc", 2, 3);
+        for (int i = 0; i < 10; i++) {
+            history.append(metric(i, 0.5f, 1f));
+        }
+
+        var rows = history.newest(100);
+
+        assertEquals(4, rows.size());
+        assertEquals(start.plusSeconds(6), rows.getLast().getTimestamp());
+    }
+
+    @Test
+    void testRange_readsAcrossCompressedChunksAndHead() {
+        // Rationale: range queries must see both sealed chunks and the uncompressed head, bounded on both ends.
+        var history = new MetricHistory("svc", 4, 100);
+        for (int i = 0; i < 10; i++) {
+            history.append(metric(i, 0.1f * i, 100f + i));
+        }
+
+        var rows = history.range(start.plusSeconds(2), start.plusSeconds(8), 100);
+
+        assertEquals(7, rows.size());
+        assertEquals(start.plusSeconds(8), rows.getFirst().getTimestamp());
+        assertEquals(start.plusSeconds(2), rows.getLast().getTimestamp());
+        assertEquals(102f, rows.getLast().getMemoryUsed());
+        assertEquals(0.1f * 5, rows.get(3).getCpuUsage());
+    }
+
+    @Test
+    void testNewest_keepsNullFieldsNull() {
+        // Rationale: a missing value must not be reported as zero.
+        var history = new MetricHistory("svc", 4, 10);
+        history.append(metric(0, null, 50f));
+        history.append(metric(1, 0.25f, null));
+
+        var rows = history.newest(2);
+
+        assertNull(rows.get(0).getMemoryUsed());
+        assertEquals(0.25f, rows.get(0).getCpuUsage());
+        assertNull(rows.get(1).getCpuUsage());
+        assertEquals(50f, rows.get(1).getMemoryUsed());
+    }
+
+    @Test
+    void testDownsample_aggregatesIntoStepBuckets() {
+        // Rationale: charts ask for one point per step; gauges must be averaged and error counts summed.
+        var history = new MetricHistory("svc", 16, 1000, Map.of(RollupTier.ONE_MINUTE, Duration.ofHours(1)));
+        for (int i = 0; i < 24; i++) {
+            var metric = metric(i * 5, i < 12 ? 0.2f : 0.4f, 100f);
+            metric.setErrorCount(1);
+            history.append(metric);
+        }
+
+        var rows = history.downsample(start, start.plusMinutes(5), Duration.ofMinutes(1), 100);
+
+        assertEquals(2, rows.size());
+        assertEquals(start.plusMinutes(1), rows.get(0).getTimestamp());
+        assertEquals(0.4f, rows.get(0).getCpuUsage(), 1e-6);
+        assertEquals(12, rows.get(0).getErrorCount());
+        assertEquals(start, rows.get(1).getTimestamp());
+        assertEquals(0.2f, rows.get(1).getCpuUsage(), 1e-6);
+    }
+
+    @Test
+    void testDownsample_fallsBackToRawSamplesWhenTierLacksRange() {
+        // Rationale: a tier with short retention must not hide data that the raw samples still have.
+        var history = new MetricHistory("svc", 16, 1000, Map.of(RollupTier.ONE_MINUTE, Duration.ofMinutes(2)));
+        for (int i = 0; i < 48; i++) {
+            var metric = metric(i * 5, 0.5f, 100f);
+            metric.setErrorCount(1);
+            history.append(metric);
+        }
+
+        var rows = history.downsample(start, start.plusMinutes(10), Duration.ofMinutes(1), 100);
+
+        assertEquals(4, rows.size());
+        assertEquals(start, rows.getLast().getTimestamp());
+        assertEquals(12, rows.getLast().getErrorCount());
+    }
+
+    private Metric metric(int second, Float cpu, Float memoryUsed) {
+        var metric = new Metric();
+        metric.setTimestamp(start.plusSeconds(second));
+        metric.setCpuUsage(cpu);
+        metric.setMemoryUsed(memoryUsed);
+        return metric;
+    }
+
+    @Test
+    void testVersion_changesWithEveryAppendAndIsNotReused() {
+        // Rationale: entity tags of metrics responses are derived from the version, so an append must change it, and
+        // a history recreated for the same service must not repeat a version a client may still hold.
+        var history = new MetricHistory("svc", 4, 10);
+        var initial = history.version();
+        history.append(metric(0, 0.1f, 100f));
+        var appended = history.version();
+
+        assertNotEquals(initial, appended);
+        assertEquals(appended, history.version());
+        assertNotEquals(appended, new MetricHistory("svc", 4, 10).version());
+
+        history.touch();
+        assertNotEquals(appended, history.version());
+    }
+
+    @Test
+    void testRange_readsChunksLargerThanTheChunkSize() {
+        // Rationale: persisted chunks outlive the configuration; after a restart with a smaller chunk size, the
+        // chunks sealed before must still be readable.
+        var stored = new HeapChunkStore(1000);
+        var timestamps = new long[64];
+        var values     = new double[64];
+        for (int i = 0; i < 64; i++) {
+            timestamps[i] = MetricHistory.toEpochMillis(start.plusSeconds(i));
+            values[i]     = i;
+        }
+        stored.append(GorillaChunk.encode(timestamps, values, 64));
+        var history = new MetricHistory("svc", 4,
+                                        series -> series == MetricSeries.CPU_USAGE ? stored : new HeapChunkStore(10),
+                                        Map.of());
+
+        var rows = history.range(start, start.plusSeconds(63), 100);
+
+        assertEquals(64, rows.size());
+        assertEquals(63f, rows.getFirst().getCpuUsage());
+        assertEquals(0f, rows.getLast().getCpuUsage());
+    }
+}
@@ -0,0 +1,267 @@
+package org.newtco.obserra.backend.storage.segment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.newtco.obserra.backend.storage.metrics.ChunkStore;
+import org.newtco.obserra.backend.storage.metrics.GorillaChunk;
+import org.newtco.obserra.backend.storage.metrics.MetricSeries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SegmentStore. Each test includes a rationale for why that behavior should be verified.
+ */
+class SegmentStoreTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testStore_reopenRestoresChunks() {
+        // Rationale: surviving a restart is the reason the segment store exists; chunks must come back in time order.
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            var chunks = store.store("svc-1", MetricSeries.CPU_USAGE);
+            chunks.append(chunk(0, 10));
+            chunks.append(chunk(10, 10));
+            store.store("svc-2", MetricSeries.ERRORS).append(chunk(0, 5));
+        }
+
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            assertEquals(2, store.serviceIds().size());
+
+            var chunks = store.store("svc-1", MetricSeries.CPU_USAGE);
+            assertEquals(20, chunks.sampleCount());
+            assertEquals(START, chunks.oldestTimestamp());
+            assertEquals(List.of(19.0, 18.0, 17.0), newestValues(chunks, 3));
+            assertEquals(5, store.store("svc-2", MetricSeries.ERRORS).sampleCount());
+            assertEquals(0, store.store("svc-2", MetricSeries.CPU_USAGE).sampleCount());
+        }
+    }
+
+    @Test
+    void testStore_rollsOverFullSegments() throws Exception {
+        // Rationale: a full active segment must not lose chunks; writes continue in a new segment file.
+        try (var store = new SegmentStore(directory, 1024, Duration.ofDays(30))) {
+            var chunks = store.store("svc-1", MetricSeries.MEMORY_USED);
+            for (int i = 0; i < 50; i++) {
+                chunks.append(chunk(i * 10, 10));
+            }
+            assertEquals(500, chunks.sampleCount());
+            assertEquals(List.of(499.0, 498.0), newestValues(chunks, 2));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertTrue(files.count() > 2);
+        }
+    }
+
+    @Test
+    void testMaintain_dropsExpiredChunksAndDeletesSegments() throws Exception {
+        // Rationale: retention is by time; expired chunks must disappear from reads and their segments from disk.
+        try (var store = new SegmentStore(directory, 1024, Duration.ofHours(1))) {
+            var chunks = store.store("svc-1", MetricSeries.MEMORY_USED);
+            for (int i = 0; i < 20; i++) {
+                chunks.append(chunk(i * 10, 10));
+            }
+            var filesBefore = countFiles();
+
+            // Only the chunks of the last 20 samples end within an hour of 'now'
+            var now = START + 180 * 5000L + Duration.ofHours(1).toMillis();
+            assertEquals(Set.of("svc-1"), store.maintain(now));
+            assertEquals(20, chunks.sampleCount());
+            assertEquals(List.of(199.0), newestValues(chunks, 1));
+
+            // Retired segments are deleted one sweep later
+            assertEquals(Set.of(), store.maintain(now));
+            assertTrue(countFiles() < filesBefore);
+            assertEquals(20, chunks.sampleCount());
+        }
+    }
+
+    @Test
+    void testMaintain_compactsSparseSegments() {
+        // Rationale: dropping a service leaves dead records behind; live chunks of other services must survive compaction.
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            for (int i = 0; i < 10; i++) {
+                store.store("dropped", MetricSeries.CPU_USAGE).append(chunk(i * 10, 10));
+            }
+            store.store("kept", MetricSeries.CPU_USAGE).append(chunk(0, 10));
+            store.drop("dropped");
+
+            // Seal the first segment by filling it, then compact and sweep twice
+            var filler = store.store("filler", MetricSeries.ERRORS);
+            for (int i = 0; i < 1000; i++) {
+                filler.append(chunk(i * 10, 10));
+            }
+            store.drop("filler");
+            store.maintain(START);
+            store.maintain(START);
+
+            var kept = store.store("kept", MetricSeries.CPU_USAGE);
+            assertEquals(10, kept.sampleCount());
+            assertEquals(List.of(9.0, 8.0), newestValues(kept, 2));
+        }
+
+        // The compacted copy replaces the original on disk, so reopening must not see the chunk twice
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            assertEquals(10, store.store("kept", MetricSeries.CPU_USAGE).sampleCount());
+            assertFalse(store.serviceIds().contains("dropped"));
+        }
+    }
+
+    @Test
+    void testStore_reopenAfterCrashDuringCompactionReadsChunksOnce() throws Exception {
+        // Rationale: compaction copies live chunks before their source segment is deleted on the next sweep; after a
+        // crash in between both copies are on disk, and reads must not return the samples twice.
+        var segments = directory.resolve("segments");
+        var crashed  = Files.createDirectories(directory.resolve("crashed"));
+        try (var store = new SegmentStore(segments, 64 * 1024, Duration.ofDays(30))) {
+            store.store("kept", MetricSeries.CPU_USAGE).append(chunk(0, 10));
+            var filler = store.store("filler", MetricSeries.ERRORS);
+            for (int i = 0; i < 1000; i++) {
+                filler.append(chunk(i * 10, 10));
+            }
+            store.drop("filler");
+            store.maintain(START);
+
+            // The state on disk if the process died before the next sweep
+            try (var files = Files.list(segments)) {
+                for (var file : files.toList()) {
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+                }
+            }
+        }
+
+        try (var store = new SegmentStore(crashed, 64 * 1024, Duration.ofDays(30))) {
+            var kept = store.store("kept", MetricSeries.CPU_USAGE);
+            assertEquals(10, kept.sampleCount());
+            assertEquals(List.of(9.0, 8.0), newestValues(kept, 2));
+            assertEquals(Set.of("kept"), store.serviceIds());
+        }
+    }
+
+    @Test
+    void testDrop_staysDroppedAfterReopen() {
+        // Rationale: the chunks of a deleted service must not be loaded again after a restart, where nothing would
+        // ever evict them; a service registered again under the same id keeps only its new chunks.
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            store.store("svc-1", MetricSeries.CPU_USAGE).append(chunk(0, 10));
+            store.store("svc-2", MetricSeries.CPU_USAGE).append(chunk(0, 10));
+            store.store("svc-3", MetricSeries.CPU_USAGE).append(chunk(0, 10));
+            store.drop("svc-1");
+            store.drop("svc-3");
+            store.store("svc-3", MetricSeries.CPU_USAGE).append(chunk(100, 5));
+        }
+
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            assertEquals(Set.of("svc-2", "svc-3"), store.serviceIds());
+            assertEquals(5, store.store("svc-3", MetricSeries.CPU_USAGE).sampleCount());
+        }
+    }
+
+    @Test
+    void testMaintain_keepsTombstonesOfOlderSegments() throws Exception {
+        // Rationale: a tombstone may be retired with its segment while the chunks it drops still sit in an older one;
+        // it must be carried forward, or the dropped service comes back on the next restart.
+        try (var store = new SegmentStore(directory, 1024, Duration.ofDays(30))) {
+            var kept = store.store("kept", MetricSeries.CPU_USAGE);
+            store.store("dropped", MetricSeries.CPU_USAGE).append(chunk(0, 2));
+            var next = 0;
+            for (var files = countFiles(); countFiles() == files; next += 10) {
+                kept.append(chunk(next, 10));
+            }
+            store.drop("dropped");
+
+            // Seal the segment holding the tombstone with chunks that are dropped, so it is compacted
+            var filler = store.store("filler", MetricSeries.ERRORS);
+            for (int i = 0, files = (int) countFiles(); countFiles() == files; i += 10) {
+                filler.append(chunk(i, 10));
+            }
+            store.drop("filler");
+            store.maintain(START);
+            store.maintain(START);
+            assertEquals(next, kept.sampleCount());
+        }
+
+        try (var store = new SegmentStore(directory, 1024, Duration.ofDays(30))) {
+            assertFalse(store.serviceIds().contains("dropped"));
+            assertFalse(store.serviceIds().contains("filler"));
+        }
+    }
+
+    @Test
+    void testStore_reopenStopsAtCorruptRecord() throws Exception {
+        // Rationale: pages of a mapping reach the disk in any order, so after a crash a record may be complete but
+        // for its data; it must not be read back as a valid chunk.
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            var chunks = store.store("svc-1", MetricSeries.CPU_USAGE);
+            chunks.append(chunk(0, 10));
+            chunks.append(chunk(10, 10));
+            chunks.append(chunk(20, 10));
+        }
+
+        // Flip a bit in the last chunk word of the second record, which ends where the third one starts
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.sorted().findFirst().orElseThrow();
+        }
+        var bytes = Files.readAllBytes(segment);
+        var third = 0;
+        for (int i = 0, found = 0; found < 3; i += 8) {
+            if (bytes[i] == 'C' && bytes[i + 1] == 'H' && bytes[i + 2] == 'N' && bytes[i + 3] == 'K') {
+                found++;
+                third = i;
+            }
+        }
+        bytes[third - 1] ^= 1;
+        Files.write(segment, bytes);
+
+        try (var store = new SegmentStore(directory, 64 * 1024, Duration.ofDays(30))) {
+            var chunks = store.store("svc-1", MetricSeries.CPU_USAGE);
+            assertEquals(10, chunks.sampleCount());
+            assertEquals(List.of(9.0), newestValues(chunks, 1));
+        }
+    }
+
+    private long countFiles() throws Exception {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /** A chunk of {@code count} samples, 5 seconds apart, whose values are their sample index. */
+    private static GorillaChunk chunk(int first, int count) {
+        var timestamps = new long[count];
+        var values     = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = START + (first + i) * 5000L;
+            values[i]     = first + i;
+        }
+        return GorillaChunk.encode(timestamps, values, count);
+    }
+
+    private static List<Double> newestValues(ChunkStore chunks, int limit) {
+        var values = new ArrayList<Double>();
+        var it     = chunks.newestFirst();
+        while (it.hasNext() && values.size() < limit) {
+            var decoder = it.next().decoder();
+            var chunk   = new ArrayList<Double>();
+            while (decoder.next()) {
+                chunk.add(decoder.value());
+            }
+            for (int i = chunk.size() - 1; i >= 0 && values.size() < limit; i--) {
+                values.add(chunk.get(i));
+            }
+        }
+        return values;
+    }
+}